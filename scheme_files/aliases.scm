@@ -23,6 +23,7 @@
 (define-alias Instance java.time.Instant)
 (define-alias LocalDateTime java.time.LocalDateTime)
 (define-alias LocalDate java.time.LocalDate)
+(define-alias LocalTime java.time.LocalTime)
 (define-alias ChronoUnit java.time.temporal.ChronoUnit)
 (define-alias Integer java.lang.Integer)
 (define-alias IntStream java.util.stream.IntStream)
@@ -49,9 +50,11 @@
 (define-alias TextEntry io.mindspice.toastit.entries.text.TextEntry)
 (define-alias ProjectEntry io.mindspice.toastit.entries.project.ProjectEntry)
 (define-alias EventEntry io.mindspice.toastit.entries.event.EventEntry)
+(define-alias Recurrence io.mindspice.toastit.entries.event.Recurrence)
 (define-alias AppShell io.mindspice.toastit.shell.ApplicationShell)
 (define-alias ShellMode io.mindspice.toastit.shell.ShellMode)
 (define-alias Reminder io.mindspice.toastit.notification.Reminder)
+(define-alias NotificationSink io.mindspice.toastit.notification.NotificationSink)
 (define-alias Editor io.mindspice.toastit.util.Editor)
 (define-alias SearchResult io.mindspice.toastit.entries.SearchResult)
 (define-alias CalendarEvents io.mindspice.toastit.entries.CalendarEvents)
@@ -77,6 +80,7 @@
 (define-alias EntryType io.mindspice.toastit.enums.EntryType)
 (define-alias NotificationLevel io.mindspice.toastit.enums.NotificationLevel)
 (define-alias NotificationType io.mindspice.toastit.enums.NotificationType)
+(define-alias SearchBackend io.mindspice.toastit.enums.SearchBackend)
 (define-alias EntryType io.mindspice.toastit.enums.EntryType)
 
 
@@ -88,6 +92,9 @@
 (define-alias TableUtil io.mindspice.toastit.util.TableUtil)
 (define-alias Util io.mindspice.toastit.util.Util)
 
+;; Search
+(define-alias SearchQuery io.mindspice.toastit.search.SearchQuery)
+
 ;; Ascii table
 (define-alias Column com.github.freva.asciitable.Column)
 (define-alias ColumnData com.github.freva.asciitable.ColumnData)
@@ -9,6 +9,7 @@
     (set-static Settings 'JOURNAL_PATH (string-append root-path (file-sep) "JOURNAL"))
     (set-static Settings 'PROJECT_PATH (string-append root-path (file-sep) "PROJECT"))
     (set-static Settings `TEMP_PATH (string-append root-path (file-sep) ".TEMP"))
+    (set-static Settings `INDEX_PATH (string-append root-path (file-sep) ".INDEX"))
     ))
 
 
@@ -22,6 +23,35 @@
     ; Use virtual threads for searchs, more efficent if searching many large files
     (set-static Settings `THREADED_SEARCH #t)
     (set-static Settings `SEARCH_TIMEOUT_SEC 60)
+    ; SCAN reads every file on each search, FTS keeps note/journal text in a SQLite full-text index,
+    ; INDEX keeps memory-mapped term files under INDEX_PATH. INDEX is the default as it only reads
+    ; the files that hit and supports "quoted phrase" and prefix* queries
+    (set-static Settings `SEARCH_BACKEND (SearchBackend:.INDEX))
+    (set-static Settings `SEARCH_RESULT_LIMIT 200)
+    (set-static Settings `SEARCH_CONCURRENCY 8)
+    (set-static Settings `SEARCH_CACHE_MB 16)
+    (set-static Settings `INDEX_WATCH_DEBOUNCE_MS 250)
+    ; Notes/journals are listed a page at a time from the database rather than all held in memory
+    (set-static Settings `TEXT_PAGE_SIZE 25)
+    ))
+
+
+(define (load-database-settings)
+  (begin
+    ; Connections are shared between the shell and the background refresh jobs
+    (set-static Settings `DB_POOL_SIZE 4)
+    ; Compiled statements kept per connection
+    (set-static Settings `DB_STATEMENT_CACHE_SIZE 64)
+    (set-static Settings `DB_BUSY_TIMEOUT_MS 5000)
+    ; WAL journaling with a single background writer, reads never wait on writes and queued writes
+    ; are committed together. Below settings only apply when enabled
+    (set-static Settings `DB_WAL_MODE #f)
+    (set-static Settings `DB_CACHE_SIZE_KB 8192)
+    (set-static Settings `DB_MMAP_SIZE_MB 256)
+    (set-static Settings `DB_WRITE_BATCH_SIZE 256)
+    ; Load full tasks/projects from the database row instead of opening each .task/.project file,
+    ; the files are still written so this can be switched off at any time
+    (set-static Settings `DB_STORE_PAYLOADS #t)
     ))
 
 
@@ -51,13 +81,13 @@
         ((Settings:getTag ((entry:tags):getFirst)):asciiIcon))
       )))
 
-(define (calendar-cell-mapper data-mapper)
+;; Cells arrive with the month's entries already mapped by CALENDAR_DATA_MAPPER
+(define (calendar-cell-mapper)
   (KUnaryOperator[CalendarCell]
     (lambda (cell ::CalendarCell)
-      (let* ((rtn-cell ::CalendarCell cell))
-        (if (((LocalDate:now):atStartOfDay):isEqual ((cell:date):atStartOfDay))
-          (set! rtn-cell (cell:asHighlighted)))
-        (rtn-cell:withItems ((App:instance):getCalendarEvents (cell:date) data-mapper))))))
+      (if (((LocalDate:now):atStartOfDay):isEqual ((cell:date):atStartOfDay))
+        (cell:asHighlighted)
+        cell))))
 
 
 
@@ -67,7 +97,7 @@
     (set-static Settings `CALENDAR_CELL_WIDTH 34)
     (set-static Settings `CALENDAR_REFRESH_SEC (* 60 30))
     (set-static Settings `CALENDAR_DATA_MAPPER (calendar-full-data-mapper))
-    (set-static Settings `CALENDAR_CELL_MAPPER (calendar-cell-mapper (calendar-full-data-mapper)))
+    (set-static Settings `CALENDAR_CELL_MAPPER (calendar-cell-mapper))
     ))
 
 (define (load-shell-settings)
@@ -84,6 +114,10 @@
     (set-static Settings `EVENT_LOOK_FORWARD_DAYS -1) ; Set to -1 for all
     (set-static Settings `EVENT_REFRESH_INV_MIN 240)
     (set-static Settings `EVENT_NOTIFY_FADE_TIME_SEC (* 60 60))
+    (set-static Settings `EVENT_RECURRENCE_WINDOW_DAYS 60) ; How far ahead recurring events are listed and reminded
+    (set-static Settings `FREEBUSY_DAY_START (LocalTime:of 8 0)) ; Free slots are only found between these
+    (set-static Settings `FREEBUSY_DAY_END (LocalTime:of 18 0)) ; Same as start for the whole day
+    (set-static Settings `FREEBUSY_TASK_MINUTES 30) ; Blocked before each task's due by, 0 to ignore tasks
     ))
 
 (define (load-task-settings)
@@ -93,15 +127,28 @@
     (set-static Settings `MAX_PREVIEW_LENGTH 1000)
     ))
 
+(define (load-notification-settings)
+  (begin
+    (set-static Settings `NOTIFICATION_RETENTION_DAYS 30) ; Days fired reminders are kept in the outbox
+    ; Also available: (NotificationSink:log "path") and (NotificationSink:webhook "http://localhost:port/path")
+    (set-static Settings `NOTIFY_SINKS (List:of (NotificationSink:process) (NotificationSink:shell)))
+    ; Reminders due within this window of each other are sent as one summary
+    (set-static Settings `NOTIFY_COALESCE_MS 5000)
+    ; Cap on notify-send processes, reminders over it are held and sent as one summary
+    (set-static Settings `NOTIFY_MAX_PER_MIN 6)
+    ))
+
 
 
 (define (load-settings)
   (begin
     (load-app-settings)
+    (load-database-settings)
     (load-global-table-settings)
     (load-file-paths)
     (load-calendar-settings)
     (load-shell-settings)
     (load-event-settings)
     (load-task-settings)
+    (load-notification-settings)
     ))
\ No newline at end of file
@@ -18,3 +18,11 @@
 
 (define (add-eval-alias evaluator ::ShellEvaluator existingAlias ::String newAlias ::String)
   (evaluator:addAlias existingAlias newAlias))
+
+;; Structured search over notes/journals, query uses the same syntax as the "query" command, for example
+;; (search-notes "-i deploy OR release tag:work after:01/01/24") returns a list of SearchResult
+(define (search-notes query ::String)
+  (((App:instance):getNoteManager):query (SearchQuery:parse query)))
+
+(define (search-journals query ::String)
+  (((App:instance):getJournalManager):query (SearchQuery:parse query)))
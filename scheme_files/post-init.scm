@@ -45,6 +45,16 @@
 
 
 
+;; Free/busy over the event index and task due dates, ex. (free-slots 30 (LocalDateTime:now) ((LocalDateTime:now):plusDays 7))
+(define (free-slots minutes ::int from ::LocalDateTime to ::LocalDateTime)
+  ((AppInstance:getEventManager):findFreeSlots from to minutes))
+
+;; Busy blocks by day for the week holding date
+(define (busy-week date ::LocalDate)
+  ((AppInstance:getEventManager):getBusyWeek date))
+
+
+
 ;; Post init config options
 
 ;; This is an example of how to define an editor command, you can use multiple args. When ran the path of the file
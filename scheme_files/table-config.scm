@@ -68,7 +68,7 @@
     (set-static TableConfig `EVENT_OVERVIEW_TABLE event-overview-table)
     (set-static TableConfig `EVENT_DASHBOARD_FORMATTER
       (KFunction[EventEval String] (lambda (eval ::EventEval)
-        (TableUtil:mergeAndPadTable 10 (eval:futureEventTable) (eval:pastEventTable) ))))
+        (TableUtil:mergeAndPadTable 10 (eval:todayEventTable) (eval:futureEventTable) (eval:pastEventTable) ))))
     ))
 
 ;; Tasks
@@ -553,7 +553,9 @@
       (date:getMonth)
       15
       6
-      (calendar-cell-mapper (calendar-small-data-mapper)))))
+      (App:instance)
+      (calendar-small-data-mapper)
+      (calendar-cell-mapper))))
 
 
 (define dash-project-table
@@ -7,6 +7,10 @@ import io.mindspice.toastit.entries.project.ProjectManager;
 import io.mindspice.toastit.entries.task.TaskManager;
 import io.mindspice.toastit.entries.text.TextManager;
 import io.mindspice.toastit.enums.EntryType;
+import io.mindspice.toastit.notification.NotificationDispatcher;
+import io.mindspice.toastit.notification.NotificationOutbox;
+import io.mindspice.toastit.notification.ReminderScheduler;
+import io.mindspice.toastit.notification.ScheduledNotification;
 import io.mindspice.toastit.sqlite.DBConnection;
 import io.mindspice.toastit.entries.event.EventManager;
 import io.mindspice.kawautils.wrappers.KawaInstance;
@@ -16,13 +20,11 @@ import io.mindspice.toastit.util.Settings;
 import java.io.File;
 import java.io.IOException;
 import java.time.LocalDate;
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.List;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
-import java.util.function.BiFunction;
-import java.util.function.Function;
 
 
 public class App implements CalendarEvents {
@@ -32,6 +34,8 @@ public class App implements CalendarEvents {
     private ApplicationShell shell;
     private DBConnection dbConnection;
     private ScheduledExecutorService exec;
+    private NotificationDispatcher notificationDispatcher;
+    private ReminderScheduler reminderScheduler;
 
     //Managers
     private EventManager eventManager;
@@ -41,12 +45,15 @@ public class App implements CalendarEvents {
     private TextManager journalManager;
     private TodoManager todoManager;
 
-    public BiFunction<LocalDate, Function<DatedEntry, String>, List<String>> calendarEventProvider = (date, func) -> {
-        var eventList = new ArrayList<String>();
-        eventList.addAll(eventManager.getCalendarEvents(date, func));
-        eventList.addAll(projectManager.getCalendarEvents(date, func));
-        eventList.addAll(taskManager.getCalendarEvents(date, func));
-        return eventList;
+    // Events, then projects, then tasks within each day
+    public CalendarEvents calendarEventProvider = (from, to) -> {
+        Map<LocalDate, List<DatedEntry>> days = new TreeMap<>();
+        for (var source : List.<CalendarEvents>of(eventManager, projectManager, taskManager)) {
+            source.getCalendarEntries(from, to).forEach((day, entries) ->
+                    days.computeIfAbsent(day, d -> new ArrayList<>()).addAll(entries)
+            );
+        }
+        return days;
     };
 
     static {
@@ -81,6 +88,10 @@ public class App implements CalendarEvents {
         scheme.defineObject("AppInstance", this);
 
         exec = Executors.newScheduledThreadPool(Settings.EXEC_THREADS);
+        notificationDispatcher = new NotificationDispatcher(
+                Settings.NOTIFY_SINKS, Settings.NOTIFY_COALESCE_MS, Settings.NOTIFY_MAX_PER_MIN
+        ).start();
+        reminderScheduler = new ReminderScheduler(notificationDispatcher, new NotificationOutbox(dbConnection)).start();
         eventManager = new EventManager();
         taskManager = new TaskManager();
         projectManager = new ProjectManager();
@@ -89,6 +100,7 @@ public class App implements CalendarEvents {
         todoManager = new TodoManager();
         shell = new ApplicationShell(scheme);
 
+        fireMissedReminders(); // Before the first refresh schedules anything
         eventManager.init();
         taskManager.init();
         projectManager.init();
@@ -103,6 +115,53 @@ public class App implements CalendarEvents {
         return INSTANCE;
     }
 
+    // Reminders that came due while the app was down, recorded as fired first then dispatched once as one batch
+    private void fireMissedReminders() {
+        try {
+            LocalDateTime minute = LocalDateTime.now().truncatedTo(ChronoUnit.MINUTES);
+            dbConnection.pruneNotifications(minute.minusDays(Settings.NOTIFICATION_RETENTION_DAYS));
+            var missed = dbConnection.getMissedNotifications(minute);
+            if (missed.isEmpty()) {
+                return;
+            }
+            dbConnection.markNotificationsFired(missed);
+            Map<UUID, List<ScheduledNotification>> byEntry = new HashMap<>();
+            List<ScheduledNotification> due = new ArrayList<>(missed.size());
+            for (var row : missed) {
+                if (!byEntry.containsKey(row.uuid())) {
+                    byEntry.put(row.uuid(), currentReminders(row.uuid(), row.type()));
+                }
+                // Reminders moved or removed since the row was written are dropped
+                byEntry.get(row.uuid()).stream()
+                        .filter(reminder -> reminder.time().equals(row.dueAt()))
+                        .findFirst()
+                        .ifPresent(due::add);
+            }
+            reminderScheduler.dispatch(due);
+        } catch (IOException e) {
+            System.err.println("Error firing missed reminders: " + e.getMessage());
+        }
+    }
+
+    private List<ScheduledNotification> currentReminders(UUID uuid, EntryType type) {
+        try {
+            return switch (type) {
+                case TASK -> dbConnection.getTasksByUUIDs(List.of(uuid)).stream()
+                        .flatMap(task -> taskManager.createTaskReminders.apply(task).stream())
+                        .toList();
+                case PROJECT -> projectManager.createProjectReminders.apply(dbConnection.getProjectByUUID(uuid));
+                case EVENT -> {
+                    var event = dbConnection.getEventByUUID(uuid);
+                    yield event == null ? List.of() : eventManager.createEventReminders.apply(event);
+                }
+                default -> List.of();
+            };
+        } catch (IOException e) {
+            System.err.printf("Skipping missed reminders for: %s, Error: %s%n", uuid, e.getMessage());
+            return List.of();
+        }
+    }
+
     public DBConnection getDatabase() {
         return dbConnection;
     }
@@ -111,6 +170,10 @@ public class App implements CalendarEvents {
         return exec;
     }
 
+    public ReminderScheduler getReminderScheduler() {
+        return reminderScheduler;
+    }
+
     public ApplicationShell getShell() {
         return shell;
     }
@@ -141,7 +204,7 @@ public class App implements CalendarEvents {
 
 
     @Override
-    public List<String> getCalendarEvents(LocalDate date, Function<DatedEntry, String> dataMapper) {
-        return calendarEventProvider.apply(date, dataMapper);
+    public Map<LocalDate, List<DatedEntry>> getCalendarEntries(LocalDate from, LocalDate to) {
+        return calendarEventProvider.getCalendarEntries(from, to);
     }
 }
@@ -8,6 +8,8 @@ import com.indvd00m.ascii.render.elements.Label;
 import com.indvd00m.ascii.render.elements.Table;
 import com.indvd00m.ascii.render.elements.Text;
 import io.mindspice.mindlib.data.tuples.Pair;
+import io.mindspice.toastit.entries.CalendarEvents;
+import io.mindspice.toastit.entries.DatedEntry;
 import io.mindspice.toastit.util.Settings;
 import io.mindspice.toastit.util.TableUtil;
 
@@ -39,6 +41,31 @@ public class Calendar {
         return header + "\n" + table;
     }
 
+    // Cells are filled from one range lookup for the whole month before the mapper runs
+    public static String generateCalendar(int year, Month month, int width, int height, CalendarEvents events,
+            Function<DatedEntry, String> dataMapper, UnaryOperator<CalendarCell> mapper) {
+        var cellInfo = generateCalenderCells(YearMonth.of(year, month));
+        var header = createHeaderRow(width);
+        var cells = withEntries(cellInfo.second(), events, dataMapper);
+        var table = createDayCells(cellInfo.first(), width, height, cells, mapper);
+        return header + "\n" + table;
+    }
+
+    public static List<CalendarCell> withEntries(List<CalendarCell> cells, CalendarEvents events,
+            Function<DatedEntry, String> dataMapper) {
+        if (cells.isEmpty()) {
+            return cells;
+        }
+        var days = events.getCalendarEntries(cells.getFirst().date(), cells.getLast().date().plusDays(1));
+        return cells.stream().map(cell -> {
+            var entries = days.getOrDefault(cell.date(), List.of());
+            return cell.withItemsAndUUIDs(
+                    entries.stream().map(dataMapper).toList(),
+                    entries.stream().map(entry -> entry.uuid().toString()).toList()
+            );
+        }).toList();
+    }
+
     public static String createHeaderRow(int width) {
         IRender render = new Render();
         IContextBuilder builder = render.newBuilder();
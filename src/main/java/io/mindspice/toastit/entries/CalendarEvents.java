@@ -1,12 +1,44 @@
 package io.mindspice.toastit.entries;
 
 import java.time.LocalDate;
-import java.time.temporal.ChronoUnit;
-import java.util.List;
+import java.time.LocalDateTime;
+import java.util.*;
 import java.util.function.Function;
 
 
 public interface CalendarEvents {
-   List<String> getCalendarEvents(LocalDate date, Function<DatedEntry, String> dataMapper);
+    // Entries in [from, to) by day, looked up once for the whole range so a calendar render isn't a lookup per cell
+    Map<LocalDate, List<DatedEntry>> getCalendarEntries(LocalDate from, LocalDate to);
 
+    default List<String> getCalendarEvents(LocalDate date, Function<DatedEntry, String> dataMapper) {
+        return getCalendarEntries(date, date.plusDays(1)).getOrDefault(date, List.of()).stream()
+                .map(dataMapper)
+                .toList();
+    }
+
+    static <T extends DatedEntry> Map<LocalDate, List<DatedEntry>> byDay(List<T> entries,
+            Function<T, LocalDateTime> dateFunction) {
+        Map<LocalDate, List<DatedEntry>> days = new TreeMap<>();
+        entries.forEach(entry ->
+                days.computeIfAbsent(dateFunction.apply(entry).toLocalDate(), d -> new ArrayList<>()).add(entry)
+        );
+        return days;
+    }
+
+    // Entries on every day in [from, to) that their [start, end) touches
+    static <T extends DatedEntry> Map<LocalDate, List<DatedEntry>> byDays(List<T> entries,
+            Function<T, LocalDateTime> startFunction, Function<T, LocalDateTime> endFunction,
+            LocalDate from, LocalDate to) {
+        Map<LocalDate, List<DatedEntry>> days = new TreeMap<>();
+        for (var entry : entries) {
+            LocalDateTime start = startFunction.apply(entry);
+            LocalDateTime end = endFunction.apply(entry);
+            LocalDate last = end.isAfter(start) ? end.minusNanos(1).toLocalDate() : start.toLocalDate();
+            for (LocalDate day = start.toLocalDate().isBefore(from) ? from : start.toLocalDate();
+                 !day.isAfter(last) && day.isBefore(to); day = day.plusDays(1)) {
+                days.computeIfAbsent(day, d -> new ArrayList<>()).add(entry);
+            }
+        }
+        return days;
+    }
 }
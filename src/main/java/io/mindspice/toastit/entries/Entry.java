@@ -3,9 +3,11 @@ package io.mindspice.toastit.entries;
 import io.mindspice.toastit.enums.EntryType;
 
 import java.util.List;
+import java.util.UUID;
 
 
 public interface Entry {
+    UUID uuid();
     String name();
     String description();
     List<String> tags();
@@ -0,0 +1,359 @@
+package io.mindspice.toastit.entries;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+
+/*
+ * Entries keyed by uuid, with sorted views that are kept in step on every write. Reads never lock, get() is a hash
+ * lookup and views are skip lists read in order, writes are O(log n) per view. Writes are serialized, a reader may
+ * briefly miss an entry while it is being replaced but never sees it twice. Views are keyed on entry fields, so
+ * stored entries must be immutable (records).
+ */
+public class EntryStore<T extends Entry> {
+    private static final UUID MIN_UUID = new UUID(Long.MIN_VALUE, Long.MIN_VALUE);
+    private static final UUID MAX_UUID = new UUID(Long.MAX_VALUE, Long.MAX_VALUE);
+
+    private final ConcurrentHashMap<UUID, T> entries = new ConcurrentHashMap<>();
+    private final List<Index<T>> views = new CopyOnWriteArrayList<>();
+
+    // Result of replaceAll, upserted holds entries that were added or differ from the stored version
+    public record Diff<T>(List<T> upserted, List<T> removed) {
+        public boolean isEmpty() {
+            return upserted.isEmpty() && removed.isEmpty();
+        }
+    }
+
+    // Ties on the key are ordered by uuid, so entries with equal keys are all kept
+    public synchronized <K extends Comparable<? super K>> View<T, K> addView(Function<T, K> keyFunction) {
+        var view = new View<T, K>(keyFunction);
+        entries.values().forEach(view::add);
+        views.add(view);
+        return view;
+    }
+
+    // Ordered by start, ends before starts are treated as zero length
+    public synchronized <K extends Comparable<? super K>> IntervalView<T, K> addIntervalView(
+            Function<T, K> startFunction, Function<T, K> endFunction) {
+        var view = new IntervalView<T, K>(startFunction, endFunction);
+        entries.values().forEach(view::add);
+        views.add(view);
+        return view;
+    }
+
+    public T get(UUID uuid) {
+        return entries.get(uuid);
+    }
+
+    public boolean contains(UUID uuid) {
+        return entries.containsKey(uuid);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    // Unordered, use a view for ordering
+    public Collection<T> values() {
+        return Collections.unmodifiableCollection(entries.values());
+    }
+
+    // Inserts or replaces by uuid, returns the replaced entry or null
+    public synchronized T put(T entry) {
+        T old = entries.put(entry.uuid(), entry);
+        for (var view : views) {
+            if (old != null) {
+                view.remove(old);
+            }
+            view.add(entry);
+        }
+        return old;
+    }
+
+    public synchronized T remove(UUID uuid) {
+        T old = entries.remove(uuid);
+        if (old != null) {
+            views.forEach(view -> view.remove(old));
+        }
+        return old;
+    }
+
+    // Returns the removed entries
+    public synchronized List<T> removeIf(Predicate<T> predicate) {
+        List<T> removed = entries.values().stream().filter(predicate).toList();
+        removed.forEach(entry -> remove(entry.uuid()));
+        return removed;
+    }
+
+    // Makes the store hold exactly newEntries, only entries that were added, changed or dropped touch the views
+    public synchronized Diff<T> replaceAll(Collection<T> newEntries) {
+        Map<UUID, T> incoming = new HashMap<>(newEntries.size());
+        newEntries.forEach(entry -> incoming.put(entry.uuid(), entry));
+        List<T> removed = new ArrayList<>();
+        for (var uuid : List.copyOf(entries.keySet())) {
+            if (!incoming.containsKey(uuid)) {
+                removed.add(remove(uuid));
+            }
+        }
+        List<T> upserted = new ArrayList<>();
+        for (var entry : incoming.values()) {
+            if (!entry.equals(entries.get(entry.uuid()))) {
+                put(entry);
+                upserted.add(entry);
+            }
+        }
+        return new Diff<>(upserted, removed);
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        views.forEach(Index::clear);
+    }
+
+    private interface Index<T> {
+        void add(T entry);
+
+        void remove(T entry);
+
+        void clear();
+    }
+
+    public static class View<T extends Entry, K extends Comparable<? super K>> implements Index<T> {
+        private record Key<K>(K key, UUID uuid) { }
+
+        private final Function<T, K> keyFunction;
+        private final ConcurrentSkipListMap<Key<K>, T> entries;
+
+        private View(Function<T, K> keyFunction) {
+            this.keyFunction = keyFunction;
+            this.entries = new ConcurrentSkipListMap<>(
+                    Comparator.<Key<K>, K>comparing(Key::key).thenComparing(Key::uuid)
+            );
+        }
+
+        @Override
+        public void add(T entry) {
+            entries.put(new Key<>(keyFunction.apply(entry), entry.uuid()), entry);
+        }
+
+        @Override
+        public void remove(T entry) {
+            entries.remove(new Key<>(keyFunction.apply(entry), entry.uuid()));
+        }
+
+        @Override
+        public void clear() {
+            entries.clear();
+        }
+
+        public List<T> list() {
+            return List.copyOf(entries.values());
+        }
+
+        public Stream<T> stream() {
+            return entries.values().stream();
+        }
+
+        public int size() {
+            return entries.size();
+        }
+
+        public T first() {
+            var first = entries.firstEntry();
+            return first == null ? null : first.getValue();
+        }
+
+        // Keys in [from, to)
+        public List<T> range(K from, K to) {
+            if (from.compareTo(to) >= 0) {
+                return List.of();
+            }
+            return List.copyOf(entries.subMap(new Key<>(from, MIN_UUID), new Key<>(to, MIN_UUID)).values());
+        }
+
+        public List<T> before(K to) {
+            return List.copyOf(entries.headMap(new Key<>(to, MIN_UUID)).values());
+        }
+
+        public List<T> from(K from) {
+            return List.copyOf(entries.tailMap(new Key<>(from, MIN_UUID)).values());
+        }
+
+        public List<T> equalTo(K key) {
+            return List.copyOf(entries.subMap(new Key<>(key, MIN_UUID), true, new Key<>(key, MAX_UUID), true).values());
+        }
+    }
+
+    /*
+     * Interval tree over [start, end), a treap ordered by (start, uuid) where every node also holds the greatest end
+     * below it, so overlap queries only descend into subtrees that can hold a match. Nodes are immutable and writes
+     * copy the O(log n) path they touch then swap the root, so like the skip list views reads never lock and always
+     * see a consistent tree.
+     */
+    public static class IntervalView<T extends Entry, K extends Comparable<? super K>> implements Index<T> {
+        private final Function<T, K> startFunction;
+        private final Function<T, K> endFunction;
+        private volatile Node<T, K> root;
+
+        private record Node<T extends Entry, K extends Comparable<? super K>>(T entry, K start, K end, int priority,
+                Node<T, K> left, Node<T, K> right, K maxEnd) {
+
+            Node(T entry, K start, K end, int priority, Node<T, K> left, Node<T, K> right) {
+                this(entry, start, end, priority, left, right, max(end, max(maxEndOf(left), maxEndOf(right))));
+            }
+
+            Node<T, K> with(Node<T, K> left, Node<T, K> right) {
+                return new Node<>(entry, start, end, priority, left, right);
+            }
+
+            UUID uuid() {
+                return entry.uuid();
+            }
+        }
+
+        private record Split<T extends Entry, K extends Comparable<? super K>>(Node<T, K> lower, Node<T, K> upper) { }
+
+        private IntervalView(Function<T, K> startFunction, Function<T, K> endFunction) {
+            this.startFunction = startFunction;
+            this.endFunction = endFunction;
+        }
+
+        @Override
+        public void add(T entry) {
+            K start = startFunction.apply(entry);
+            root = insert(root, new Node<>(entry, start, max(start, endFunction.apply(entry)),
+                    priority(entry.uuid()), null, null));
+        }
+
+        @Override
+        public void remove(T entry) {
+            root = delete(root, startFunction.apply(entry), entry.uuid());
+        }
+
+        @Override
+        public void clear() {
+            root = null;
+        }
+
+        // Intervals overlapping [from, to), zero length intervals count if they fall inside, ordered by start
+        public List<T> overlapping(K from, K to) {
+            List<T> found = new ArrayList<>();
+            if (from.compareTo(to) < 0) {
+                collect(root, from, to, false, found);
+            }
+            return found;
+        }
+
+        // Intervals containing the point
+        public List<T> at(K point) {
+            List<T> found = new ArrayList<>();
+            collect(root, point, point, true, found);
+            return found;
+        }
+
+        // Intervals lying entirely inside [from, to)
+        public List<T> within(K from, K to) {
+            return overlapping(from, to).stream()
+                    .filter(entry -> startFunction.apply(entry).compareTo(from) >= 0
+                            && endFunction.apply(entry).compareTo(to) <= 0)
+                    .toList();
+        }
+
+        public boolean isEmpty() {
+            return root == null;
+        }
+
+        private static <T extends Entry, K extends Comparable<? super K>> void collect(Node<T, K> node, K from, K to,
+                boolean toInclusive, List<T> found) {
+            if (node == null || node.maxEnd.compareTo(from) < 0) {
+                return;
+            }
+            collect(node.left, from, to, toInclusive, found);
+            int startToEnd = node.start.compareTo(to);
+            if (toInclusive ? startToEnd > 0 : startToEnd >= 0) {
+                return; // Everything to the right starts later
+            }
+            if (node.end.compareTo(from) > 0 || node.start.compareTo(from) >= 0) {
+                found.add(node.entry);
+            }
+            collect(node.right, from, to, toInclusive, found);
+        }
+
+        private static <T extends Entry, K extends Comparable<? super K>> Node<T, K> insert(Node<T, K> node, Node<T, K> added) {
+            if (node == null) {
+                return added;
+            }
+            if (added.priority > node.priority) {
+                var split = split(node, added.start, added.uuid());
+                return added.with(split.lower, split.upper);
+            }
+            return compare(added.start, added.uuid(), node) < 0
+                   ? node.with(insert(node.left, added), node.right)
+                   : node.with(node.left, insert(node.right, added));
+        }
+
+        private static <T extends Entry, K extends Comparable<? super K>> Node<T, K> delete(Node<T, K> node, K start, UUID uuid) {
+            if (node == null) {
+                return null;
+            }
+            int cmp = compare(start, uuid, node);
+            if (cmp == 0) {
+                return merge(node.left, node.right);
+            }
+            return cmp < 0
+                   ? node.with(delete(node.left, start, uuid), node.right)
+                   : node.with(node.left, delete(node.right, start, uuid));
+        }
+
+        private static <T extends Entry, K extends Comparable<? super K>> Split<T, K> split(Node<T, K> node, K start, UUID uuid) {
+            if (node == null) {
+                return new Split<>(null, null);
+            }
+            if (compare(start, uuid, node) <= 0) {
+                var split = split(node.left, start, uuid);
+                return new Split<>(split.lower, node.with(split.upper, node.right));
+            }
+            var split = split(node.right, start, uuid);
+            return new Split<>(node.with(node.left, split.lower), split.upper);
+        }
+
+        // Every key in lower is before every key in upper
+        private static <T extends Entry, K extends Comparable<? super K>> Node<T, K> merge(Node<T, K> lower, Node<T, K> upper) {
+            if (lower == null) { return upper; }
+            if (upper == null) { return lower; }
+            return lower.priority > upper.priority
+                   ? lower.with(lower.left, merge(lower.right, upper))
+                   : upper.with(merge(lower, upper.left), upper.right);
+        }
+
+        private static <T extends Entry, K extends Comparable<? super K>> int compare(K start, UUID uuid, Node<T, K> node) {
+            int cmp = start.compareTo(node.start);
+            return cmp != 0 ? cmp : uuid.compareTo(node.uuid());
+        }
+
+        private static <K extends Comparable<? super K>> K maxEndOf(Node<?, K> node) {
+            return node == null ? null : node.maxEnd;
+        }
+
+        private static <K extends Comparable<? super K>> K max(K a, K b) {
+            if (a == null) { return b; }
+            if (b == null) { return a; }
+            return a.compareTo(b) >= 0 ? a : b;
+        }
+
+        // Uuids aren't always random, mixed so the treap stays balanced for sequential ones
+        private static int priority(UUID uuid) {
+            long h = (uuid.getMostSignificantBits() ^ uuid.getLeastSignificantBits()) * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32));
+        }
+    }
+}
@@ -11,6 +11,8 @@ import io.mindspice.toastit.util.DateTimeUtil;
 import io.mindspice.toastit.util.JSON;
 import io.mindspice.toastit.util.Util;
 
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.time.temporal.ChronoUnit;
@@ -26,10 +28,65 @@ public record EventEntry(
         LocalDateTime endTime,
         List<Reminder> reminders,
         UUID linkedUUID,
-        boolean completed
+        boolean completed,
+        Recurrence recurrence, // Null unless the entry is a series
+        UUID seriesUUID // Null unless the entry is an occurrence expanded from a series
 ) implements Entry, DatedEntry {
+
+    public EventEntry(UUID uuid, String name, List<String> tags, LocalDateTime startTime, LocalDateTime endTime,
+            List<Reminder> reminders, UUID linkedUUID, boolean completed) {
+        this(uuid, name, tags, startTime, endTime, reminders, linkedUUID, completed, null, null);
+    }
+
     public EventEntry asCompleted() {
-        return new EventEntry(uuid, name, tags, startTime, endTime, reminders, linkedUUID, true);
+        return new EventEntry(uuid, name, tags, startTime, endTime, reminders, linkedUUID, true, recurrence, seriesUUID);
+    }
+
+    public boolean isRecurring() {
+        return recurrence != null;
+    }
+
+    public boolean isOccurrence() {
+        return seriesUUID != null;
+    }
+
+    /*
+     * Occurrences of a series overlapping [from, to), each with a uuid derived from the series and its start, so the
+     * same occurrence is equal across expansions. Reminders keep their offset from the start.
+     */
+    public List<EventEntry> occurrences(LocalDateTime from, LocalDateTime to) {
+        if (recurrence == null) {
+            return List.of();
+        }
+        Duration duration = endTime.isAfter(startTime) ? Duration.between(startTime, endTime) : Duration.ZERO;
+        return recurrence.startsOverlapping(startTime, duration, from, to).stream()
+                .map(start -> {
+                    Duration offset = Duration.between(startTime, start);
+                    return new EventEntry(
+                            UUID.nameUUIDFromBytes((uuid + "@" + start).getBytes(StandardCharsets.UTF_8)),
+                            name,
+                            tags,
+                            start,
+                            start.plus(duration),
+                            reminders.stream().map(r -> new Reminder(r.time().plus(offset), r.level())).toList(),
+                            linkedUUID,
+                            completed,
+                            null,
+                            uuid
+                    );
+                }).toList();
+    }
+
+    // End of the last occurrence, null for a series with no end
+    public LocalDateTime seriesEnd() {
+        if (recurrence == null) {
+            return endTime;
+        }
+        LocalDateTime lastStart = recurrence.lastStart(startTime);
+        if (lastStart == null) {
+            return recurrence.hasEnd() ? endTime : null;
+        }
+        return endTime.isAfter(startTime) ? lastStart.plus(Duration.between(startTime, endTime)) : lastStart;
     }
 
     public EventEntry {
@@ -40,6 +97,7 @@ public record EventEntry(
     }
 
     public Stub getStub() throws JsonProcessingException {
+        LocalDateTime seriesEnd = seriesEnd();
         return new Stub(
                 uuid.toString(),
                 name,
@@ -48,7 +106,9 @@ public record EventEntry(
                 endTime.atZone(ZoneId.systemDefault()).toInstant().getEpochSecond(),
                 JSON.writeString(reminders.stream().map(Reminder::getStub).toList()),
                 linkedUUID.toString(),
-                completed
+                completed,
+                recurrence == null ? null : JSON.writeString(recurrence),
+                seriesEnd == null ? null : seriesEnd.atZone(ZoneId.systemDefault()).toInstant().getEpochSecond()
         );
     }
 
@@ -94,6 +154,8 @@ public record EventEntry(
         public List<Reminder> reminders = new ArrayList<>();
         public UUID linkedUUID = Util.NULL_UUID;
         public boolean completed = false;
+        public Recurrence recurrence = null;
+        public UUID seriesUUID = null;
 
         public Builder() { }
 
@@ -106,6 +168,8 @@ public record EventEntry(
             this.reminders = e.reminders;
             this.linkedUUID = e.linkedUUID;
             this.completed = e.completed;
+            this.recurrence = e.recurrence;
+            this.seriesUUID = e.seriesUUID;
         }
 
         public EventEntry build() {
@@ -117,7 +181,9 @@ public record EventEntry(
                     endTime,
                     reminders,
                     linkedUUID,
-                    completed
+                    completed,
+                    recurrence,
+                    seriesUUID
             );
         }
 
@@ -133,6 +199,9 @@ public record EventEntry(
             if (!endTime.equals(LocalDateTime.MAX)) {
                 rntList.add(Pair.of("End Time", DateTimeUtil.printDateTimeFull(endTime)));
             }
+            if (recurrence != null) {
+                rntList.add(Pair.of("Repeats", recurrence.toString()));
+            }
             if (!tags.isEmpty()) {
                 rntList.add(Pair.of("Tags", tags.toString()));
             }
@@ -154,6 +223,8 @@ public record EventEntry(
             long endTime,
             String reminders,
             String linkedUUID,
-            boolean completed
+            boolean completed,
+            String recurrence,
+            Long seriesEnd
     ) { }
 }
@@ -4,19 +4,24 @@ import io.mindspice.toastit.App;
 import io.mindspice.mindlib.data.tuples.Pair;
 import io.mindspice.toastit.entries.CalendarEvents;
 import io.mindspice.toastit.entries.DatedEntry;
+import io.mindspice.toastit.entries.EntryStore;
 import io.mindspice.toastit.entries.task.TaskEntry;
+import io.mindspice.toastit.enums.EntryType;
 import io.mindspice.toastit.notification.Notify;
 import io.mindspice.toastit.notification.Reminder;
+import io.mindspice.toastit.notification.ReminderScheduler;
 import io.mindspice.toastit.notification.ScheduledNotification;
 import io.mindspice.toastit.util.DateTimeUtil;
 import io.mindspice.toastit.util.Settings;
 import io.mindspice.toastit.util.Tag;
 
 import java.io.IOException;
+import java.time.DayOfWeek;
 import java.time.Instant;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
 import java.util.*;
 import java.util.concurrent.*;
 import java.util.function.Consumer;
@@ -26,16 +31,29 @@ import java.util.stream.Stream;
 
 
 public class EventManager implements CalendarEvents {
-    public List<ScheduledNotification> scheduledNotifications = new CopyOnWriteArrayList<>();
-    public final List<EventEntry> pastEvents = new CopyOnWriteArrayList<>();
-    public final List<EventEntry> futureEvents = new CopyOnWriteArrayList<>();
+    public final EntryStore<EventEntry> pastEvents = new EntryStore<>();
+    private final EntryStore.View<EventEntry, LocalDateTime> pastByStart = pastEvents.addView(EventEntry::startTime);
+    private final EntryStore.IntervalView<EventEntry, LocalDateTime> pastByTime =
+            pastEvents.addIntervalView(EventEntry::startTime, EventEntry::endTime);
+    public final EntryStore<EventEntry> futureEvents = new EntryStore<>();
+    private final EntryStore.View<EventEntry, LocalDateTime> futureByStart = futureEvents.addView(EventEntry::startTime);
+    private final EntryStore.View<EventEntry, LocalDateTime> futureByEnd = futureEvents.addView(EventEntry::endTime);
+    private final EntryStore.IntervalView<EventEntry, LocalDateTime> futureByTime =
+            futureEvents.addIntervalView(EventEntry::startTime, EventEntry::endTime);
+    // Recurring rows, their occurrences are expanded for whatever window is asked for and never stored
+    public final EntryStore<EventEntry> seriesEvents = new EntryStore<>();
     public final ScheduledExecutorService exec = App.instance().getExec();
+    private final ReminderScheduler reminders = App.instance().getReminderScheduler();
     public volatile long lastEventReCalc = Instant.now().getEpochSecond();
+    private volatile LocalDateTime loadedUntil; // Events starting before this are loaded, null until the first load
+    private volatile LocalDateTime expandedUntil; // Series occurrences starting before this are listed
 
+    // One full load, after that the window only advances
     public void init() {
+        exec.schedule(() -> refreshEventNotifications.accept(this), 0, TimeUnit.MINUTES);
         exec.scheduleAtFixedRate(
-                () -> refreshEventNotifications.accept(this),
-                0,
+                this::advanceWindow,
+                Settings.EVENT_REFRESH_INV_MIN,
                 Settings.EVENT_REFRESH_INV_MIN,
                 TimeUnit.MINUTES
         );
@@ -45,47 +63,196 @@ public class EventManager implements CalendarEvents {
         if (Instant.now().getEpochSecond() > lastEventReCalc + 60) {
             reCalcEventsLists();
         }
-        return pastEvents;
+        return pastByStart.list();
     }
 
     public List<EventEntry> getFutureEvents() {
         if (Instant.now().getEpochSecond() > lastEventReCalc + 60) {
             reCalcEventsLists();
         }
-        return futureEvents;
+        return futureByStart.list();
+    }
+
+    /*
+     * Interval lookups cover both stores, so they don't depend on when events were last moved to past. Occurrences
+     * are expanded from their series for the asked window rather than read from the stores, which only list them
+     * up to expansionEnd().
+     */
+
+    public List<EventEntry> getEventsOverlapping(LocalDateTime from, LocalDateTime to) {
+        return withOccurrences(pastByTime.overlapping(from, to), futureByTime.overlapping(from, to), from, to);
+    }
+
+    public List<EventEntry> getEventsAt(LocalDateTime time) {
+        return withOccurrences(pastByTime.at(time), futureByTime.at(time), time, time.plusNanos(1));
+    }
+
+    public List<EventEntry> getEventsWithin(LocalDateTime from, LocalDateTime to) {
+        return getEventsOverlapping(from, to).stream()
+                .filter(event -> !event.startTime().isBefore(from) && !event.endTime().isAfter(to))
+                .toList();
+    }
+
+    public List<EventEntry> getEventsOn(LocalDate date) {
+        return getEventsOverlapping(date.atStartOfDay(), date.plusDays(1).atStartOfDay());
+    }
+
+    // Other events sharing any of the event's time, a series is checked over its upcoming window of occurrences
+    public List<EventEntry> getConflicts(EventEntry event) {
+        List<EventEntry> slots = List.of(event);
+        if (event.isRecurring()) {
+            LocalDateTime from = event.startTime().isAfter(LocalDateTime.now()) ? event.startTime() : LocalDateTime.now();
+            slots = event.occurrences(from, from.plusDays(Settings.EVENT_RECURRENCE_WINDOW_DAYS));
+        }
+        return slots.stream()
+                .flatMap(slot -> getEventsOverlapping(slot.startTime(), slot.endTime()).stream())
+                .filter(other -> !other.uuid().equals(event.uuid()) && !event.uuid().equals(other.seriesUUID()))
+                .distinct()
+                .toList();
+    }
+
+    private List<EventEntry> withOccurrences(List<EventEntry> past, List<EventEntry> future, LocalDateTime from,
+            LocalDateTime to) {
+        Stream<EventEntry> stored = Stream.concat(past.stream(), future.stream()).filter(e -> !e.isOccurrence());
+        Stream<EventEntry> expanded = seriesEvents.values().stream()
+                .flatMap(series -> series.occurrences(from, to).stream());
+        return Stream.concat(stored, expanded).sorted(Comparator.comparing(EventEntry::startTime)).toList();
+    }
+
+    /*
+     * Busy time in [from, to), events from getEventsBetween (so ranges past the look forward window are read from the
+     * database) plus a block of FREEBUSY_TASK_MINUTES ending at each active task's due by, merged by FreeBusy.
+     */
+    public List<FreeBusy.Slot> getBusy(LocalDateTime from, LocalDateTime to) throws IOException {
+        List<FreeBusy.Slot> intervals = new ArrayList<>();
+        getEventsBetween(from, to).forEach(event ->
+                intervals.add(new FreeBusy.Slot(event.startTime(), event.endTime()))
+        );
+        int taskMinutes = Settings.FREEBUSY_TASK_MINUTES;
+        if (taskMinutes > 0) {
+            App.instance().getTaskManager().getTasksDueBetween(from, to.plusMinutes(taskMinutes)).forEach(task ->
+                    intervals.add(new FreeBusy.Slot(task.dueBy().minusMinutes(taskMinutes), task.dueBy()))
+            );
+        }
+        return FreeBusy.busy(intervals, from, to);
+    }
+
+    // Free slots of at least minutes within the FREEBUSY_DAY_START to FREEBUSY_DAY_END hours of each day
+    public List<FreeBusy.Slot> findFreeSlots(LocalDateTime from, LocalDateTime to, int minutes) throws IOException {
+        return FreeBusy.free(
+                getBusy(from, to), from, to, minutes, Settings.FREEBUSY_DAY_START, Settings.FREEBUSY_DAY_END
+        );
     }
 
-    public void reCalcEventsLists() {
-        List<EventEntry> newPastEvents = futureEvents.stream().filter(e -> e.endTime().isBefore(LocalDateTime.now())).toList();
-        pastEvents.addAll(newPastEvents);
-        futureEvents.removeAll(newPastEvents);
+    // Busy blocks for each day of the Monday to Sunday week holding date
+    public Map<LocalDate, List<FreeBusy.Slot>> getBusyWeek(LocalDate date) throws IOException {
+        LocalDate monday = date.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+        LocalDate nextMonday = monday.plusWeeks(1);
+        return FreeBusy.perDay(getBusy(monday.atStartOfDay(), nextMonday.atStartOfDay()), monday, nextMonday);
     }
 
-    public void clearPastEvents() throws IOException {
+    // Recurring events are listed and reminded up to here
+    public LocalDateTime expansionEnd() {
+        LocalDateTime end = LocalDateTime.now().plusDays(Settings.EVENT_RECURRENCE_WINDOW_DAYS);
+        if (Settings.EVENT_LOOK_FORWARD_DAYS != -1) {
+            LocalDateTime lookForward = LocalDateTime.now().plusDays(Settings.EVENT_LOOK_FORWARD_DAYS);
+            return lookForward.isBefore(end) ? lookForward : end;
+        }
+        return end;
+    }
+
+    // Only the events that ended since the last call are touched, found from the head of the end time view
+    public synchronized void reCalcEventsLists() {
+        for (var event : futureByEnd.before(LocalDateTime.now())) {
+            futureEvents.remove(event.uuid());
+            if (!event.isOccurrence()) {
+                pastEvents.put(event); // Past occurrences are expanded from their series when asked for
+            }
+        }
+        lastEventReCalc = Instant.now().getEpochSecond();
+    }
+
+    /*
+     * Moves the cached window forward with the clock. Ended events roll to past from the head of the end time view,
+     * events whose start has entered the look forward window are fetched with one range query, and series are only
+     * expanded over the days that entered. Nothing already loaded is re-read, compared or re-sorted, the views take
+     * each new event in O(log n). Edits made here keep the cache in step, refreshEventNotifications is the full
+     * reload for changes made behind its back (imports). The edit methods hold the same monitor as this and reload,
+     * so an edit never lands between a reload's read and its replaceAll, or halfway through a series expansion.
+     */
+    public synchronized void advanceWindow() {
+        if (loadedUntil == null) {
+            refreshEventNotifications.accept(this);
+            return;
+        }
+        reCalcEventsLists();
+        try {
+            if (Settings.EVENT_LOOK_FORWARD_DAYS != -1) {
+                LocalDateTime horizon = LocalDateTime.now().plusDays(Settings.EVENT_LOOK_FORWARD_DAYS);
+                if (horizon.isAfter(loadedUntil)) {
+                    var entered = App.instance().getDatabase().getEventsStartingBetween(
+                            DateTimeUtil.localToUnix(loadedUntil), DateTimeUtil.localToUnix(horizon)
+                    );
+                    for (var event : entered) {
+                        if (event.isRecurring()) {
+                            seriesEvents.put(event); // Expanded with the rest below
+                        } else {
+                            futureEvents.put(event);
+                            reminders.reconcile(event.uuid(), createEventReminders.apply(event));
+                        }
+                    }
+                    loadedUntil = horizon;
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Failed to advance event window: " + e.getMessage());
+        }
+
+        LocalDateTime expansionEnd = expansionEnd();
+        if (expansionEnd.isAfter(expandedUntil)) {
+            LocalDateTime from = expandedUntil;
+            for (var series : seriesEvents.values()) {
+                series.occurrences(from, expansionEnd).stream()
+                        .filter(occurrence -> !occurrence.startTime().isBefore(from))
+                        .forEach(futureEvents::put);
+                reminders.reconcile(series.uuid(), createEventReminders.apply(series));
+            }
+            expandedUntil = expansionEnd;
+        }
+    }
+
+    public synchronized void clearPastEvents() throws IOException {
         App.instance().getDatabase().deletePastEventEntries(Instant.now().getEpochSecond());
         pastEvents.clear();
     }
 
-    public void addEvent(EventEntry event) throws IOException {
+    public synchronized void addEvent(EventEntry event) throws IOException {
         App.instance().getDatabase().upsertEvent(event);
-        int lookForwardDays = Settings.EVENT_LOOK_FORWARD_DAYS;
-        if (lookForwardDays == -1 || event.startTime().isAfter(LocalDateTime.now().minusDays(lookForwardDays))) {
-            List<ScheduledNotification> notifications = createEventReminders.apply(event);
-            scheduledNotifications.addAll(notifications);
-            futureEvents.add(event);
+        if (event.isRecurring()) {
+            seriesEvents.put(event);
+            event.occurrences(LocalDateTime.now(), expansionEnd()).forEach(futureEvents::put);
+            reminders.reconcile(event.uuid(), createEventReminders.apply(event));
+            return;
+        }
+        LocalDateTime loaded = loadedUntil;
+        if (loaded == null || event.startTime().isBefore(loaded)) { // Otherwise fetched once the window reaches it
+            futureEvents.put(event);
+            reminders.reconcile(event.uuid(), createEventReminders.apply(event));
+        } else {
+            reminders.cancel(event.uuid());
         }
     }
 
-    public void updateEvent(EventEntry event) {
+    public synchronized void updateEvent(EventEntry event) {
         try {
-            removeFromScheduled(event.uuid());
+            unload(event.uuid()); // Re-filed by addEvent, which only reschedules reminders that changed
             addEvent(event);
         } catch (IOException e) {
             System.err.println("Error deleting task: " + event.uuid() + "| " + Arrays.toString(e.getStackTrace()));
         }
     }
 
-    public void deleteEvent(EventEntry event) {
+    public synchronized void deleteEvent(EventEntry event) {
         try {
             App.instance().getDatabase().deleteEventByUUID(event.uuid());
             removeFromScheduled(event.uuid());
@@ -94,7 +261,7 @@ public class EventManager implements CalendarEvents {
         }
     }
 
-    public void archiveEvent(EventEntry event) {
+    public synchronized void archiveEvent(EventEntry event) {
         try {
             removeFromScheduled(event.uuid());
             App.instance().getDatabase().archiveEvent(event.uuid(), true);
@@ -112,89 +279,132 @@ public class EventManager implements CalendarEvents {
         }
     }
 
-    public void removeFromScheduled(UUID uuid) {
-        futureEvents.removeIf(e -> e.uuid().equals(uuid));
-        pastEvents.removeIf(e -> e.uuid().equals(uuid));
-        List<ScheduledNotification> notifications = scheduledNotifications.stream()
-                .filter(sn -> sn.uuid().equals(uuid)).toList();
-        scheduledNotifications.removeAll(notifications);
+    public synchronized void removeFromScheduled(UUID uuid) {
+        unload(uuid);
+        reminders.cancel(uuid);
     }
 
-    // FIXME
+    // Drops the event, or a series and its listed occurrences, from the stores
+    private void unload(UUID uuid) {
+        futureEvents.remove(uuid);
+        pastEvents.remove(uuid);
+        if (seriesEvents.remove(uuid) != null) {
+            futureEvents.removeIf(event -> uuid.equals(event.seriesUUID()));
+        }
+    }
+
+    /*
+     * Builds the reminders wanted for the event, ReminderScheduler.reconcile applies the difference to what is pending.
+     * A series gets the reminders of its occurrences up to expansionEnd(), all under the series uuid so missed ones
+     * still resolve from its row on startup.
+     */
     public Function<EventEntry, List<ScheduledNotification>> createEventReminders = (EventEntry event) -> {
         Tag tag = event.tags().isEmpty()
                   ? Tag.Default()
                   : Settings.TAG_MAP.getOrDefault(event.tags().getFirst(), Tag.Default());
 
-        List<ScheduledNotification> newNotifications = new ArrayList<>(4);
-        event.reminders().forEach(reminder -> {
-            if (scheduledNotifications.stream().noneMatch(
-                    sn -> sn.uuid().equals(event.uuid()) && sn.time().equals(reminder.time()))) {
-
-                ProcessBuilder notification = Notify.newEventNotify(tag, event, reminder.level());
-                Runnable notifyTask = () -> {
-                    try {
-                        notification.start();
-                        scheduledNotifications.removeIf(sn -> sn.uuid().equals(event.uuid()) && sn.time().equals(reminder.time()));
-                    } catch (IOException e) {
-                        System.err.printf("Error emitting notification for: %s, Error: %s%n", event, e);
-                    }
-                };
+        LocalDateTime remindFrom = LocalDateTime.now().minusDays(Settings.NOTIFICATION_RETENTION_DAYS);
+        List<EventEntry> timed = event.isRecurring() ? event.occurrences(remindFrom, expansionEnd()) : List.of(event);
 
-                var sf = exec.schedule(notifyTask, DateTimeUtil.delayToDateTime(reminder.time()), TimeUnit.SECONDS);
-                newNotifications.add(new ScheduledNotification(event.uuid(), reminder.time(), sf));
-            }
-        });
+        List<ScheduledNotification> newNotifications = new ArrayList<>(4);
+        timed.forEach(entry -> entry.reminders().forEach(reminder -> newNotifications.add(new ScheduledNotification(
+                event.uuid(),
+                EntryType.EVENT,
+                reminder.time(),
+                reminder.level(),
+                Notify.newEventNotify(tag, entry, reminder.level())
+        ))));
         return newNotifications;
     };
 
+    // Full reload, diffed against the cache, advanceWindow keeps it current from there
     public Consumer<EventManager> refreshEventNotifications = (self) -> {
+        synchronized (self) {
+            self.reload();
+        }
+    };
 
+    private void reload() {
         try {
-
-            long lookFoward = Settings.EVENT_LOOK_FORWARD_DAYS == -1
-                              ? -1
-                              : DateTimeUtil.localToUnix(LocalDateTime.now().plusDays(Settings.EVENT_LOOK_FORWARD_DAYS));
+            LocalDateTime now = LocalDateTime.now();
+            LocalDateTime horizon = Settings.EVENT_LOOK_FORWARD_DAYS == -1
+                                    ? LocalDateTime.MAX
+                                    : now.plusDays(Settings.EVENT_LOOK_FORWARD_DAYS);
+            long lookFoward = Settings.EVENT_LOOK_FORWARD_DAYS == -1 ? -1 : DateTimeUtil.localToUnix(horizon);
 
             List<EventEntry> events = App.instance().getDatabase().getEvents(lookFoward);
 
-            Map<Boolean, List<EventEntry>> mappedEvents = events.stream()
-                    .collect(Collectors.groupingBy(c -> c.endTime().isAfter(LocalDateTime.now())));
-
-            pastEvents.clear();
-            pastEvents.addAll(mappedEvents.getOrDefault(Boolean.FALSE, List.of()).stream()
-                    .sorted(Comparator.comparing(EventEntry::startTime)).toList());
-
-            futureEvents.clear();
-            futureEvents.addAll(mappedEvents.getOrDefault(Boolean.TRUE, List.of()).stream()
-                    .sorted(Comparator.comparing(EventEntry::startTime)).toList());
-
-            List<ScheduledNotification> notifications = futureEvents.stream()
-                    .flatMap(event -> createEventReminders.apply(event).stream())
-                    .toList();
-
-            scheduledNotifications.addAll(notifications);
-
-
+            Map<Boolean, List<EventEntry>> recurring = events.stream()
+                    .collect(Collectors.partitioningBy(EventEntry::isRecurring));
+            var seriesDiff = seriesEvents.replaceAll(recurring.get(Boolean.TRUE));
+
+            Map<Boolean, List<EventEntry>> mappedEvents = recurring.get(Boolean.FALSE).stream()
+                    .collect(Collectors.groupingBy(c -> c.endTime().isAfter(now)));
+            List<EventEntry> future = new ArrayList<>(mappedEvents.getOrDefault(Boolean.TRUE, List.of()));
+            LocalDateTime expansionEnd = expansionEnd();
+            seriesEvents.values().forEach(series -> future.addAll(series.occurrences(now, expansionEnd)));
+
+            pastEvents.replaceAll(mappedEvents.getOrDefault(Boolean.FALSE, List.of()));
+            // Unchanged events are left alone, so a refresh never reschedules (or refires) their reminders
+            var diff = futureEvents.replaceAll(future);
+            diff.removed().stream()
+                    .filter(event -> !event.isOccurrence() && !seriesEvents.contains(event.uuid()))
+                    .forEach(event -> reminders.cancel(event.uuid()));
+            diff.upserted().stream()
+                    .filter(event -> !event.isOccurrence())
+                    .forEach(event -> reminders.reconcile(event.uuid(), createEventReminders.apply(event)));
+
+            // Occurrence reminders go by series, the window moves every refresh but reconcile only touches the edges
+            seriesDiff.removed().forEach(series -> reminders.cancel(series.uuid()));
+            seriesEvents.values().forEach(series ->
+                    reminders.reconcile(series.uuid(), createEventReminders.apply(series))
+            );
+            lastEventReCalc = Instant.now().getEpochSecond();
+            loadedUntil = horizon;
+            expandedUntil = expansionEnd;
         } catch (IOException e) {
             System.err.println("Failed to refresh events: " + e.getMessage());
         }
-    };
+    }
+
+    /*
+     * Like getEventsOverlapping, but also covers ranges past the look forward window. What is loaded comes from the
+     * interval index, the rest from two queries: single events starting between loadedUntil (or from) and to, and
+     * series first starting before to that aren't loaded, expanded for the range. Unloaded events starting before
+     * from aren't looked up, so only the loaded part of the range sees events running into it.
+     */
+    public List<EventEntry> getEventsBetween(LocalDateTime from, LocalDateTime to) throws IOException {
+        LocalDateTime loaded = loadedUntil;
+        List<EventEntry> events = new ArrayList<>(getEventsOverlapping(from, to));
+        if (loaded != null && !to.isAfter(loaded)) {
+            return events;
+        }
+        var db = App.instance().getDatabase();
+        LocalDateTime unloaded = loaded == null || loaded.isBefore(from) ? from : loaded;
+        db.getEventsStartingBetween(DateTimeUtil.localToUnix(unloaded), DateTimeUtil.localToUnix(to)).stream()
+                .filter(event -> !event.isRecurring())
+                .forEach(events::add);
+        db.getSeriesStartingBefore(DateTimeUtil.localToUnix(to)).stream()
+                .filter(series -> !seriesEvents.contains(series.uuid()))
+                .forEach(series -> events.addAll(series.occurrences(from, to)));
+        events.sort(Comparator.comparing(EventEntry::startTime));
+        return events;
+    }
 
+    // Events land on every day they overlap, ranges past the loaded window are read by getEventsBetween
     @Override
-    public List<String> getCalendarEvents(LocalDate date, Function<DatedEntry, String> mapper) {
+    public Map<LocalDate, List<DatedEntry>> getCalendarEntries(LocalDate from, LocalDate to) {
         try {
-            return App.instance().getDatabase().getEvents(DateTimeUtil.localToUnix(LocalDateTime.now().plusDays(30)))
-                    .stream()
-                    .filter(e -> e.startTime().toLocalDate().isEqual(date))
-                    .map(mapper)
-                    .toList();
+            return CalendarEvents.byDays(
+                    getEventsBetween(from.atStartOfDay(), to.atStartOfDay()),
+                    EventEntry::startTime,
+                    EventEntry::endTime,
+                    from,
+                    to
+            );
         } catch (IOException e) {
             System.err.println(e.getMessage());
-            return List.of();
+            return Map.of();
         }
     }
 }
-
-
-
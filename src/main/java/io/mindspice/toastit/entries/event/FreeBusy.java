@@ -0,0 +1,119 @@
+package io.mindspice.toastit.entries.event;
+
+import io.mindspice.toastit.util.DateTimeUtil;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.*;
+
+
+/*
+ * Free/busy over time intervals. Busy blocks come from one sweep over the sorted start and end points of the
+ * intervals, so overlapping and back to back entries merge into a single block. Free slots are the gaps between
+ * blocks, walked once alongside the days of the range.
+ */
+public class FreeBusy {
+
+    public record Slot(LocalDateTime start, LocalDateTime end) {
+        public long minutes() {
+            return Duration.between(start, end).toMinutes();
+        }
+
+        @Override
+        public String toString() {
+            return DateTimeUtil.printDateTimeShort(start) + " - " + DateTimeUtil.printDateTimeShort(end);
+        }
+    }
+
+    private record Point(LocalDateTime time, int delta) { }
+
+    // Merged busy blocks clipped to [from, to), in order
+    public static List<Slot> busy(List<Slot> intervals, LocalDateTime from, LocalDateTime to) {
+        List<Point> points = new ArrayList<>(intervals.size() * 2);
+        for (var interval : intervals) {
+            LocalDateTime start = max(interval.start, from);
+            LocalDateTime end = min(interval.end, to);
+            if (start.isBefore(end)) {
+                points.add(new Point(start, 1));
+                points.add(new Point(end, -1));
+            }
+        }
+        // Starts before ends at the same time, so touching intervals join
+        points.sort(Comparator.comparing(Point::time).thenComparing(Point::delta, Comparator.reverseOrder()));
+
+        List<Slot> busy = new ArrayList<>();
+        int open = 0;
+        LocalDateTime blockStart = null;
+        for (var point : points) {
+            if (open == 0) {
+                blockStart = point.time;
+            }
+            open += point.delta;
+            if (open == 0) {
+                busy.add(new Slot(blockStart, point.time));
+            }
+        }
+        return busy;
+    }
+
+    // Gaps of at least minutes, only within dayStart to dayEnd of each day, dayEnd at or before dayStart is all day
+    public static List<Slot> free(List<Slot> busy, LocalDateTime from, LocalDateTime to, int minutes,
+            LocalTime dayStart, LocalTime dayEnd) {
+        List<Slot> free = new ArrayList<>();
+        int next = 0;
+        for (LocalDate day = from.toLocalDate(); day.atStartOfDay().isBefore(to); day = day.plusDays(1)) {
+            boolean allDay = !dayEnd.isAfter(dayStart);
+            LocalDateTime open = max(allDay ? day.atStartOfDay() : day.atTime(dayStart), from);
+            LocalDateTime close = min(allDay ? day.plusDays(1).atStartOfDay() : day.atTime(dayEnd), to);
+            while (next < busy.size() && !busy.get(next).end.isAfter(open)) {
+                next++;
+            }
+            LocalDateTime cursor = open;
+            for (int i = next; i < busy.size() && busy.get(i).start.isBefore(close); i++) {
+                addGap(free, cursor, busy.get(i).start, minutes);
+                cursor = max(cursor, busy.get(i).end);
+            }
+            addGap(free, cursor, close, minutes);
+        }
+        return free;
+    }
+
+    // Busy blocks split at midnight onto each day of [from, to), days with nothing map to an empty list
+    public static Map<LocalDate, List<Slot>> perDay(List<Slot> busy, LocalDate from, LocalDate to) {
+        Map<LocalDate, List<Slot>> days = new TreeMap<>();
+        for (LocalDate day = from; day.isBefore(to); day = day.plusDays(1)) {
+            days.put(day, new ArrayList<>());
+        }
+        for (var block : busy) {
+            for (LocalDate day = block.start.toLocalDate(); day.atStartOfDay().isBefore(block.end);
+                 day = day.plusDays(1)) {
+                var slots = days.get(day);
+                if (slots != null) {
+                    LocalDateTime dayStart = day.atStartOfDay();
+                    slots.add(new Slot(max(block.start, dayStart), min(block.end, dayStart.plusDays(1))));
+                }
+            }
+        }
+        return days;
+    }
+
+    public static long busyMinutes(List<Slot> slots) {
+        return slots.stream().mapToLong(Slot::minutes).sum();
+    }
+
+    private static void addGap(List<Slot> free, LocalDateTime start, LocalDateTime end, int minutes) {
+        if (Duration.between(start, end).toMinutes() >= Math.max(1, minutes)) {
+            free.add(new Slot(start, end));
+        }
+    }
+
+    private static LocalDateTime max(LocalDateTime a, LocalDateTime b) {
+        return a.isAfter(b) ? a : b;
+    }
+
+    private static LocalDateTime min(LocalDateTime a, LocalDateTime b) {
+        return a.isBefore(b) ? a : b;
+    }
+}
@@ -0,0 +1,154 @@
+package io.mindspice.toastit.entries.event;
+
+import java.time.*;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+
+/*
+ * Repeat rule stored once on a series row and only expanded over the window being asked for. The first occurrence is
+ * the event's own start. WEEKLY repeats on each of days (the start's weekday if empty), MONTHLY on the start's day of
+ * month, skipping months that don't have it. A series ends after until (inclusive) or count occurrences, whichever
+ * comes first, skipped exception dates still count toward count.
+ */
+public record Recurrence(
+        Frequency frequency,
+        int interval,
+        List<DayOfWeek> days,
+        LocalDate until,
+        int count,
+        List<LocalDate> exceptions
+) {
+    public enum Frequency { DAILY, WEEKLY, MONTHLY }
+
+    public Recurrence {
+        interval = Math.max(1, interval);
+        days = days == null ? List.of() : days.stream().distinct().sorted().toList();
+        count = Math.max(0, count);
+        exceptions = exceptions == null ? List.of() : List.copyOf(exceptions);
+    }
+
+    public static Recurrence of(Frequency frequency, int interval) {
+        return new Recurrence(frequency, interval, List.of(), null, 0, List.of());
+    }
+
+    public static Recurrence weekly(int interval, DayOfWeek... days) {
+        return new Recurrence(Frequency.WEEKLY, interval, List.of(days), null, 0, List.of());
+    }
+
+    public Recurrence withUntil(LocalDate until) {
+        return new Recurrence(frequency, interval, days, until, count, exceptions);
+    }
+
+    public Recurrence withCount(int count) {
+        return new Recurrence(frequency, interval, days, until, count, exceptions);
+    }
+
+    public Recurrence withException(LocalDate date) {
+        List<LocalDate> skipped = new ArrayList<>(exceptions);
+        skipped.add(date);
+        return new Recurrence(frequency, interval, days, until, count, skipped);
+    }
+
+    public boolean hasEnd() {
+        return until != null || count > 0;
+    }
+
+    /*
+     * Starts of the occurrences whose [start, start + duration) overlaps [from, to). Without a count, expansion jumps
+     * straight to the period holding the window, so the cost is the occurrences returned and not the series length.
+     * A count has to be walked from the first occurrence.
+     */
+    public List<LocalDateTime> startsOverlapping(LocalDateTime first, Duration duration, LocalDateTime from,
+            LocalDateTime to) {
+        List<LocalDateTime> starts = new ArrayList<>();
+        if (!from.isBefore(to)) {
+            return starts;
+        }
+        LocalDate firstDate = first.toLocalDate();
+        LocalTime time = first.toLocalTime();
+        LocalDateTime earliest = from.minus(duration); // Anything starting before this has ended by from
+        long period = count > 0 || earliest.isBefore(first) ? 0 : periodOf(firstDate, earliest.toLocalDate());
+        int seen = 0;
+        while (true) {
+            LocalDate periodStart = periodStart(firstDate, period);
+            if (!periodStart.atTime(time).isBefore(to) || (until != null && periodStart.isAfter(until))) {
+                return starts;
+            }
+            for (LocalDate date : datesIn(firstDate, periodStart)) {
+                if (date.isBefore(firstDate)) {
+                    continue;
+                }
+                if ((until != null && date.isAfter(until)) || (count > 0 && seen++ >= count)) {
+                    return starts;
+                }
+                LocalDateTime start = date.atTime(time);
+                if (!start.isBefore(to)) {
+                    return starts;
+                }
+                boolean overlaps = start.plus(duration).isAfter(from) || !start.isBefore(from);
+                if (overlaps && !exceptions.contains(date)) {
+                    starts.add(start);
+                }
+            }
+            period++;
+        }
+    }
+
+    // Start of the last occurrence, null when the series is unbounded or has no occurrences
+    public LocalDateTime lastStart(LocalDateTime first) {
+        if (!hasEnd()) {
+            return null;
+        }
+        if (count == 0) {
+            return until.atTime(first.toLocalTime()); // Upper bound, exact enough for expiring the row
+        }
+        var starts = startsOverlapping(first, Duration.ZERO, first, LocalDateTime.MAX);
+        return starts.isEmpty() ? null : starts.getLast();
+    }
+
+    private long periodOf(LocalDate firstDate, LocalDate date) {
+        return switch (frequency) {
+            case DAILY -> ChronoUnit.DAYS.between(firstDate, date) / interval;
+            case WEEKLY -> ChronoUnit.WEEKS.between(weekStart(firstDate), weekStart(date)) / interval;
+            case MONTHLY -> ChronoUnit.MONTHS.between(YearMonth.from(firstDate), YearMonth.from(date)) / interval;
+        };
+    }
+
+    private LocalDate periodStart(LocalDate firstDate, long period) {
+        return switch (frequency) {
+            case DAILY -> firstDate.plusDays(period * interval);
+            case WEEKLY -> weekStart(firstDate).plusWeeks(period * interval);
+            case MONTHLY -> YearMonth.from(firstDate).plusMonths(period * interval).atDay(1);
+        };
+    }
+
+    private List<LocalDate> datesIn(LocalDate firstDate, LocalDate periodStart) {
+        return switch (frequency) {
+            case DAILY -> List.of(periodStart);
+            case WEEKLY -> (days.isEmpty() ? List.of(firstDate.getDayOfWeek()) : days).stream()
+                    .map(day -> periodStart.with(TemporalAdjusters.nextOrSame(day)))
+                    .toList();
+            case MONTHLY -> YearMonth.from(periodStart).isValidDay(firstDate.getDayOfMonth())
+                            ? List.of(periodStart.withDayOfMonth(firstDate.getDayOfMonth()))
+                            : List.of();
+        };
+    }
+
+    private static LocalDate weekStart(LocalDate date) {
+        return date.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+    }
+
+    @Override
+    public String toString() {
+        String every = interval == 1 ? frequency.name() : String.format("Every %d %s", interval, frequency.name());
+        String on = days.isEmpty() ? "" : " on " + days.stream().map(Enum::name).collect(Collectors.joining(", "));
+        String end = until != null ? " until " + until : "";
+        end += count > 0 ? String.format(" (%d times)", count) : "";
+        String skipped = exceptions.isEmpty() ? "" : String.format(" skipping %d", exceptions.size());
+        return every + on + end + skipped;
+    }
+}
@@ -68,20 +68,16 @@ public record ProjectEntry(
         if (taskUUIDs == null) {
             return List.of();
         }
-        List<TaskEntry> loadedTasks = new ArrayList<>();
-        taskUUIDs.forEach(uuid -> {
-            try {
-                TaskEntry task = App.instance().getDatabase().getTaskByUUID(uuid);
-                if (task != null) {
-                    loadedTasks.add(task);
-                } else {
-                    System.err.printf("Task: %s null for project: %s", uuid, this.uuid);
-                }
-            } catch (IOException e) {
-                System.err.println("Error lading task" + e);
+        try {
+            List<TaskEntry> loadedTasks = App.instance().getDatabase().getTasksByUUIDs(taskUUIDs);
+            if (loadedTasks.size() != taskUUIDs.size()) {
+                System.err.printf("Missing %d task(s) for project: %s%n", taskUUIDs.size() - loadedTasks.size(), this.uuid);
             }
-        });
-        return loadedTasks;
+            return loadedTasks;
+        } catch (IOException e) {
+            System.err.println("Error lading task" + e);
+            return new ArrayList<>();
+        }
     }
 
     public void flushToDisk() {
@@ -3,19 +3,20 @@ package io.mindspice.toastit.entries.project;
 import io.mindspice.toastit.App;
 import io.mindspice.toastit.entries.CalendarEvents;
 import io.mindspice.toastit.entries.DatedEntry;
+import io.mindspice.toastit.entries.EntryStore;
+import io.mindspice.toastit.enums.EntryType;
 import io.mindspice.toastit.notification.Notify;
+import io.mindspice.toastit.notification.ReminderScheduler;
 import io.mindspice.toastit.notification.ScheduledNotification;
-import io.mindspice.toastit.util.DateTimeUtil;
-import io.mindspice.toastit.util.JSON;
 import io.mindspice.toastit.util.Settings;
 import io.mindspice.toastit.util.Tag;
 
 import java.io.IOException;
 import java.nio.file.Files;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
 import java.util.*;
-import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
@@ -24,9 +25,10 @@ import java.util.function.Function;
 
 public class ProjectManager implements CalendarEvents {
 
-    public final List<ScheduledNotification> scheduledNotifications = new CopyOnWriteArrayList<>();
-    public final List<ProjectEntry> activeProjects = new CopyOnWriteArrayList<>();
+    public final EntryStore<ProjectEntry> activeProjects = new EntryStore<>();
+    private final EntryStore.View<ProjectEntry, LocalDateTime> projectsByDue = activeProjects.addView(ProjectEntry::dueBy);
     public final ScheduledExecutorService exec = App.instance().getExec();
+    private final ReminderScheduler reminders = App.instance().getReminderScheduler();
 
     public void init() {
         exec.scheduleAtFixedRate(
@@ -38,36 +40,27 @@ public class ProjectManager implements CalendarEvents {
     }
 
     public List<ProjectEntry> getActiveProjects() {
-        return activeProjects;
+        return projectsByDue.list();
     }
 
     public List<ProjectEntry> getAllProjects() throws IOException {
-        List<ProjectEntry.Stub> stubs = App.instance().getDatabase().getAllProjects();
-        List<ProjectEntry> tasks = new ArrayList<>(stubs.size());
-        for (var stub : stubs) {
-            try {
-                tasks.add(JSON.loadObjectFromFile(stub.metaPath(), ProjectEntry.class));
-            } catch (IOException e) {
-                System.err.println("Failed to load: " + e.getMessage());
-            }
-        }
-        return tasks.stream().sorted(Comparator.comparing(ProjectEntry::dueBy)).toList();
+        return App.instance().getDatabase().getAllProjectEntries();
     }
 
     public void addProject(ProjectEntry project) throws IOException {
         App.instance().getDatabase().upsertProject(project);
         if (project.started()) {
-            List<ScheduledNotification> notifications = createProjectReminders.apply(project);
-            scheduledNotifications.addAll(notifications);
-            activeProjects.add(project);
+            activeProjects.put(project);
+            reminders.reconcile(project.uuid(), createProjectReminders.apply(project));
+        } else {
+            removeFromScheduled(project.uuid());
         }
         project.flushToDisk();
     }
 
     public void updateProject(ProjectEntry project) {
         try {
-            removeFromScheduled(project.uuid());
-            addProject(project);
+            addProject(project); // Only reminders that were added, moved or dropped are rescheduled
             project.flushToDisk();
         } catch (IOException e) {
             System.err.println("Error deleting project: " + project.uuid() + "| " + Arrays.toString(e.getStackTrace()));
@@ -94,68 +87,44 @@ public class ProjectManager implements CalendarEvents {
     }
 
     public void removeFromScheduled(UUID uuid) {
-        activeProjects.removeIf(t -> t.uuid().equals(uuid));
-        List<ScheduledNotification> notifications = scheduledNotifications.stream()
-                .filter(sn -> sn.uuid().equals(uuid)).toList();
-        scheduledNotifications.removeAll(notifications);
+        activeProjects.remove(uuid);
+        reminders.cancel(uuid);
     }
 
+    // Builds the reminders wanted for the project, ReminderScheduler.reconcile applies the difference to what is pending
     public Function<ProjectEntry, List<ScheduledNotification>> createProjectReminders = (project) -> {
 
         List<ScheduledNotification> newNotifications = new ArrayList<>();
-        project.reminders().forEach(reminder -> {
-            ProcessBuilder notification = Notify.newDueByNotify(
-                    project.tags().isEmpty() ? Tag.Default() : Settings.getTag(project.tags().getFirst()),
-                    project,
-                    reminder.level()
-            );
-
-            Runnable notifyProject = () -> {
-                try {
-                    notification.start();
-                    scheduledNotifications.removeIf(sn -> sn.uuid().equals(project.uuid()) && sn.time().equals(reminder.time()));
-                } catch (IOException e) {
-                    System.err.printf("Error emitting notification for: %s, Error: %s%n", project, e);
-                }
-            };
-            var sf = exec.schedule(notifyProject, DateTimeUtil.delayToDateTime(reminder.time()), TimeUnit.SECONDS);
-            newNotifications.add(new ScheduledNotification(project.uuid(), reminder.time(), sf));
-        });
+        Tag tag = project.tags().isEmpty() ? Tag.Default() : Settings.getTag(project.tags().getFirst());
+        project.reminders().forEach(reminder -> newNotifications.add(new ScheduledNotification(
+                project.uuid(),
+                EntryType.PROJECT,
+                reminder.time(),
+                reminder.level(),
+                Notify.newDueByNotify(tag, project, reminder.level())
+        )));
         return newNotifications;
 
     };
 
     public Consumer<ProjectManager> refreshActiveProjects = (self) -> {
         try {
-            activeProjects.clear();
-            List<ProjectEntry.Stub> projectStubs = App.instance().getDatabase().getActiveProjects();
-            List<ProjectEntry> fullProjects = new ArrayList<>(projectStubs.size());
-            for (var stub : projectStubs) {
-                try {
-                    fullProjects.add(JSON.loadObjectFromFile(stub.metaPath(), ProjectEntry.class));
-                } catch (IOException e) {
-                    System.err.println("Failed to load: " + e.getMessage());
-                }
-            }
-
-            activeProjects.addAll(fullProjects.stream().sorted(Comparator.comparing(ProjectEntry::dueBy)).toList());
-
-            List<ScheduledNotification> notifications = activeProjects.stream()
-                    .flatMap(project -> createProjectReminders.apply(project).stream())
-                    .toList();
-
-            scheduledNotifications.addAll(notifications);
+            // Unchanged projects are left alone, so a refresh never reschedules (or refires) their reminders
+            var diff = activeProjects.replaceAll(App.instance().getDatabase().getActiveProjectEntries());
+            diff.removed().forEach(project -> reminders.cancel(project.uuid()));
+            diff.upserted().forEach(project -> reminders.reconcile(project.uuid(), createProjectReminders.apply(project)));
         } catch (IOException e) {
             System.err.printf("Failed to refresh active projects: %s%n%s%n",
                     e.getMessage(), Arrays.toString(e.getStackTrace()));
         }
     };
 
+    // Range over the due date view, projects due at any time of a day land on that day
     @Override
-    public List<String> getCalendarEvents(LocalDate date, Function<DatedEntry, String> dataMapper) {
-        return activeProjects.stream()
-                .filter(e -> e.dueBy().isEqual(date.atStartOfDay()))
-                .map(dataMapper)
-                .toList();
+    public Map<LocalDate, List<DatedEntry>> getCalendarEntries(LocalDate from, LocalDate to) {
+        if (!from.isBefore(to)) {
+            return Map.of();
+        }
+        return CalendarEvents.byDay(projectsByDue.range(from.atStartOfDay(), to.atStartOfDay()), DatedEntry::dueBy);
     }
 }
@@ -3,19 +3,20 @@ package io.mindspice.toastit.entries.task;
 import io.mindspice.toastit.App;
 import io.mindspice.toastit.entries.CalendarEvents;
 import io.mindspice.toastit.entries.DatedEntry;
+import io.mindspice.toastit.entries.EntryStore;
+import io.mindspice.toastit.enums.EntryType;
 import io.mindspice.toastit.notification.Notify;
+import io.mindspice.toastit.notification.ReminderScheduler;
 import io.mindspice.toastit.notification.ScheduledNotification;
-import io.mindspice.toastit.util.DateTimeUtil;
-import io.mindspice.toastit.util.JSON;
 import io.mindspice.toastit.util.Settings;
 import io.mindspice.toastit.util.Tag;
 
 import java.io.IOException;
 import java.nio.file.Files;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
 import java.util.*;
-import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
@@ -24,9 +25,10 @@ import java.util.stream.Stream;
 
 
 public class TaskManager implements CalendarEvents {
-    public final List<ScheduledNotification> scheduledNotifications = new CopyOnWriteArrayList<>();
-    public final List<TaskEntry> activeTasks = new CopyOnWriteArrayList<>();
+    public final EntryStore<TaskEntry> activeTasks = new EntryStore<>();
+    private final EntryStore.View<TaskEntry, LocalDateTime> tasksByDue = activeTasks.addView(TaskEntry::dueBy);
     public final ScheduledExecutorService exec = App.instance().getExec();
+    private final ReminderScheduler reminders = App.instance().getReminderScheduler();
 
     public void init() {
         exec.scheduleAtFixedRate(
@@ -38,36 +40,32 @@ public class TaskManager implements CalendarEvents {
     }
 
     public List<TaskEntry> getActiveTasks() {
-        return activeTasks;
+        return tasksByDue.list();
+    }
+
+    // Active tasks due in [from, to)
+    public List<TaskEntry> getTasksDueBetween(LocalDateTime from, LocalDateTime to) {
+        return tasksByDue.range(from, to);
     }
 
     public List<TaskEntry> getAllTasks() throws IOException {
-        List<TaskEntry.Stub> stubs = App.instance().getDatabase().getAllTasks();
-        List<TaskEntry> tasks = new ArrayList<>(stubs.size());
-        for (var stub : stubs) {
-            try {
-                tasks.add(JSON.loadObjectFromFile(stub.metaPath(), TaskEntry.class));
-            } catch (IOException e) {
-                System.err.println("Failed to load: " + e.getMessage());
-            }
-        }
-        return tasks.stream().sorted(Comparator.comparing(TaskEntry::dueBy)).toList();
+        return App.instance().getDatabase().getAllTaskEntries();
     }
 
     public void addTask(TaskEntry task) throws IOException {
         App.instance().getDatabase().upsertTask(task);
         if (task.started()) {
-            List<ScheduledNotification> notifications = createTaskReminders.apply(task);
-            scheduledNotifications.addAll(notifications);
-            activeTasks.add(task);
+            activeTasks.put(task);
+            reminders.reconcile(task.uuid(), createTaskReminders.apply(task));
+        } else {
+            removeFromScheduled(task.uuid());
         }
         task.flushToDisk();
     }
 
     public void updateTask(TaskEntry task) {
         try {
-            removeFromScheduled(task.uuid());
-            addTask(task);
+            addTask(task); // Only reminders that were added, moved or dropped are rescheduled
             task.flushToDisk();
         } catch (IOException e) {
             System.err.println("Error deleting task: " + task.uuid() + "| " + Arrays.toString(e.getStackTrace()));
@@ -94,57 +92,32 @@ public class TaskManager implements CalendarEvents {
     }
 
     public void removeFromScheduled(UUID uuid) {
-        activeTasks.removeIf(t -> t.uuid().equals(uuid));
-        List<ScheduledNotification> notifications = scheduledNotifications.stream()
-                .filter(sn -> sn.uuid().equals(uuid)).toList();
-        scheduledNotifications.removeAll(notifications);
+        activeTasks.remove(uuid);
+        reminders.cancel(uuid);
     }
 
+    // Builds the reminders wanted for the task, ReminderScheduler.reconcile applies the difference to what is pending
     public Function<TaskEntry, List<ScheduledNotification>> createTaskReminders = (task) -> {
 
         List<ScheduledNotification> newNotifications = new ArrayList<>();
-        task.reminders().forEach(reminder -> {
-            ProcessBuilder notification = Notify.newDueByNotify(
-                    task.tags().isEmpty() ? Tag.Default() : Settings.getTag(task.tags().getFirst()),
-                    task,
-                    reminder.level()
-            );
-
-            Runnable notifyTask = () -> {
-                try {
-                    notification.start();
-                    scheduledNotifications.removeIf(sn -> sn.uuid().equals(task.uuid()) && sn.time().equals(reminder.time()));
-                } catch (IOException e) {
-                    System.err.printf("Error emitting notification for: %s, Error: %s%n", task, e);
-                }
-            };
-            var sf = exec.schedule(notifyTask, DateTimeUtil.delayToDateTime(reminder.time()), TimeUnit.SECONDS);
-            newNotifications.add(new ScheduledNotification(task.uuid(), reminder.time(), sf));
-        });
+        Tag tag = task.tags().isEmpty() ? Tag.Default() : Settings.getTag(task.tags().getFirst());
+        task.reminders().forEach(reminder -> newNotifications.add(new ScheduledNotification(
+                task.uuid(),
+                EntryType.TASK,
+                reminder.time(),
+                reminder.level(),
+                Notify.newDueByNotify(tag, task, reminder.level())
+        )));
         return newNotifications;
 
     };
 
     public Consumer<TaskManager> refreshActiveTasks = (self) -> {
         try {
-            activeTasks.clear();
-            List<TaskEntry.Stub> taskStubs = App.instance().getDatabase().getActiveTasks();
-            List<TaskEntry> fullTasks = new ArrayList<>(taskStubs.size());
-            for (var stub : taskStubs) {
-                try {
-                    fullTasks.add(JSON.loadObjectFromFile(stub.metaPath(), TaskEntry.class));
-                } catch (IOException e) {
-                    System.err.println("Failed to load: " + e.getMessage());
-                }
-            }
-
-            activeTasks.addAll(fullTasks.stream().sorted(Comparator.comparing(TaskEntry::dueBy)).toList());
-
-            List<ScheduledNotification> notifications = activeTasks.stream()
-                    .flatMap(task -> createTaskReminders.apply(task).stream())
-                    .toList();
-
-            scheduledNotifications.addAll(notifications);
+            // Unchanged tasks are left alone, so a refresh never reschedules (or refires) their reminders
+            var diff = activeTasks.replaceAll(App.instance().getDatabase().getActiveTaskEntries());
+            diff.removed().forEach(task -> reminders.cancel(task.uuid()));
+            diff.upserted().forEach(task -> reminders.reconcile(task.uuid(), createTaskReminders.apply(task)));
         } catch (IOException e) {
             System.err.printf("Failed to refresh active tasks: %s%n%s%n",
                     e.getMessage(), Arrays.toString(e.getStackTrace()));
@@ -152,11 +125,12 @@ public class TaskManager implements CalendarEvents {
     };
 
 
+    // Range over the due date view, tasks due at any time of a day land on that day
     @Override
-    public List<String> getCalendarEvents(LocalDate date, Function<DatedEntry, String> dataMapper) {
-        return activeTasks.stream()
-                .filter(e -> e.dueBy().isEqual(date.atStartOfDay()))
-                .map(dataMapper)
-                .toList();
+    public Map<LocalDate, List<DatedEntry>> getCalendarEntries(LocalDate from, LocalDate to) {
+        if (!from.isBefore(to)) {
+            return Map.of();
+        }
+        return CalendarEvents.byDay(tasksByDue.range(from.atStartOfDay(), to.atStartOfDay()), DatedEntry::dueBy);
     }
 }
@@ -1,38 +1,139 @@
 package io.mindspice.toastit.entries.text;
 
+import io.mindspice.mindlib.data.tuples.Pair;
 import io.mindspice.toastit.App;
 import io.mindspice.toastit.entries.SearchResult;
 import io.mindspice.toastit.enums.EntryType;
+import io.mindspice.toastit.search.FileSearch;
+import io.mindspice.toastit.search.FtsTextIndex;
+import io.mindspice.toastit.search.IndexDoc;
+import io.mindspice.toastit.search.InvertedIndex;
+import io.mindspice.toastit.search.SearchCache;
+import io.mindspice.toastit.search.SearchExecutor;
+import io.mindspice.toastit.search.SearchQuery;
+import io.mindspice.toastit.search.TextIndex;
+import io.mindspice.toastit.sqlite.DBConnection;
 import io.mindspice.toastit.util.DateTimeUtil;
+import io.mindspice.toastit.util.FileWatcher;
 import io.mindspice.toastit.util.Settings;
+import io.mindspice.toastit.util.Util;
 
 import java.io.IOException;
 import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
 import java.util.*;
-import java.util.concurrent.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 
 
 public class TextManager {
 
-    public final List<TextEntry> entries = new CopyOnWriteArrayList<>();
+    private static final int INDEX_CHUNK_SIZE = 500;
+    private static final int NAME_MATCH_LIMIT = 50;
+    private static final SearchQuery.Match NO_MATCH = new SearchQuery.Match(0, List.of());
+    private final Object indexLock = new Object();
+    private TextIndex searchIndex;
+    private volatile FileWatcher watcher;
+    private final SearchCache searchCache = new SearchCache(Settings.SEARCH_CACHE_MB * 1024L * 1024L);
     public EntryType type;
     public volatile TextEntry dailyJournal;
 
+    // next is null on the last page
+    public record Page(List<TextEntry> entries, int total, DBConnection.PageKey next) {
+        public boolean hasMore() {
+            return next != null;
+        }
+    }
+
+    // Entries are not held in memory, they are read from the database a page at a time as needed
     public void init(EntryType type) throws IOException {
-        if (type == EntryType.NOTE) {
-            entries.addAll(App.instance().getDatabase().getAllNotes().stream().map(n -> n.getAsFull(EntryType.NOTE)).toList());
-        } else if (type == EntryType.JOURNAL) {
-            entries.addAll(App.instance().getDatabase().getAllJournals().stream().map(j -> j.getAsFull(EntryType.JOURNAL)).toList());
-        } else {
+        if (type != EntryType.NOTE && type != EntryType.JOURNAL) {
             throw new IllegalStateException("Invalid Entry Type");
         }
         this.type = type;
+        searchIndex = switch (Settings.SEARCH_BACKEND) {
+            case FTS -> new FtsTextIndex(App.instance().getDatabase(), type);
+            case INDEX -> new InvertedIndex(Path.of(Settings.INDEX_PATH, type.name().toLowerCase()));
+            case SCAN -> null;
+        };
+        if (searchIndex != null) {
+            startWatcher();
+            App.instance().getExec().submit(() -> {
+                try {
+                    if (searchIndex instanceof InvertedIndex index && index.isEmpty()) {
+                        rebuildSearchIndex();
+                    } else {
+                        syncSearchIndex();
+                    }
+                } catch (IOException e) {
+                    System.err.println("Failed to sync " + type + " search index: " + e.getMessage());
+                }
+            });
+        }
+    }
+
+    // after == null returns the newest page
+    public Page getPage(DBConnection.PageKey after) throws IOException {
+        int size = Math.max(1, Settings.TEXT_PAGE_SIZE);
+        DBConnection db = App.instance().getDatabase();
+        List<TextEntry.Stub> stubs = db.getTextPage(type, after, size + 1);
+        DBConnection.PageKey next = null;
+        if (stubs.size() > size) {
+            stubs = stubs.subList(0, size);
+            next = new DBConnection.PageKey(stubs.getLast().createdAt(), stubs.getLast().uuid());
+        }
+        return new Page(stubs.stream().map(stub -> stub.getAsFull(type)).toList(), db.countTextEntries(type), next);
+    }
+
+    // Best prefix match on name, null if none
+    public TextEntry findByName(String name) throws IOException {
+        List<TextEntry> candidates = App.instance().getDatabase()
+                .getTextByNamePrefix(type, name.trim(), NAME_MATCH_LIMIT).stream()
+                .map(stub -> stub.getAsFull(type))
+                .toList();
+        return Util.entryMatch(candidates, name);
+    }
+
+    private interface BatchConsumer {
+        void accept(List<TextEntry> batch) throws IOException;
+    }
+
+    // Every active entry, newest first, in batches of at most INDEX_CHUNK_SIZE
+    private void forEachBatch(BatchConsumer consumer) throws IOException {
+        DBConnection db = App.instance().getDatabase();
+        DBConnection.PageKey after = null;
+        List<TextEntry.Stub> stubs;
+        do {
+            stubs = db.getTextPage(type, after, INDEX_CHUNK_SIZE);
+            if (!stubs.isEmpty()) {
+                after = new DBConnection.PageKey(stubs.getLast().createdAt(), stubs.getLast().uuid());
+                consumer.accept(stubs.stream().map(stub -> stub.getAsFull(type)).toList());
+            }
+        } while (stubs.size() == INDEX_CHUNK_SIZE);
     }
 
+    // Loads all active entries from the database, prefer getPage or findByName where possible
     public List<TextEntry> getEntries() {
-        return entries;
+        List<TextEntry> all = new ArrayList<>();
+        try {
+            forEachBatch(all::addAll);
+        } catch (IOException e) {
+            System.err.println("Error loading " + type + " entries: " + e.getMessage());
+        }
+        return all;
+    }
+
+    private Map<UUID, TextEntry> findByUUIDs(Collection<UUID> uuids) throws IOException {
+        Map<UUID, TextEntry> byUUID = new HashMap<>(uuids.size());
+        for (var stub : App.instance().getDatabase().getTextByUUIDs(type, uuids)) {
+            TextEntry entry = stub.getAsFull(type);
+            byUUID.put(entry.uuid(), entry);
+        }
+        return byUUID;
     }
 
     public void addEntry(TextEntry entry) throws IOException {
@@ -45,14 +146,14 @@ public class TextManager {
 
     private void addNote(TextEntry note) throws IOException {
         App.instance().getDatabase().upsertNote(note);
-        entries.add(note);
         note.flushToDisk();
+        indexEntry(note);
     }
 
     private void addJournal(TextEntry journal) throws IOException {
         App.instance().getDatabase().upsertJournal(journal);
-        entries.add(journal);
         journal.flushToDisk();
+        indexEntry(journal);
     }
 
     public void updateEntry(TextEntry entry) {
@@ -79,9 +180,8 @@ public class TextManager {
     private void updateNote(TextEntry note) {
         try {
             App.instance().getDatabase().upsertNote(note);
-            entries.removeIf(n -> n.uuid() == note.uuid());
-            entries.add(note);
             note.flushToDisk();
+            indexEntry(note);
         } catch (IOException e) {
             System.err.println("Error updating note: " + note.uuid() + " | " + Arrays.toString(e.getStackTrace()));
         }
@@ -90,9 +190,8 @@ public class TextManager {
     private void updateJournal(TextEntry journal) {
         try {
             App.instance().getDatabase().upsertJournal(journal);
-            entries.removeIf(j -> j.uuid() == journal.uuid());
-            entries.add(journal);
             journal.flushToDisk();
+            indexEntry(journal);
         } catch (IOException e) {
             System.err.println("Error updating journal: " + journal.uuid() + " | " + Arrays.toString(e.getStackTrace()));
         }
@@ -108,7 +207,7 @@ public class TextManager {
 
     private void deleteNote(TextEntry note) {
         try {
-            entries.removeIf(n -> n.uuid() == note.uuid());
+            App.instance().getDatabase().deleteNoteByUUID(note.uuid());
             Files.delete(note.getFilePath());
         } catch (IOException e) {
             System.err.println("Error deleting note: " + note.uuid() + " | " + Arrays.toString(e.getStackTrace()));
@@ -117,7 +216,7 @@ public class TextManager {
 
     private void deleteJournal(TextEntry journal) {
         try {
-            entries.removeIf(n -> n.uuid() == journal.uuid());
+            App.instance().getDatabase().deleteJournalByUUID(journal.uuid());
             Files.delete(journal.getFilePath());
         } catch (IOException e) {
             System.err.println("Error deleting Journal: " + journal.uuid() + " | " + Arrays.toString(e.getStackTrace()));
@@ -134,8 +233,8 @@ public class TextManager {
 
     private void archiveNote(TextEntry note) {
         try {
-            entries.removeIf(n -> n.uuid() == note.uuid());
             App.instance().getDatabase().archiveNote(note.uuid(), true);
+            unindexEntry(note);
         } catch (IOException e) {
             System.err.println("Error deleting note: " + note.uuid() + " | " + Arrays.toString(e.getStackTrace()));
         }
@@ -143,52 +242,303 @@ public class TextManager {
 
     private void archiveJournal(TextEntry journal) {
         try {
-            entries.removeIf(n -> n.uuid() == journal.uuid());
             App.instance().getDatabase().archiveJournal(journal.uuid(), true);
+            unindexEntry(journal);
         } catch (IOException e) {
             System.err.println("Error deleting Journal: " + journal.uuid() + " | " + Arrays.toString(e.getStackTrace()));
         }
     }
 
     public List<SearchResult> searchEntries(String searchString) {
-        return searchForEntries(searchString, entries);
+        return startSearch(searchString, null).await();
     }
 
-    private List<SearchResult> searchForEntries(String searchString, List<TextEntry> searchList) {
-        if (Settings.THREADED_SEARCH && searchList.size() > 10) {
-            try (var exec = Executors.newVirtualThreadPerTaskExecutor()) {
-                return searchList.stream()
-                        .map(entry -> exec.submit(() -> searchFiles(searchString, entry))).toList()
-                        .parallelStream().map(future -> {
+    // onPartial receives batches of results as they are found, the returned search can be cancelled or awaited
+    public SearchExecutor.Search<SearchResult> startSearch(String searchString, Consumer<List<SearchResult>> onPartial) {
+        String query = searchString.trim();
+        if (searchIndex != null) {
+            try {
+                if (watcher == null) {
+                    syncSearchIndex();
+                }
+                return SearchExecutor.Search.completed(
+                        searchIndex.search(query, Settings.SEARCH_RESULT_LIMIT, this::findByUUIDs));
+            } catch (IOException e) {
+                System.err.println("Index search failed, falling back to file scan: " + e.getMessage());
+            }
+        }
+        FileSearch search = new FileSearch(query);
+        return SearchExecutor.instance().submit(
+                getEntries(),
+                (entry, remaining) -> searchFiles(search, entry, remaining),
+                resultLimit(),
+                Duration.ofSeconds(Settings.SEARCH_TIMEOUT_SEC),
+                null,
+                onPartial
+        );
+    }
+
+    private void indexEntry(TextEntry entry) {
+        if (searchIndex == null) {
+            return;
+        }
+        try {
+            Path file = entry.getFilePath();
+            var doc = new IndexDoc(entry.uuid(), entry.name(), Files.readString(file), Files.getLastModifiedTime(file).toMillis());
+            synchronized (indexLock) {
+                searchIndex.update(List.of(doc), List.of());
+            }
+        } catch (IOException e) {
+            System.err.println("Error indexing: " + entry.uuid() + " | " + e.getMessage());
+        }
+    }
+
+    private void unindexEntry(TextEntry entry) {
+        if (searchIndex == null) {
+            return;
+        }
+        try {
+            synchronized (indexLock) {
+                searchIndex.update(List.of(), List.of(entry.uuid()));
+            }
+        } catch (IOException e) {
+            System.err.println("Error removing from index: " + entry.uuid() + " | " + e.getMessage());
+        }
+    }
+
+    // Keeps the index current as files are edited externally, searches then skip the per query mtime sync
+    private void startWatcher() {
+        String extension = "." + type.name().toLowerCase();
+        try {
+            watcher = new FileWatcher(
+                    Path.of(Settings.ROOT_PATH, type.name()),
+                    path -> path.getFileName().toString().endsWith(extension),
+                    Settings.INDEX_WATCH_DEBOUNCE_MS,
+                    new FileWatcher.Listener() {
+                        @Override
+                        public void onChanged(Set<Path> files) {
+                            reindexFiles(files);
+                        }
+
+                        @Override
+                        public void onOverflow() {
                             try {
-                                return future.get(Settings.SEARCH_TIMEOUT_SEC, TimeUnit.SECONDS);
-                            } catch (InterruptedException | TimeoutException | ExecutionException e) {
-                                Thread.currentThread().interrupt();
-                                System.err.println("Error while searching: " + e);
-                                return new ArrayList<SearchResult>(0);
+                                syncSearchIndex();
+                            } catch (IOException e) {
+                                System.err.println("Failed to sync " + type + " search index: " + e.getMessage());
                             }
-                        }).flatMap(List::stream).toList();
+                        }
+                    }
+            ).start();
+        } catch (IOException | UnsupportedOperationException e) {
+            watcher = null;
+            System.err.println("File watcher unavailable, syncing " + type + " index per search: " + e.getMessage());
+        }
+    }
+
+    public void stopWatcher() {
+        try {
+            if (watcher != null) {
+                watcher.close();
+            }
+        } catch (IOException e) {
+            System.err.println("Error closing file watcher: " + e.getMessage());
+        }
+        watcher = null;
+    }
+
+    // Files are named <uuid>.<type>, anything unparsable or not belonging to an active entry is ignored
+    private void reindexFiles(Set<Path> files) {
+        Map<UUID, Path> byUUID = new HashMap<>(files.size());
+        for (var file : files) {
+            String name = file.getFileName().toString();
+            try {
+                byUUID.put(UUID.fromString(name.substring(0, name.indexOf('.'))), file);
+            } catch (IllegalArgumentException e) {
+                // Not an entry file
+            }
+        }
+
+        synchronized (indexLock) {
+            try {
+                Map<UUID, Long> indexed = searchIndex.getIndexState();
+                Map<UUID, TextEntry> active = findByUUIDs(byUUID.keySet());
+                List<IndexDoc> changed = new ArrayList<>();
+                List<UUID> removed = new ArrayList<>();
+                for (var fileEntry : byUUID.entrySet()) {
+                    UUID uuid = fileEntry.getKey();
+                    Path file = fileEntry.getValue();
+                    TextEntry entry = active.get(uuid);
+                    if (entry == null || !Files.exists(file)) {
+                        if (indexed.containsKey(uuid)) {
+                            removed.add(uuid);
+                        }
+                        continue;
+                    }
+                    try {
+                        long mtime = Files.getLastModifiedTime(file).toMillis();
+                        Long indexedTime = indexed.get(uuid);
+                        if (indexedTime == null || indexedTime != mtime) {
+                            changed.add(new IndexDoc(uuid, entry.name(), Files.readString(file), mtime));
+                        }
+                    } catch (IOException e) {
+                        System.err.println("Error reading file for index: " + file);
+                    }
+                }
+                searchIndex.update(changed, removed);
+            } catch (IOException e) {
+                System.err.println("Failed to update " + type + " search index: " + e.getMessage());
+            }
+        }
+    }
+
+    // Re-indexes any entry whose file changed since it was last indexed, and drops entries no longer active
+    public void syncSearchIndex() throws IOException {
+        if (searchIndex == null) {
+            return;
+        }
+        synchronized (indexLock) {
+            Map<UUID, Long> indexed = searchIndex.getIndexState();
+            Set<UUID> active = new HashSet<>(indexed.size());
+
+            // Bounds memory held for large first time syncs to one batch of entries and their bodies
+            forEachBatch(batch -> {
+                List<IndexDoc> changed = new ArrayList<>();
+                for (var entry : batch) {
+                    active.add(entry.uuid());
+                    Path file = entry.getFilePath();
+                    try {
+                        long mtime = Files.getLastModifiedTime(file).toMillis();
+                        Long indexedTime = indexed.get(entry.uuid());
+                        if (indexedTime == null || indexedTime != mtime) {
+                            changed.add(new IndexDoc(entry.uuid(), entry.name(), Files.readString(file), mtime));
+                        }
+                    } catch (IOException e) {
+                        System.err.println("Error reading file for index: " + file);
+                    }
+                }
+                if (!changed.isEmpty()) {
+                    searchIndex.update(changed, List.of());
+                }
+            });
+            List<UUID> removed = indexed.keySet().stream().filter(uuid -> !active.contains(uuid)).toList();
+            searchIndex.update(List.of(), removed);
+        }
+    }
+
+    // Discards and rebuilds the file index from every active entry, only applies to the INDEX backend
+    public void rebuildSearchIndex() throws IOException {
+        if (searchIndex instanceof InvertedIndex index) {
+            synchronized (indexLock) {
+                List<Pair<UUID, Path>> files = new ArrayList<>();
+                forEachBatch(batch -> batch.forEach(entry -> files.add(Pair.of(entry.uuid(), entry.getFilePath()))));
+                index.rebuild(files);
             }
         } else {
-            return searchList.stream().map(entry -> searchFiles(searchString, entry)).flatMap(List::stream).toList();
+            syncSearchIndex();
+        }
+    }
+
+    public List<SearchResult> query(SearchQuery query) {
+        return startQuery(query, null).await();
+    }
+
+    /*
+     * Evaluates a structured query, each candidate file is read once and all terms are matched in that pass.
+     * Entries are ranked by total matches then recency, a query without terms lists matching entries by name.
+     * Partial results are streamed unranked, the ranking is applied once the search finishes.
+     */
+    public SearchExecutor.Search<SearchResult> startQuery(SearchQuery query, Consumer<List<SearchResult>> onPartial) {
+        List<TextEntry> candidates = new ArrayList<>();
+        try {
+            forEachBatch(batch -> batch.stream().filter(query::accepts).forEach(candidates::add));
+        } catch (IOException e) {
+            System.err.println("Error loading " + type + " entries: " + e.getMessage());
+        }
+        if (!query.hasTerms()) {
+            return SearchExecutor.Search.completed(candidates.stream()
+                    .sorted(Comparator.comparing(TextEntry::createdAt).reversed())
+                    .limit(resultLimit())
+                    .map(entry -> new SearchResult(entry.name(), entry))
+                    .toList());
+        }
+
+        Map<UUID, Integer> scores = new ConcurrentHashMap<>();
+        Comparator<SearchResult> ranking = Comparator.<SearchResult>comparingInt(r -> scores.get(r.entry().uuid()))
+                .thenComparing(r -> r.entry().createdAt())
+                .reversed();
+        return SearchExecutor.instance().submit(
+                candidates,
+                (entry, remaining) -> {
+                    SearchQuery.Match match = matchFile(query, entry);
+                    if (match == null) {
+                        return List.of();
+                    }
+                    scores.put(entry.uuid(), match.score());
+                    return match.lines().stream().map(line -> new SearchResult(line, entry)).toList();
+                },
+                resultLimit(),
+                Duration.ofSeconds(Settings.SEARCH_TIMEOUT_SEC),
+                ranking,
+                onPartial
+        );
+    }
+
+    private static int resultLimit() {
+        return Settings.SEARCH_RESULT_LIMIT > 0 ? Settings.SEARCH_RESULT_LIMIT : Integer.MAX_VALUE;
+    }
+
+    // Cached per file on (query, uuid, mtime, size), a non-matching file is cached as an empty match
+    private SearchQuery.Match matchFile(SearchQuery query, TextEntry entry) {
+        Path file = entry.getFilePath();
+        try {
+            SearchCache.Key key = cacheKey("query:" + query.cacheKey(), entry.uuid(), file);
+            SearchQuery.Match match = searchCache.get(key);
+            if (match == null) {
+                match = query.match(FileSearch.decode(file));
+                searchCache.put(key, match == null ? NO_MATCH : match);
+            }
+            return match == NO_MATCH ? null : match;
+        } catch (IOException e) {
+            System.err.println("Error reading file: " + file);
+            return null;
         }
     }
 
     public List<SearchResult> searchFiles(String searchString, TextEntry entry) {
-        List<SearchResult> results = new ArrayList<>();
+        return searchFiles(new FileSearch(searchString), entry, Integer.MAX_VALUE);
+    }
+
+    private List<SearchResult> searchFiles(FileSearch search, TextEntry entry, int limit) {
+        Path file = entry.getFilePath();
         try {
-            List<String> lines = Files.readAllLines(entry.getFilePath());
-            lines.forEach(line -> {
-                if (line.contains(searchString)) {
-                    results.add(new SearchResult(line, entry));
+            SearchCache.Key key = cacheKey("scan:" + search.query(), entry.uuid(), file);
+            SearchQuery.Match match = searchCache.get(key);
+            if (match == null) {
+                List<String> lines = new ArrayList<>();
+                int found = search.scan(file, limit, lines::add);
+                match = new SearchQuery.Match(found, lines);
+                if (found < limit) { // A scan cut short by the result limit is incomplete, so not reusable
+                    searchCache.put(key, match);
                 }
-            });
+            }
+            return match.lines().stream().limit(limit).map(line -> new SearchResult(line, entry)).toList();
         } catch (IOException e) {
-            System.err.println("Error reading file: " + entry.getFilePath());
+            System.err.println("Error reading file: " + file);
+            return List.of();
         }
-        return results;
     }
 
+    private static SearchCache.Key cacheKey(String query, UUID uuid, Path file) throws IOException {
+        var attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        return new SearchCache.Key(query, uuid, attributes.lastModifiedTime().toMillis(), attributes.size());
+    }
 
-}
+    public SearchCache.Stats getSearchCacheStats() {
+        return searchCache.stats();
+    }
 
+    public void clearSearchCache() {
+        searchCache.clear();
+    }
+}
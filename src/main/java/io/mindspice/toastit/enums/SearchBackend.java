@@ -0,0 +1,7 @@
+package io.mindspice.toastit.enums;
+
+public enum SearchBackend {
+    SCAN, // Read every file on each search
+    FTS,  // SQLite FTS5 index, synced from file modification times
+    INDEX // Memory-mapped inverted index files under INDEX_PATH, supports "phrase" and prefix* queries
+}
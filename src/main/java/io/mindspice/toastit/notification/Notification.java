@@ -0,0 +1,40 @@
+package io.mindspice.toastit.notification;
+
+import io.mindspice.toastit.enums.NotificationLevel;
+
+import java.util.List;
+
+
+// Content of a reminder as shown to the user, delivered by each NotificationSink
+public record Notification(
+        String title,
+        String body,
+        String icon,
+        NotificationLevel level,
+        int timeoutMs
+) {
+    // One notification standing in for several, with the highest level and longest timeout among them
+    public static Notification summary(List<Notification> notifications) {
+        if (notifications.size() == 1) {
+            return notifications.getFirst();
+        }
+        StringBuilder body = new StringBuilder();
+        NotificationLevel level = NotificationLevel.LOW;
+        int timeoutMs = 0;
+        for (var notification : notifications) {
+            if (!body.isEmpty()) {
+                body.append('\n');
+            }
+            body.append(notification.title()).append(": ").append(notification.body());
+            level = notification.level().compareTo(level) > 0 ? notification.level() : level;
+            timeoutMs = Math.max(timeoutMs, notification.timeoutMs());
+        }
+        return new Notification(
+                notifications.size() + " Reminders",
+                body.toString(),
+                notifications.getFirst().icon(),
+                level,
+                timeoutMs
+        );
+    }
+}
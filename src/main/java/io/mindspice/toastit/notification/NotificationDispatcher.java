@@ -0,0 +1,113 @@
+package io.mindspice.toastit.notification;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+
+/*
+ * Delivery queue between the ReminderScheduler and the sinks, delivery runs on its own thread so a slow sink never
+ * holds up scheduling. Reminders arriving within coalesceMs of the first are delivered as one summary. Rate limited
+ * sinks get at most maxPerMinute deliveries, anything over the cap is held and folded into one summary delivered
+ * when the next slot frees, so a burst of due reminders costs one notification rather than one each.
+ */
+public class NotificationDispatcher implements Consumer<List<ScheduledNotification>>, AutoCloseable {
+    private static final long MINUTE_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    private final LinkedBlockingQueue<Notification> queue = new LinkedBlockingQueue<>();
+    private final List<NotificationSink> sinks;
+    private final long coalesceNanos;
+    private final int maxPerMinute;
+    private final boolean hasRateLimited;
+    private final ArrayDeque<Long> limitedDeliveries = new ArrayDeque<>(); // Times of the last minute's deliveries
+    private final List<Notification> held = new ArrayList<>(); // Waiting on a rate limit slot
+    private Thread thread;
+
+    public NotificationDispatcher(List<NotificationSink> sinks, int coalesceMs, int maxPerMinute) {
+        this.sinks = List.copyOf(sinks);
+        this.coalesceNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, coalesceMs));
+        this.maxPerMinute = Math.max(1, maxPerMinute);
+        this.hasRateLimited = sinks.stream().anyMatch(NotificationSink::rateLimited);
+    }
+
+    public NotificationDispatcher start() {
+        thread = Thread.ofPlatform().daemon().name("notification-dispatcher").start(this::run);
+        return this;
+    }
+
+    @Override
+    public void accept(List<ScheduledNotification> due) {
+        due.forEach(notification -> queue.add(notification.notification()));
+    }
+
+    private void run() {
+        try {
+            while (true) {
+                List<Notification> batch = new ArrayList<>();
+                Notification first = held.isEmpty()
+                                     ? queue.take()
+                                     : queue.poll(nanosUntilSlot(System.nanoTime()), TimeUnit.NANOSECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    long deadline = System.nanoTime() + coalesceNanos;
+                    Notification next;
+                    while ((next = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) != null) {
+                        batch.add(next);
+                    }
+                }
+                deliver(batch);
+            }
+        } catch (InterruptedException e) {
+            // Closed
+        }
+    }
+
+    private void deliver(List<Notification> batch) {
+        if (!batch.isEmpty()) {
+            Notification summary = Notification.summary(batch);
+            sinks.stream().filter(sink -> !sink.rateLimited()).forEach(sink -> send(sink, summary));
+            if (hasRateLimited) {
+                held.addAll(batch);
+            }
+        }
+        if (held.isEmpty() || !takeSlot(System.nanoTime())) {
+            return;
+        }
+        Notification summary = Notification.summary(held);
+        held.clear();
+        sinks.stream().filter(NotificationSink::rateLimited).forEach(sink -> send(sink, summary));
+    }
+
+    private void send(NotificationSink sink, Notification notification) {
+        try {
+            sink.deliver(notification);
+        } catch (Exception e) {
+            System.err.printf("Error delivering notification: %s, Error: %s%n", notification.title(), e);
+        }
+    }
+
+    private boolean takeSlot(long now) {
+        while (!limitedDeliveries.isEmpty() && now - limitedDeliveries.peekFirst() >= MINUTE_NANOS) {
+            limitedDeliveries.pollFirst();
+        }
+        if (limitedDeliveries.size() >= maxPerMinute) {
+            return false;
+        }
+        limitedDeliveries.addLast(now);
+        return true;
+    }
+
+    private long nanosUntilSlot(long now) {
+        return limitedDeliveries.isEmpty() ? 0 : Math.max(0, limitedDeliveries.peekFirst() + MINUTE_NANOS - now);
+    }
+
+    @Override
+    public void close() {
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+}
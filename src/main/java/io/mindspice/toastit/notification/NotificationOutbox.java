@@ -0,0 +1,62 @@
+package io.mindspice.toastit.notification;
+
+import io.mindspice.toastit.enums.NotificationLevel;
+import io.mindspice.toastit.sqlite.DBConnection;
+import io.mindspice.toastit.sqlite.DBConnection.NotificationRow;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.*;
+
+
+// Writes scheduler changes through to the notifications table
+public class NotificationOutbox implements ReminderScheduler.Outbox {
+    private final DBConnection db;
+
+    public NotificationOutbox(DBConnection db) {
+        this.db = db;
+    }
+
+    public static NotificationRow toRow(ScheduledNotification notification) {
+        return new NotificationRow(notification.uuid(), notification.type(), notification.time(), notification.level());
+    }
+
+    @Override
+    public void batch(Writes writes) throws IOException {
+        db.notificationTransaction(writes::run);
+    }
+
+    @Override
+    public void update(UUID uuid, List<ScheduledNotification> added, Collection<LocalDateTime> removed)
+            throws IOException {
+        db.updateNotifications(uuid, added.stream().map(NotificationOutbox::toRow).toList(), removed);
+    }
+
+    @Override
+    public void cancelled(UUID uuid, Collection<LocalDateTime> pending) throws IOException {
+        db.acknowledgeNotifications(uuid, pending);
+    }
+
+    @Override
+    public void fired(List<ScheduledNotification> due) throws IOException {
+        db.markNotificationsFired(due.stream().map(NotificationOutbox::toRow).toList());
+    }
+
+    @Override
+    public Map<UUID, List<LocalDateTime>> firedSince(LocalDateTime from) throws IOException {
+        Map<UUID, List<LocalDateTime>> fired = new HashMap<>();
+        for (var row : db.getFiredNotificationsSince(from)) {
+            fired.computeIfAbsent(row.uuid(), u -> new ArrayList<>()).add(row.dueAt());
+        }
+        return fired;
+    }
+
+    @Override
+    public Map<UUID, Map<LocalDateTime, NotificationLevel>> pendingSince(LocalDateTime from) throws IOException {
+        Map<UUID, Map<LocalDateTime, NotificationLevel>> pending = new HashMap<>();
+        for (var row : db.getPendingNotificationsSince(from)) {
+            pending.computeIfAbsent(row.uuid(), u -> new HashMap<>()).put(row.dueAt(), row.level());
+        }
+        return pending;
+    }
+}
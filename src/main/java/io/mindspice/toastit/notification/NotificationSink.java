@@ -0,0 +1,92 @@
+package io.mindspice.toastit.notification;
+
+import io.mindspice.toastit.App;
+import io.mindspice.toastit.util.JSON;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+
+/*
+ * Destination for delivered notifications, set with Settings.NOTIFY_SINKS. Sinks where each delivery is costly
+ * report rateLimited() and are held to Settings.NOTIFY_MAX_PER_MIN by the NotificationDispatcher.
+ */
+public interface NotificationSink {
+
+    void deliver(Notification notification) throws IOException;
+
+    default boolean rateLimited() {
+        return false;
+    }
+
+    // Desktop notification, forks a notify-send process per delivery
+    static NotificationSink process() {
+        return new NotificationSink() {
+            @Override
+            public void deliver(Notification notification) throws IOException {
+                Notify.notifySend(notification).start();
+            }
+
+            @Override
+            public boolean rateLimited() {
+                return true;
+            }
+        };
+    }
+
+    // Printed above the prompt of every connected shell session
+    static NotificationSink shell() {
+        return notification -> {
+            var shell = App.instance().getShell();
+            if (shell != null) {
+                shell.broadcast(
+                        String.format("[%s] %s%n%s", notification.level(), notification.title(), notification.body())
+                );
+            }
+        };
+    }
+
+    // Appends one line per notification
+    static NotificationSink log(String path) {
+        Path file = Path.of(path);
+        return notification -> {
+            if (file.getParent() != null) {
+                Files.createDirectories(file.getParent());
+            }
+            Files.writeString(
+                    file,
+                    String.format("%s | %s | %s | %s%n", LocalDateTime.now(), notification.level(),
+                            notification.title(), notification.body().replace("\n", " / ")),
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND
+            );
+        };
+    }
+
+    // POSTs the notification as JSON without waiting on the response, failures are only logged
+    static NotificationSink webhook(String url) {
+        URI uri = URI.create(url);
+        HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+        return notification -> {
+            HttpRequest request = HttpRequest.newBuilder(uri)
+                    .timeout(Duration.ofSeconds(10))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(JSON.writeString(notification)))
+                    .build();
+            client.sendAsync(request, HttpResponse.BodyHandlers.discarding()).whenComplete((response, error) -> {
+                if (error != null) {
+                    System.err.println("Error posting notification to: " + url + ", Error: " + error);
+                } else if (response.statusCode() >= 300) {
+                    System.err.println("Notification webhook: " + url + " returned: " + response.statusCode());
+                }
+            });
+        };
+    }
+}
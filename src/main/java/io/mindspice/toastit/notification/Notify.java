@@ -10,29 +10,38 @@ import io.mindspice.toastit.util.Tag;
 
 
 public class Notify {
-    public static ProcessBuilder newEventNotify(Tag tag, EventEntry event, NotificationLevel level) {
-        return new ProcessBuilder(
-                "notify-send",
+    public static Notification newEventNotify(Tag tag, EventEntry event, NotificationLevel level) {
+        return new Notification(
                 tag.notifyTitle().isEmpty() ? event.name() : tag.notifyTitle(),
                 event.name() + " | " + String.format("%s - %s",
                         DateTimeUtil.printDateTimeShort(event.startTime()),
                         DateTimeUtil.printDateTimeShort(event.endTime())),
-                "-i", tag.notifyIcon(),
-                "-u", level.name(),
-                "-t", String.valueOf(1000 * Settings.EVENT_NOTIFY_FADE_TIME_SEC)
+                tag.notifyIcon(),
+                level,
+                1000 * Settings.EVENT_NOTIFY_FADE_TIME_SEC
         );
     }
 
-    public static ProcessBuilder newDueByNotify(Tag tag, DatedEntry task, NotificationLevel level) {
-        return new ProcessBuilder(
-                "notify-send",
+    public static Notification newDueByNotify(Tag tag, DatedEntry task, NotificationLevel level) {
+        return new Notification(
                 tag.notifyTitle().isEmpty() ? task.name() : tag.notifyTitle(),
                 task.name() + " | " + "Due By: " + DateTimeUtil.printDateTimeShort(task.dueBy()),
-                "-i", tag.notifyTitle(),
-                "-u", level.name(),
-                "-t", String.valueOf(1000 * Settings.TASK_NOTIFY_FADE_TIME_SEC)
+                tag.notifyIcon(),
+                level,
+                1000 * Settings.TASK_NOTIFY_FADE_TIME_SEC
+        );
+    }
+
+    public static ProcessBuilder notifySend(Notification notification) {
+        return new ProcessBuilder(
+                "notify-send",
+                notification.title(),
+                notification.body(),
+                "-i", notification.icon(),
+                "-u", notification.level().name(),
+                "-t", String.valueOf(notification.timeoutMs())
         );
     }
 
 
-}
\ No newline at end of file
+}
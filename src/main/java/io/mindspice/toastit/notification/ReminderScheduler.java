@@ -0,0 +1,361 @@
+package io.mindspice.toastit.notification;
+
+import io.mindspice.toastit.enums.NotificationLevel;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+
+/*
+ * Single thread scheduler for all entry reminders. Pending reminders are plain records in a time ordered map, with
+ * an index by entry uuid so every reminder for an entry can be cancelled without a scan. Everything due at the
+ * same time is handed to the dispatcher as one batch. Waits are capped so reminders still fire on time after a
+ * suspend or clock change.
+ *
+ * A reminder fires at most once: times before the current minute are refused, and reminders fired during the
+ * current minute are remembered, so re-adding an entry's reminders after an edit or refresh can't repeat one.
+ * Changes are written through to an Outbox, fired reminders are recorded before dispatch so a crash or restart
+ * never repeats one. Changes are queued while the lock is held and written after it is released, everything queued
+ * by then goes in one Outbox batch, so disk I/O never holds up scheduling. Reminders already stored as pending when
+ * the scheduler starts aren't written again when the first refresh re-adds them.
+ */
+public class ReminderScheduler implements AutoCloseable {
+    private static final long MAX_WAIT_MS = 60_000;
+
+    private record Key(LocalDateTime time, UUID uuid) { }
+
+    private static final Comparator<Key> KEY_ORDER = Comparator.comparing(Key::time).thenComparing(Key::uuid);
+
+    private final TreeMap<Key, ScheduledNotification> queue = new TreeMap<>(KEY_ORDER);
+    private final Map<UUID, Set<LocalDateTime>> byEntry = new HashMap<>();
+    private final Set<Key> firedThisMinute = new HashSet<>();
+    private final Map<Key, NotificationLevel> storedPending = new HashMap<>(); // Pending in the outbox at start
+    private final List<Outbox.Writes> unwritten = new ArrayList<>(); // Guarded by lock, written in order by flush()
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private final Consumer<List<ScheduledNotification>> dispatcher;
+    private final Outbox outbox;
+    private Thread thread;
+
+    // Persistence for scheduler state, called without the scheduler lock held and in the order changes were made
+    public interface Outbox {
+        Outbox NONE = new Outbox() { };
+
+        // Runs the queued writes, together in one transaction where the outbox supports it
+        default void batch(Writes writes) throws IOException {
+            writes.run();
+        }
+
+        // Reminders added and pending times removed for one entry
+        default void update(UUID uuid, List<ScheduledNotification> added, Collection<LocalDateTime> removed)
+                throws IOException { }
+
+        // Every reminder for the entry was cancelled, pending is what was still waiting
+        default void cancelled(UUID uuid, Collection<LocalDateTime> pending) throws IOException { }
+
+        // Called before the batch is dispatched
+        default void fired(List<ScheduledNotification> due) throws IOException { }
+
+        // Times fired at or after from, by entry
+        default Map<UUID, List<LocalDateTime>> firedSince(LocalDateTime from) throws IOException {
+            return Map.of();
+        }
+
+        // Pending times at or after from and their level, by entry
+        default Map<UUID, Map<LocalDateTime, NotificationLevel>> pendingSince(LocalDateTime from) throws IOException {
+            return Map.of();
+        }
+
+        @FunctionalInterface
+        interface Writes {
+            void run() throws IOException;
+        }
+    }
+
+    public ReminderScheduler(Consumer<List<ScheduledNotification>> dispatcher) {
+        this(dispatcher, Outbox.NONE);
+    }
+
+    public ReminderScheduler(Consumer<List<ScheduledNotification>> dispatcher, Outbox outbox) {
+        this.dispatcher = dispatcher;
+        this.outbox = outbox;
+    }
+
+    // Plain dispatcher, one notify-send per reminder without coalescing or rate limits, see NotificationDispatcher
+    public static void runAll(List<ScheduledNotification> due) {
+        for (var notification : due) {
+            try {
+                Notify.notifySend(notification.notification()).start();
+            } catch (Exception e) {
+                System.err.printf("Error emitting notification for: %s, Error: %s%n", notification.uuid(), e);
+            }
+        }
+    }
+
+    // Reminders fired earlier in the current minute by a previous run are remembered, so they can't be re-added
+    public ReminderScheduler start() {
+        LocalDateTime minute = LocalDateTime.now().truncatedTo(ChronoUnit.MINUTES);
+        lock.lock();
+        try {
+            outbox.firedSince(minute).forEach((uuid, times) ->
+                    times.forEach(time -> firedThisMinute.add(new Key(time, uuid)))
+            );
+            outbox.pendingSince(minute).forEach((uuid, times) ->
+                    times.forEach((time, level) -> storedPending.put(new Key(time, uuid), level))
+            );
+        } catch (IOException e) {
+            System.err.println("Error reading fired reminders: " + e.getMessage());
+        } finally {
+            lock.unlock();
+        }
+        thread = Thread.ofPlatform().daemon().name("reminder-scheduler").start(this::run);
+        return this;
+    }
+
+    // Returns false if the reminder is already pending, has fired, or is before the current minute
+    public boolean schedule(ScheduledNotification notification) {
+        lock.lock();
+        try {
+            if (!add(notification)) {
+                return false;
+            }
+            persist(notification.uuid(), List.of(notification), List.of());
+        } finally {
+            lock.unlock();
+        }
+        flush();
+        return true;
+    }
+
+    private boolean add(ScheduledNotification notification) {
+        Key key = new Key(notification.time(), notification.uuid());
+        if (isExpired(key) || !byEntry.computeIfAbsent(notification.uuid(), u -> new HashSet<>()).add(notification.time())) {
+            return false;
+        }
+        queue.put(key, notification);
+        if (queue.firstKey() == key) { // New head, the thread may be waiting on a later one
+            changed.signal();
+        }
+        return true;
+    }
+
+    private boolean isExpired(Key key) {
+        return key.time().isBefore(LocalDateTime.now().truncatedTo(ChronoUnit.MINUTES)) || firedThisMinute.contains(key);
+    }
+
+    /*
+     * Makes the entry's pending reminders match desired: pending ones no longer wanted are cancelled, missing ones
+     * are scheduled, and ones still wanted keep their slot with the action replaced. Returns the number added or
+     * cancelled, an unchanged entry costs nothing beyond the comparison.
+     */
+    public int reconcile(UUID uuid, Collection<ScheduledNotification> desired) {
+        int count;
+        lock.lock();
+        try {
+            Map<LocalDateTime, ScheduledNotification> wanted = new HashMap<>(desired.size());
+            desired.forEach(notification -> wanted.put(notification.time(), notification));
+            List<LocalDateTime> removed = new ArrayList<>();
+            for (var time : List.copyOf(byEntry.getOrDefault(uuid, Set.of()))) {
+                if (!wanted.containsKey(time)) {
+                    removePending(uuid, time);
+                    removed.add(time);
+                }
+            }
+            List<ScheduledNotification> added = new ArrayList<>();
+            for (var notification : wanted.values()) {
+                Key key = new Key(notification.time(), uuid);
+                if (queue.containsKey(key)) {
+                    if (queue.put(key, notification).level() != notification.level()) {
+                        added.add(notification); // Upsert, only the level can differ
+                    }
+                } else if (add(notification)) {
+                    added.add(notification);
+                }
+            }
+            persist(uuid, added, removed);
+            count = added.size() + removed.size();
+        } finally {
+            lock.unlock();
+        }
+        flush();
+        return count;
+    }
+
+    // Queues the change for the outbox, skipping adds already stored as pending, lock must be held
+    private void persist(UUID uuid, List<ScheduledNotification> added, Collection<LocalDateTime> removed) {
+        List<ScheduledNotification> unstored = storedPending.isEmpty() ? added : added.stream()
+                .filter(n -> storedPending.remove(new Key(n.time(), uuid)) != n.level())
+                .toList();
+        if (!unstored.isEmpty() || !removed.isEmpty()) {
+            unwritten.add(() -> outbox.update(uuid, unstored, removed));
+        }
+    }
+
+    // Writes queued changes in order, callers hold the scheduler lock only while queueing
+    private void flush() {
+        flushLock.lock();
+        try {
+            List<Outbox.Writes> writes;
+            lock.lock();
+            try {
+                if (unwritten.isEmpty()) {
+                    return;
+                }
+                writes = List.copyOf(unwritten);
+                unwritten.clear();
+            } finally {
+                lock.unlock();
+            }
+            outbox.batch(() -> {
+                for (var write : writes) {
+                    write.run();
+                }
+            });
+        } catch (IOException e) {
+            System.err.println("Error persisting reminders: " + e.getMessage());
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private void removePending(UUID uuid, LocalDateTime time) {
+        Set<LocalDateTime> times = byEntry.get(uuid);
+        if (times != null && times.remove(time)) {
+            if (times.isEmpty()) {
+                byEntry.remove(uuid);
+            }
+            queue.remove(new Key(time, uuid));
+            storedPending.remove(new Key(time, uuid));
+        }
+    }
+
+    // Cancels every pending reminder for the entry, returns how many were cancelled
+    public int cancel(UUID uuid) {
+        Set<LocalDateTime> times;
+        lock.lock();
+        try {
+            times = byEntry.getOrDefault(uuid, Set.of());
+            byEntry.remove(uuid);
+            times.forEach(time -> {
+                queue.remove(new Key(time, uuid));
+                storedPending.remove(new Key(time, uuid));
+            });
+            // Even with nothing pending, fired reminders are acknowledged
+            unwritten.add(() -> outbox.cancelled(uuid, times));
+        } finally {
+            lock.unlock();
+        }
+        flush();
+        return times.size();
+    }
+
+    public boolean cancel(UUID uuid, LocalDateTime time) {
+        boolean pending;
+        lock.lock();
+        try {
+            pending = queue.containsKey(new Key(time, uuid));
+            removePending(uuid, time);
+            if (pending) {
+                persist(uuid, List.of(), List.of(time));
+            }
+        } finally {
+            lock.unlock();
+        }
+        flush();
+        return pending;
+    }
+
+    public boolean isScheduled(UUID uuid, LocalDateTime time) {
+        lock.lock();
+        try {
+            Set<LocalDateTime> times = byEntry.get(uuid);
+            return times != null && times.contains(time);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public List<ScheduledNotification> getScheduled(UUID uuid) {
+        lock.lock();
+        try {
+            Set<LocalDateTime> times = byEntry.getOrDefault(uuid, Set.of());
+            return times.stream().sorted().map(time -> queue.get(new Key(time, uuid))).toList();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return queue.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void run() {
+        try {
+            while (true) {
+                List<ScheduledNotification> due = new ArrayList<>();
+                lock.lockInterruptibly();
+                try {
+                    while (due.isEmpty()) {
+                        var head = queue.firstEntry();
+                        if (head == null) {
+                            changed.await();
+                            continue;
+                        }
+                        long waitMs = Duration.between(LocalDateTime.now(), head.getKey().time()).toMillis();
+                        if (waitMs > 0) {
+                            changed.await(Math.min(waitMs, MAX_WAIT_MS), TimeUnit.MILLISECONDS);
+                            continue;
+                        }
+                        LocalDateTime now = LocalDateTime.now();
+                        LocalDateTime minute = now.truncatedTo(ChronoUnit.MINUTES);
+                        firedThisMinute.removeIf(key -> key.time().isBefore(minute)); // Older ones are refused by time
+                        while ((head = queue.firstEntry()) != null && !head.getKey().time().isAfter(now)) {
+                            removePending(head.getKey().uuid(), head.getKey().time());
+                            firedThisMinute.add(head.getKey());
+                            due.add(head.getValue());
+                        }
+                    }
+                    unwritten.add(() -> outbox.fired(due));
+                } finally {
+                    lock.unlock();
+                }
+                flush(); // Recorded as fired before dispatch
+                dispatch(due);
+            }
+        } catch (InterruptedException e) {
+            // Closed
+        }
+    }
+
+    // Hands reminders straight to the dispatcher on the calling thread, for ones already recorded as fired
+    public void dispatch(List<ScheduledNotification> due) {
+        if (due.isEmpty()) {
+            return;
+        }
+        try {
+            dispatcher.accept(due);
+        } catch (Exception e) {
+            System.err.println("Error dispatching reminders: " + e);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+}
@@ -1,17 +1,17 @@
 package io.mindspice.toastit.notification;
 
+import io.mindspice.toastit.enums.EntryType;
+import io.mindspice.toastit.enums.NotificationLevel;
+
 import java.time.LocalDateTime;
 import java.util.UUID;
-import java.util.concurrent.ScheduledFuture;
 
 
+// A pending reminder, unique on (uuid, time). notification is handed to the dispatcher once it is due.
 public record ScheduledNotification(
         UUID uuid,
+        EntryType type,
         LocalDateTime time,
-        ScheduledFuture<?> scheduledFuture
-) {
-
-    public void cancel() {
-        scheduledFuture.cancel(false);
-    }
-}
+        NotificationLevel level,
+        Notification notification
+) { }
@@ -0,0 +1,129 @@
+package io.mindspice.toastit.search;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+
+/*
+ * Literal substring search over raw file bytes, the UTF-8 pattern is matched without decoding the file and only
+ * lines containing a match are turned into Strings. Small files are read in one go, larger ones are memory-mapped.
+ * Lines are split on \n with a trailing \r dropped, each matching line is reported once.
+ */
+public class FileSearch {
+    private static final int MAP_THRESHOLD = 1 << 16;
+
+    private final String query;
+    private final byte[] pattern;
+    private final int[] skip = new int[256];
+
+    public FileSearch(String query) {
+        this.query = query;
+        pattern = query.getBytes(StandardCharsets.UTF_8);
+        // Horspool bad character table
+        Arrays.fill(skip, Math.max(1, pattern.length));
+        for (int i = 0; i < pattern.length - 1; ++i) {
+            skip[pattern[i] & 0xFF] = pattern.length - 1 - i;
+        }
+    }
+
+    public String query() {
+        return query;
+    }
+
+    // Whole file as chars for regex matching, large files are decoded straight from the mapping without a byte[] copy
+    public static CharBuffer decode(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("File too large to search: " + file);
+            }
+            ByteBuffer bytes = size < MAP_THRESHOLD
+                               ? ByteBuffer.wrap(Files.readAllBytes(file))
+                               : channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            return StandardCharsets.UTF_8.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE)
+                    .decode(bytes);
+        }
+    }
+
+    // Returns the number of matching lines passed to onMatch, stopping early once limit is reached
+    public int scan(Path file, int limit, Consumer<String> onMatch) throws IOException {
+        if (limit <= 0) {
+            return 0;
+        }
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size == 0) {
+                return 0;
+            } else if (size < MAP_THRESHOLD) {
+                buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+            } else if (size <= Integer.MAX_VALUE) {
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            } else {
+                throw new IOException("File too large to search: " + file);
+            }
+        }
+        return scan(buffer, limit, onMatch);
+    }
+
+    private int scan(ByteBuffer buffer, int limit, Consumer<String> onMatch) {
+        int end = buffer.limit();
+        int found = 0;
+        int from = 0;
+        while (from < end && found < limit) {
+            int match = indexOf(buffer, from, end);
+            if (match < 0) {
+                break;
+            }
+            int lineStart = match;
+            while (lineStart > 0 && buffer.get(lineStart - 1) != '\n') {
+                --lineStart;
+            }
+            int lineEnd = match + pattern.length;
+            while (lineEnd < end && buffer.get(lineEnd) != '\n') {
+                ++lineEnd;
+            }
+            onMatch.accept(decodeLine(buffer, lineStart, lineEnd));
+            ++found;
+            from = lineEnd + 1;
+        }
+        return found;
+    }
+
+    private int indexOf(ByteBuffer buffer, int from, int end) {
+        int last = pattern.length - 1;
+        if (last < 0) {
+            return from;
+        }
+        for (int i = from; i + last < end; i += skip[buffer.get(i + last) & 0xFF]) {
+            int j = last;
+            while (j >= 0 && buffer.get(i + j) == pattern[j]) {
+                --j;
+            }
+            if (j < 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static String decodeLine(ByteBuffer buffer, int start, int end) {
+        if (end > start && buffer.get(end - 1) == '\r') {
+            --end;
+        }
+        byte[] line = new byte[end - start];
+        buffer.get(start, line);
+        return new String(line, StandardCharsets.UTF_8);
+    }
+}
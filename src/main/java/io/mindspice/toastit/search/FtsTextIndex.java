@@ -0,0 +1,45 @@
+package io.mindspice.toastit.search;
+
+import io.mindspice.toastit.entries.SearchResult;
+import io.mindspice.toastit.entries.text.TextEntry;
+import io.mindspice.toastit.enums.EntryType;
+import io.mindspice.toastit.sqlite.DBConnection;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+
+public class FtsTextIndex implements TextIndex {
+    private final DBConnection db;
+    private final EntryType type;
+
+    public FtsTextIndex(DBConnection db, EntryType type) {
+        this.db = db;
+        this.type = type;
+    }
+
+    @Override
+    public Map<UUID, Long> getIndexState() throws IOException {
+        return db.getTextIndexState(type);
+    }
+
+    @Override
+    public void update(List<IndexDoc> docs, Collection<UUID> removed) throws IOException {
+        db.updateTextIndex(type, docs, removed);
+    }
+
+    @Override
+    public List<SearchResult> search(String query, int limit, EntryLookup lookup) throws IOException {
+        // Quoted as a single phrase to match the scan's literal substring semantics as closely as fts allows
+        String phrase = "\"" + query.replace("\"", "\"\"") + "\"";
+        List<DBConnection.TextSearchHit> hits = db.searchText(type, phrase, limit);
+        Map<UUID, TextEntry> entries = lookup.find(hits.stream().map(DBConnection.TextSearchHit::uuid).toList());
+        return hits.stream()
+                .filter(hit -> entries.containsKey(hit.uuid()))
+                .map(hit -> new SearchResult(hit.snippet().replace('\n', ' '), entries.get(hit.uuid())))
+                .toList();
+    }
+}
@@ -0,0 +1,11 @@
+package io.mindspice.toastit.search;
+
+import java.util.UUID;
+
+
+public record IndexDoc(
+        UUID uuid,
+        String name,
+        String body,
+        long mtime
+) { }
@@ -0,0 +1,219 @@
+package io.mindspice.toastit.search;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.UUID;
+
+
+/*
+ * Immutable, memory-mapped index segment. Layout, all big endian:
+ *
+ *   postings     per term, sorted by doc then position: doc int, line int, position int
+ *   docs         per doc: uuid msb long, uuid lsb long, mtime long, deleted byte
+ *   dictionary   per term, sorted: length short, utf-8 bytes, postings offset long, posting count int
+ *   term offsets per term: dictionary entry offset long
+ *   footer       docs offset long, doc count int, dictionary offset long, term count int,
+ *                term offsets offset long, version int, magic int
+ *
+ * Deleted docs are tombstones, they shadow the same uuid in older segments and carry no postings.
+ */
+public class IndexSegment {
+    private static final int MAGIC = 0x54494458; // "TIDX"
+    private static final int VERSION = 1;
+    private static final int FOOTER_SIZE = 8 + 4 + 8 + 4 + 8 + 4 + 4;
+    private static final int DOC_SIZE = 8 + 8 + 8 + 1;
+    public static final int POSTING_SIZE = 12;
+
+    private final Path path;
+    private final MappedByteBuffer buffer;
+    private final UUID[] uuids;
+    private final long[] mtimes;
+    private final boolean[] deleted;
+    private final long dictOffset;
+    private final int termCount;
+    private final long termOffsetsOffset;
+
+    public record DocEntry(UUID uuid, long mtime, boolean deleted) { }
+
+    // Postings are flat (doc, line, position) triples
+    public record TermPostings(String term, int[] postings) { }
+
+    private IndexSegment(Path path) throws IOException {
+        this.path = path;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (buffer.capacity() < FOOTER_SIZE) {
+            throw new IOException("Corrupt index segment, too small: " + path);
+        }
+        int footer = buffer.capacity() - FOOTER_SIZE;
+        long docsOffset = buffer.getLong(footer);
+        int docCount = buffer.getInt(footer + 8);
+        dictOffset = buffer.getLong(footer + 12);
+        termCount = buffer.getInt(footer + 20);
+        termOffsetsOffset = buffer.getLong(footer + 24);
+        if (buffer.getInt(footer + 36) != MAGIC || buffer.getInt(footer + 32) != VERSION) {
+            throw new IOException("Corrupt or incompatible index segment: " + path);
+        }
+
+        uuids = new UUID[docCount];
+        mtimes = new long[docCount];
+        deleted = new boolean[docCount];
+        for (int i = 0; i < docCount; ++i) {
+            int offset = (int) (docsOffset + (long) i * DOC_SIZE);
+            uuids[i] = new UUID(buffer.getLong(offset), buffer.getLong(offset + 8));
+            mtimes[i] = buffer.getLong(offset + 16);
+            deleted[i] = buffer.get(offset + 24) != 0;
+        }
+    }
+
+    public static IndexSegment open(Path path) throws IOException {
+        return new IndexSegment(path);
+    }
+
+    public Path path() {
+        return path;
+    }
+
+    public int docCount() {
+        return uuids.length;
+    }
+
+    public UUID uuid(int doc) {
+        return uuids[doc];
+    }
+
+    public long mtime(int doc) {
+        return mtimes[doc];
+    }
+
+    public boolean deleted(int doc) {
+        return deleted[doc];
+    }
+
+    public int termCount() {
+        return termCount;
+    }
+
+    public String term(int index) {
+        int offset = dictEntry(index);
+        int length = buffer.getShort(offset);
+        byte[] bytes = new byte[length];
+        buffer.get(offset + 2, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    public int[] postings(int index) {
+        int entry = dictEntry(index);
+        int termEnd = entry + 2 + buffer.getShort(entry);
+        int offset = (int) buffer.getLong(termEnd);
+        int count = buffer.getInt(termEnd + 8);
+        int[] postings = new int[count * 3];
+        buffer.slice(offset, count * POSTING_SIZE).asIntBuffer().get(postings);
+        return postings;
+    }
+
+    public int[] postings(String term) {
+        int index = lowerBound(term);
+        return index < termCount && term(index).equals(term) ? postings(index) : new int[0];
+    }
+
+    // First term index >= the passed term, termCount if none
+    public int lowerBound(String term) {
+        int low = 0;
+        int high = termCount;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (term(mid).compareTo(term) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private int dictEntry(int index) {
+        return (int) (dictOffset + buffer.getLong((int) (termOffsetsOffset + (long) index * 8)));
+    }
+
+    /*
+     * Terms must be supplied in String.compareTo order, doc indexes in postings refer to positions in docs.
+     * Written to a temp file and moved into place so a crash never leaves a partial segment at path.
+     */
+    public static void write(Path path, List<DocEntry> docs, Iterator<TermPostings> terms) throws IOException {
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        long[] termOffsets = new long[64];
+        int termCount = 0;
+
+        try (var out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp), 1 << 16))) {
+            // Postings go first so the dictionary, buffered alongside, can record their offsets in one pass
+            var dictionary = new ByteArrayOutputStream();
+            var dictOut = new DataOutputStream(dictionary);
+            while (terms.hasNext()) {
+                TermPostings termPostings = terms.next();
+                int[] postings = termPostings.postings();
+                if (postings.length == 0) {
+                    continue;
+                }
+                long postingsOffset = out.size();
+                for (int value : postings) {
+                    out.writeInt(value);
+                }
+                if (termCount == termOffsets.length) {
+                    termOffsets = Arrays.copyOf(termOffsets, termCount * 2);
+                }
+                termOffsets[termCount++] = dictOut.size();
+                byte[] termBytes = termPostings.term().getBytes(StandardCharsets.UTF_8);
+                dictOut.writeShort(termBytes.length);
+                dictOut.write(termBytes);
+                dictOut.writeLong(postingsOffset);
+                dictOut.writeInt(postings.length / 3);
+            }
+
+            long docsOffset = out.size();
+            for (var doc : docs) {
+                out.writeLong(doc.uuid().getMostSignificantBits());
+                out.writeLong(doc.uuid().getLeastSignificantBits());
+                out.writeLong(doc.mtime());
+                out.writeByte(doc.deleted() ? 1 : 0);
+            }
+
+            long dictOffset = out.size();
+            dictionary.writeTo(out);
+
+            long termOffsetsOffset = out.size();
+            for (int i = 0; i < termCount; ++i) {
+                out.writeLong(termOffsets[i]);
+            }
+
+            out.writeLong(docsOffset);
+            out.writeInt(docs.size());
+            out.writeLong(dictOffset);
+            out.writeInt(termCount);
+            out.writeLong(termOffsetsOffset);
+            out.writeInt(VERSION);
+            out.writeInt(MAGIC);
+            // size() saturates at Integer.MAX_VALUE, segments are mapped with int offsets so that is the cap anyway
+            if (out.size() == Integer.MAX_VALUE) {
+                throw new IOException("Index segment exceeds 2GB: " + path);
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+        Files.move(tmp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+}
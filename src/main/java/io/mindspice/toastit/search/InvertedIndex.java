@@ -0,0 +1,468 @@
+package io.mindspice.toastit.search;
+
+import io.mindspice.mindlib.data.tuples.Pair;
+import io.mindspice.toastit.entries.SearchResult;
+import io.mindspice.toastit.entries.text.TextEntry;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+
+/*
+ * File based inverted index: term -> (doc, line, position) postings, stored in immutable memory-mapped segments
+ * listed by a MANIFEST file. Updates append a segment, the newest segment holding a uuid wins and removals are
+ * written as tombstones. Segments are compacted once there are more than MAX_SEGMENTS of them.
+ *
+ * Searches run against an immutable snapshot and never block, writers are serialized.
+ */
+public class InvertedIndex implements TextIndex {
+    private static final String MANIFEST = "MANIFEST";
+    private static final int MAX_SEGMENTS = 16;
+    private static final int MAX_PREFIX_TERMS = 1024;
+    private static final int MAX_REBUILD_PARTITIONS = 8;
+
+    private final Path dir;
+    private final Object writeLock = new Object();
+    private volatile View view;
+    private long nextSegment;
+
+    private record View(List<IndexSegment> segments, List<BitSet> live, Map<UUID, Long> state) {
+        // Walks newest to oldest so only the latest version of a uuid is live
+        static View of(List<IndexSegment> segments) {
+            List<BitSet> live = new ArrayList<>(Collections.nCopies(segments.size(), null));
+            Map<UUID, Long> state = new HashMap<>();
+            Set<UUID> seen = new HashSet<>();
+            for (int s = segments.size() - 1; s >= 0; --s) {
+                IndexSegment segment = segments.get(s);
+                BitSet bits = new BitSet(segment.docCount());
+                for (int doc = 0; doc < segment.docCount(); ++doc) {
+                    if (seen.add(segment.uuid(doc)) && !segment.deleted(doc)) {
+                        bits.set(doc);
+                        state.put(segment.uuid(doc), segment.mtime(doc));
+                    }
+                }
+                live.set(s, bits);
+            }
+            return new View(List.copyOf(segments), live, Collections.unmodifiableMap(state));
+        }
+    }
+
+    public InvertedIndex(Path dir) throws IOException {
+        this.dir = dir;
+        Files.createDirectories(dir);
+        view = load();
+    }
+
+    private View load() throws IOException {
+        Path manifest = dir.resolve(MANIFEST);
+        List<String> names = Files.exists(manifest) ? Files.readAllLines(manifest) : List.of();
+        List<IndexSegment> segments = new ArrayList<>(names.size());
+        try {
+            for (var name : names) {
+                if (!name.isBlank()) {
+                    segments.add(IndexSegment.open(dir.resolve(name)));
+                }
+            }
+        } catch (IOException e) {
+            // Index is derived data, start empty so the owner rebuilds it
+            System.err.println("Failed to load search index, discarding: " + e.getMessage());
+            segments.clear();
+            writeManifest(List.of());
+        }
+
+        Set<Path> referenced = new HashSet<>();
+        segments.forEach(segment -> referenced.add(segment.path()));
+        try (Stream<Path> files = Files.list(dir)) {
+            for (var file : files.toList()) {
+                String name = file.getFileName().toString();
+                if (name.equals(MANIFEST) || referenced.contains(file)) {
+                    nextSegment = Math.max(nextSegment, segmentNumber(name) + 1);
+                } else {
+                    Files.deleteIfExists(file); // Left over from a crash or an unmap that blocked deletion
+                }
+            }
+        }
+        return View.of(segments);
+    }
+
+    public boolean isEmpty() {
+        return view.state().isEmpty();
+    }
+
+    @Override
+    public Map<UUID, Long> getIndexState() {
+        return view.state();
+    }
+
+    @Override
+    public void update(List<IndexDoc> docs, Collection<UUID> removed) throws IOException {
+        if (docs.isEmpty() && removed.isEmpty()) {
+            return;
+        }
+        synchronized (writeLock) {
+            Set<UUID> updated = new HashSet<>();
+            docs.forEach(doc -> updated.add(doc.uuid()));
+            List<UUID> tombstones = removed.stream().filter(uuid -> !updated.contains(uuid)).toList();
+
+            Path path = newSegmentPath();
+            writeSegment(path, docs, tombstones);
+            List<IndexSegment> segments = new ArrayList<>(view.segments());
+            segments.add(IndexSegment.open(path));
+            if (segments.size() > MAX_SEGMENTS) {
+                segments = List.of(compact(segments));
+            }
+            swap(segments);
+        }
+    }
+
+    // Replaces the whole index, files are read and indexed in parallel partitions each written as its own segment
+    public void rebuild(List<Pair<UUID, Path>> files) throws IOException {
+        synchronized (writeLock) {
+            int partitions = Math.max(1, Math.min(MAX_REBUILD_PARTITIONS, Runtime.getRuntime().availableProcessors()));
+            int partitionSize = Math.max(1, (files.size() + partitions - 1) / partitions);
+
+            List<IndexSegment> segments = new ArrayList<>();
+            try (var exec = Executors.newFixedThreadPool(partitions)) {
+                List<Future<IndexSegment>> futures = new ArrayList<>();
+                for (int i = 0; i < files.size(); i += partitionSize) {
+                    List<Pair<UUID, Path>> partition = files.subList(i, Math.min(files.size(), i + partitionSize));
+                    Path path = newSegmentPath();
+                    futures.add(exec.submit(() -> {
+                        List<IndexDoc> docs = new ArrayList<>(partition.size());
+                        for (var file : partition) {
+                            try {
+                                long mtime = Files.getLastModifiedTime(file.second()).toMillis();
+                                docs.add(new IndexDoc(file.first(), null, Files.readString(file.second()), mtime));
+                            } catch (IOException e) {
+                                System.err.println("Error reading file for index: " + file.second());
+                            }
+                        }
+                        writeSegment(path, docs, List.of());
+                        return IndexSegment.open(path);
+                    }));
+                }
+                for (var future : futures) {
+                    segments.add(future.get());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Index rebuild interrupted", e);
+            } catch (ExecutionException e) {
+                throw new IOException("Index rebuild failed", e.getCause());
+            }
+            swap(segments);
+        }
+    }
+
+    private void swap(List<IndexSegment> segments) throws IOException {
+        List<IndexSegment> old = view.segments();
+        writeManifest(segments.stream().map(segment -> segment.path().getFileName().toString()).toList());
+        view = View.of(segments);
+
+        Set<Path> kept = new HashSet<>();
+        segments.forEach(segment -> kept.add(segment.path()));
+        for (var segment : old) {
+            if (!kept.contains(segment.path())) {
+                try {
+                    Files.deleteIfExists(segment.path());
+                } catch (IOException e) {
+                    // Can fail while still mapped on some platforms, unreferenced files are removed on next load
+                }
+            }
+        }
+    }
+
+    private void writeManifest(List<String> names) throws IOException {
+        Path tmp = dir.resolve(MANIFEST + ".tmp");
+        Files.write(tmp, names);
+        Files.move(tmp, dir.resolve(MANIFEST), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private Path newSegmentPath() {
+        return dir.resolve(String.format("segment-%08d.idx", nextSegment++));
+    }
+
+    private static long segmentNumber(String name) {
+        try {
+            return Long.parseLong(name.substring("segment-".length(), name.indexOf('.')));
+        } catch (IndexOutOfBoundsException | NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static void writeSegment(Path path, List<IndexDoc> docs, List<UUID> tombstones) throws IOException {
+        List<IndexSegment.DocEntry> docEntries = new ArrayList<>(docs.size() + tombstones.size());
+        TreeMap<String, PostingsBuilder> terms = new TreeMap<>();
+        for (var doc : docs) {
+            int docIdx = docEntries.size();
+            docEntries.add(new IndexSegment.DocEntry(doc.uuid(), doc.mtime(), false));
+            Tokenizer.tokenize(doc.body(), (term, line, position) ->
+                    terms.computeIfAbsent(term, t -> new PostingsBuilder()).add(docIdx, line, position)
+            );
+        }
+        tombstones.forEach(uuid -> docEntries.add(new IndexSegment.DocEntry(uuid, 0, true)));
+
+        Iterator<IndexSegment.TermPostings> iter = terms.entrySet().stream()
+                .map(e -> new IndexSegment.TermPostings(e.getKey(), e.getValue().toArray()))
+                .iterator();
+        IndexSegment.write(path, docEntries, iter);
+    }
+
+    // Merges every segment into one, dropping shadowed docs and tombstones
+    private IndexSegment compact(List<IndexSegment> segments) throws IOException {
+        View current = View.of(segments);
+        List<IndexSegment.DocEntry> docs = new ArrayList<>();
+        int[][] docMap = new int[segments.size()][];
+        for (int s = 0; s < segments.size(); ++s) {
+            IndexSegment segment = segments.get(s);
+            BitSet live = current.live().get(s);
+            docMap[s] = new int[segment.docCount()];
+            for (int doc = 0; doc < segment.docCount(); ++doc) {
+                if (live.get(doc)) {
+                    docMap[s][doc] = docs.size();
+                    docs.add(new IndexSegment.DocEntry(segment.uuid(doc), segment.mtime(doc), false));
+                } else {
+                    docMap[s][doc] = -1;
+                }
+            }
+        }
+
+        record Cursor(int segment, int index, String term) { }
+        PriorityQueue<Cursor> queue = new PriorityQueue<>(
+                Comparator.comparing(Cursor::term).thenComparingInt(Cursor::segment)
+        );
+        for (int s = 0; s < segments.size(); ++s) {
+            if (segments.get(s).termCount() > 0) {
+                queue.add(new Cursor(s, 0, segments.get(s).term(0)));
+            }
+        }
+
+        // Segments are drained oldest first per term, and new doc numbers follow segment order, so postings stay sorted
+        Iterator<IndexSegment.TermPostings> merged = new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return !queue.isEmpty();
+            }
+
+            @Override
+            public IndexSegment.TermPostings next() {
+                String term = queue.peek().term();
+                PostingsBuilder builder = new PostingsBuilder();
+                while (!queue.isEmpty() && queue.peek().term().equals(term)) {
+                    Cursor cursor = queue.poll();
+                    IndexSegment segment = segments.get(cursor.segment());
+                    int[] postings = segment.postings(cursor.index());
+                    for (int i = 0; i < postings.length; i += 3) {
+                        int doc = docMap[cursor.segment()][postings[i]];
+                        if (doc >= 0) {
+                            builder.add(doc, postings[i + 1], postings[i + 2]);
+                        }
+                    }
+                    int nextIndex = cursor.index() + 1;
+                    if (nextIndex < segment.termCount()) {
+                        queue.add(new Cursor(cursor.segment(), nextIndex, segment.term(nextIndex)));
+                    }
+                }
+                return new IndexSegment.TermPostings(term, builder.toArray());
+            }
+        };
+
+        Path path = newSegmentPath();
+        IndexSegment.write(path, docs, merged);
+        return IndexSegment.open(path);
+    }
+
+    /*
+     * Query syntax: "quoted phrase", prefix*, and bare words which are AND'ed. A bare word that tokenizes to
+     * several terms (foo-bar) is treated as a phrase. A line is a hit when every clause matches on it, phrases
+     * are attributed to the line they start on.
+     */
+    @Override
+    public List<SearchResult> search(String query, int limit, EntryLookup lookup) throws IOException {
+        List<Clause> clauses = parseQuery(query);
+        if (clauses.isEmpty()) {
+            return List.of();
+        }
+
+        View snapshot = view;
+        Map<UUID, TextEntry> entries = new HashMap<>();
+        Map<UUID, TreeSet<Integer>> hitLines = new LinkedHashMap<>();
+        int hitCount = 0;
+        for (int s = snapshot.segments().size() - 1; s >= 0 && hitCount < limit; --s) {
+            IndexSegment segment = snapshot.segments().get(s);
+            BitSet live = snapshot.live().get(s);
+
+            TreeSet<Long> matched = null;
+            for (var clause : clauses) {
+                TreeSet<Long> lines = clause.match(segment);
+                if (matched == null) {
+                    matched = lines;
+                } else {
+                    matched.retainAll(lines);
+                }
+                if (matched.isEmpty()) {
+                    break;
+                }
+            }
+            // One lookup per segment for every live doc it matched
+            Set<UUID> candidates = new HashSet<>();
+            for (long key : matched) {
+                int doc = (int) (key >>> 32);
+                if (live.get(doc)) {
+                    candidates.add(segment.uuid(doc));
+                }
+            }
+            candidates.removeAll(entries.keySet());
+            entries.putAll(lookup.find(candidates));
+
+            for (long key : matched) {
+                int doc = (int) (key >>> 32);
+                UUID uuid = segment.uuid(doc);
+                if (live.get(doc) && entries.containsKey(uuid)) {
+                    hitLines.computeIfAbsent(uuid, u -> new TreeSet<>()).add((int) key);
+                    if (++hitCount == limit) {
+                        break;
+                    }
+                }
+            }
+        }
+
+        List<SearchResult> results = new ArrayList<>(hitCount);
+        for (var hit : hitLines.entrySet()) {
+            TextEntry entry = entries.get(hit.getKey());
+            int last = hit.getValue().last();
+            try (BufferedReader reader = Files.newBufferedReader(entry.getFilePath())) {
+                String line;
+                for (int lineNum = 0; lineNum <= last && (line = reader.readLine()) != null; ++lineNum) {
+                    if (hit.getValue().contains(lineNum)) {
+                        results.add(new SearchResult(line, entry));
+                    }
+                }
+            } catch (IOException e) {
+                System.err.println("Error reading file: " + entry.getFilePath());
+            }
+        }
+        return results;
+    }
+
+    private static List<Clause> parseQuery(String query) {
+        List<Clause> clauses = new ArrayList<>();
+        int i = 0;
+        while (i < query.length()) {
+            char c = query.charAt(i);
+            if (Character.isWhitespace(c)) {
+                ++i;
+            } else if (c == '"') {
+                int end = query.indexOf('"', i + 1);
+                end = end < 0 ? query.length() : end;
+                addTerms(clauses, query.substring(i + 1, end), false);
+                i = end + 1;
+            } else {
+                int end = i;
+                while (end < query.length() && !Character.isWhitespace(query.charAt(end))) {
+                    ++end;
+                }
+                String word = query.substring(i, end);
+                addTerms(clauses, word.endsWith("*") ? word.substring(0, word.length() - 1) : word, word.endsWith("*"));
+                i = end;
+            }
+        }
+        return clauses;
+    }
+
+    private static void addTerms(List<Clause> clauses, String text, boolean prefix) {
+        List<String> terms = Tokenizer.terms(text);
+        if (terms.isEmpty()) {
+            return;
+        }
+        if (prefix && terms.size() == 1) {
+            clauses.add(new PrefixClause(terms.getFirst()));
+        } else {
+            clauses.add(new PhraseClause(terms));
+        }
+    }
+
+    private interface Clause {
+        // Matching (doc << 32 | line) keys
+        TreeSet<Long> match(IndexSegment segment);
+    }
+
+    private record PhraseClause(List<String> terms) implements Clause {
+        @Override
+        public TreeSet<Long> match(IndexSegment segment) {
+            int[] first = segment.postings(terms.getFirst());
+            TreeSet<Long> lines = new TreeSet<>();
+            if (first.length == 0) {
+                return lines;
+            }
+            List<Set<Long>> following = new ArrayList<>(terms.size() - 1);
+            for (int t = 1; t < terms.size(); ++t) {
+                int[] postings = segment.postings(terms.get(t));
+                if (postings.length == 0) {
+                    return lines;
+                }
+                Set<Long> positions = new HashSet<>(postings.length / 3);
+                for (int i = 0; i < postings.length; i += 3) {
+                    positions.add(key(postings[i], postings[i + 2]));
+                }
+                following.add(positions);
+            }
+
+            outer:
+            for (int i = 0; i < first.length; i += 3) {
+                for (int t = 0; t < following.size(); ++t) {
+                    if (!following.get(t).contains(key(first[i], first[i + 2] + t + 1))) {
+                        continue outer;
+                    }
+                }
+                lines.add(key(first[i], first[i + 1]));
+            }
+            return lines;
+        }
+    }
+
+    private record PrefixClause(String prefix) implements Clause {
+        @Override
+        public TreeSet<Long> match(IndexSegment segment) {
+            TreeSet<Long> lines = new TreeSet<>();
+            int end = Math.min(segment.termCount(), segment.lowerBound(prefix) + MAX_PREFIX_TERMS);
+            for (int t = segment.lowerBound(prefix); t < end && segment.term(t).startsWith(prefix); ++t) {
+                int[] postings = segment.postings(t);
+                for (int i = 0; i < postings.length; i += 3) {
+                    lines.add(key(postings[i], postings[i + 1]));
+                }
+            }
+            return lines;
+        }
+    }
+
+    private static long key(int doc, int value) {
+        return ((long) doc << 32) | (value & 0xFFFFFFFFL);
+    }
+
+    private static class PostingsBuilder {
+        private int[] data = new int[12];
+        private int size;
+
+        void add(int doc, int line, int position) {
+            if (size + 3 > data.length) {
+                data = Arrays.copyOf(data, data.length * 2);
+            }
+            data[size++] = doc;
+            data[size++] = line;
+            data[size++] = position;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(data, size);
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package io.mindspice.toastit.search;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/*
+ * LRU cache of per-file search matches. Keys carry the file mtime and size, so an edited file simply misses and its
+ * stale entry ages out. Bounded by an estimate of retained bytes rather than entry count, since a single match list
+ * on a large journal can outweigh thousands of empty ones.
+ */
+public class SearchCache {
+    private static final int ENTRY_OVERHEAD = 128;
+
+    private final LinkedHashMap<Key, SearchQuery.Match> cache = new LinkedHashMap<>(256, 0.75f, true);
+    private final long maxBytes;
+    private long bytes;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public record Key(String query, UUID uuid, long mtime, long size) { }
+
+    public record Stats(long hits, long misses, long evictions, int entries, long bytes, long maxBytes) {
+        @Override
+        public String toString() {
+            long total = hits + misses;
+            return String.format("hits: %d | misses: %d | hit rate: %.1f%% | evictions: %d | entries: %d | size: %d/%d KB",
+                    hits, misses, total == 0 ? 0.0 : hits * 100.0 / total, evictions, entries, bytes / 1024, maxBytes / 1024);
+        }
+    }
+
+    public SearchCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    public synchronized SearchQuery.Match get(Key key) {
+        SearchQuery.Match match = cache.get(key);
+        if (match == null) {
+            misses.incrementAndGet();
+        } else {
+            hits.incrementAndGet();
+        }
+        return match;
+    }
+
+    public synchronized void put(Key key, SearchQuery.Match match) {
+        long weight = weigh(key, match);
+        if (weight > maxBytes) {
+            return;
+        }
+        SearchQuery.Match old = cache.put(key, match);
+        if (old != null) {
+            bytes -= weigh(key, old);
+        }
+        bytes += weight;
+
+        Iterator<Map.Entry<Key, SearchQuery.Match>> iter = cache.entrySet().iterator();
+        while (bytes > maxBytes && iter.hasNext()) {
+            var eldest = iter.next();
+            bytes -= weigh(eldest.getKey(), eldest.getValue());
+            iter.remove();
+            evictions.incrementAndGet();
+        }
+    }
+
+    public synchronized void clear() {
+        cache.clear();
+        bytes = 0;
+    }
+
+    public synchronized Stats stats() {
+        return new Stats(hits.get(), misses.get(), evictions.get(), cache.size(), bytes, maxBytes);
+    }
+
+    private static long weigh(Key key, SearchQuery.Match match) {
+        long weight = ENTRY_OVERHEAD + key.query().length() * 2L;
+        for (var line : match.lines()) {
+            weight += 40 + line.length() * 2L;
+        }
+        return weight;
+    }
+}
@@ -0,0 +1,176 @@
+package io.mindspice.toastit.search;
+
+import io.mindspice.toastit.util.Settings;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+
+
+/*
+ * Shared, bounded pool for file searches. A search runs at most SEARCH_CONCURRENCY workers which pull items from
+ * a shared cursor, so one slow file never holds up the rest. The whole search has a single deadline, and can be
+ * cancelled at any time; await() always returns what was found so far. With THREADED_SEARCH off a single worker
+ * is used.
+ */
+public class SearchExecutor {
+    private static volatile SearchExecutor instance;
+    private final ExecutorService pool;
+    private final int concurrency;
+
+    public enum Status { RUNNING, COMPLETE, LIMIT_REACHED, TIMED_OUT, CANCELLED }
+
+    public SearchExecutor(int concurrency) {
+        this.concurrency = Math.max(1, concurrency);
+        this.pool = Executors.newFixedThreadPool(this.concurrency, Thread.ofPlatform().daemon().name("search-", 0).factory());
+    }
+
+    public static SearchExecutor instance() {
+        if (instance == null) {
+            synchronized (SearchExecutor.class) {
+                if (instance == null) {
+                    int concurrency = Settings.SEARCH_CONCURRENCY > 0
+                                      ? Settings.SEARCH_CONCURRENCY
+                                      : Runtime.getRuntime().availableProcessors();
+                    instance = new SearchExecutor(concurrency);
+                }
+            }
+        }
+        return instance;
+    }
+
+    /*
+     * task receives an item and the remaining result budget, and returns its results (empty for no match).
+     * onPartial, if not null, is called with each non-empty batch as it is produced, never concurrently.
+     * Without an ordering the search stops once limit results are found, with one every item is searched and
+     * the results sorted before being cut to limit.
+     */
+    public <T, R> Search<R> submit(List<T> items, BiFunction<T, Integer, List<R>> task, int limit,
+            Duration timeout, Comparator<R> ordering, Consumer<List<R>> onPartial) {
+        var search = new Search<R>(items.size(), limit, ordering, System.nanoTime() + timeout.toNanos());
+        int workers = Math.min(Settings.THREADED_SEARCH ? concurrency : 1, items.size());
+        search.running.set(workers);
+        if (workers == 0) {
+            search.finish(Status.COMPLETE);
+        }
+        for (int w = 0; w < workers; ++w) {
+            search.futures.add(pool.submit(() -> {
+                try {
+                    int index;
+                    while (search.status == Status.RUNNING && (index = search.cursor.getAndIncrement()) < items.size()) {
+                        if (System.nanoTime() > search.deadline) {
+                            search.finish(Status.TIMED_OUT);
+                            break;
+                        }
+                        // One unreadable item is skipped, the rest of the search carries on
+                        try {
+                            List<R> found = task.apply(items.get(index), search.remaining.get());
+                            if (found != null && !found.isEmpty()) {
+                                search.add(index, found, onPartial);
+                            }
+                        } catch (Exception e) {
+                            if (search.status == Status.RUNNING) {
+                                System.err.println("Error searching: " + items.get(index) + " | " + e);
+                            }
+                        }
+                    }
+                } finally {
+                    if (search.running.decrementAndGet() == 0) {
+                        search.finish(Status.COMPLETE);
+                    }
+                }
+            }));
+        }
+        return search;
+    }
+
+    public static class Search<R> {
+        private final List<List<R>> results;
+        private final AtomicInteger cursor = new AtomicInteger();
+        private final AtomicInteger running = new AtomicInteger();
+        private final AtomicInteger remaining;
+        private final List<Future<?>> futures = new CopyOnWriteArrayList<>();
+        private final CountDownLatch done = new CountDownLatch(1);
+        private final int limit;
+        private final Comparator<R> ordering;
+        private final long deadline;
+        private volatile Status status = Status.RUNNING;
+
+        private Search(int size, int limit, Comparator<R> ordering, long deadline) {
+            this.results = new ArrayList<>(Collections.nCopies(size, null));
+            this.limit = limit;
+            this.ordering = ordering;
+            this.remaining = new AtomicInteger(ordering == null ? limit : Integer.MAX_VALUE);
+            this.deadline = deadline;
+        }
+
+        // An already finished search, for backends that answer synchronously
+        public static <R> Search<R> completed(List<R> results) {
+            var search = new Search<R>(1, Integer.MAX_VALUE, null, 0);
+            search.results.set(0, results);
+            search.finish(Status.COMPLETE);
+            return search;
+        }
+
+        private synchronized void add(int index, List<R> found, Consumer<List<R>> onPartial) {
+            if (status != Status.RUNNING) {
+                return;
+            }
+            results.set(index, found);
+            if (onPartial != null) {
+                try {
+                    onPartial.accept(found);
+                } catch (Exception e) {
+                    System.err.println("Error streaming search results: " + e);
+                }
+            }
+            if (remaining.addAndGet(-found.size()) <= 0) {
+                finish(Status.LIMIT_REACHED);
+            }
+        }
+
+        private void finish(Status finalStatus) {
+            synchronized (this) {
+                if (status != Status.RUNNING) {
+                    return;
+                }
+                status = finalStatus;
+            }
+            if (finalStatus == Status.CANCELLED || finalStatus == Status.TIMED_OUT) {
+                futures.forEach(future -> future.cancel(true));
+            }
+            done.countDown();
+        }
+
+        public void cancel() {
+            finish(Status.CANCELLED);
+        }
+
+        public Status status() {
+            return status;
+        }
+
+        // Blocks until complete, cancelled, the limit is reached or the deadline passes
+        public List<R> await() {
+            try {
+                if (!done.await(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)) {
+                    finish(Status.TIMED_OUT);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                cancel();
+            }
+            List<R> all;
+            synchronized (this) {
+                all = results.stream().filter(Objects::nonNull).flatMap(List::stream).toList();
+            }
+            if (ordering != null) {
+                all = all.stream().sorted(ordering).toList();
+            }
+            return all.size() > limit ? all.subList(0, limit) : all;
+        }
+    }
+}
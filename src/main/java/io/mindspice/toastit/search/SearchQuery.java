@@ -0,0 +1,253 @@
+package io.mindspice.toastit.search;
+
+import io.mindspice.toastit.entries.text.TextEntry;
+import io.mindspice.toastit.util.DateTimeUtil;
+
+import java.time.DateTimeException;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+
+/*
+ * Multi-term search evaluated in one pass over each file. Terms are grouped into clauses, an entry matches when
+ * every clause has at least one matching term (AND of ORs). Tag and date constraints are checked against entry
+ * metadata before any file is read.
+ *
+ * Query syntax for parse():
+ *   word "quoted phrase"   literal terms
+ *   /regex/                regex term
+ *   a OR b                 alternatives within one clause, terms are otherwise AND'ed
+ *   tag:name               entry must have the tag, may be repeated
+ *   after:date before:date created at or after / before the date (any DATE_INPUT_PATTERN)
+ *   -i                     case-insensitive
+ */
+public class SearchQuery {
+    private final List<List<Pattern>> clauses;
+    private final Set<String> tags;
+    private final LocalDateTime from;
+    private final LocalDateTime to;
+
+    // score is the total number of matches, lines are distinct matching lines in file order
+    public record Match(int score, List<String> lines) { }
+
+    private SearchQuery(Builder builder) {
+        int flags = builder.ignoreCase ? Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE : 0;
+        List<List<Pattern>> compiled = new ArrayList<>(builder.clauses.size());
+        for (var clause : builder.clauses) {
+            compiled.add(clause.stream().map(term -> Pattern.compile(term, flags)).toList());
+        }
+        this.clauses = List.copyOf(compiled);
+        this.tags = Set.copyOf(builder.tags);
+        this.from = builder.from;
+        this.to = builder.to;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static SearchQuery parse(String query) throws IllegalArgumentException {
+        Builder builder = builder();
+        boolean orNext = false;
+        int i = 0;
+        while (i < query.length()) {
+            char c = query.charAt(i);
+            if (Character.isWhitespace(c)) {
+                ++i;
+                continue;
+            }
+
+            String term;
+            boolean regex = false;
+            if (c == '"' || c == '/') {
+                int end = query.indexOf(c, i + 1);
+                if (end < 0) {
+                    throw new IllegalArgumentException("Unterminated " + c + " in query: " + query);
+                }
+                term = query.substring(i + 1, end);
+                regex = c == '/';
+                i = end + 1;
+            } else {
+                int end = i;
+                while (end < query.length() && !Character.isWhitespace(query.charAt(end))) {
+                    ++end;
+                }
+                String word = query.substring(i, end);
+                i = end;
+                switch (word) {
+                    case "OR" -> {
+                        orNext = true;
+                        continue;
+                    }
+                    case "-i" -> {
+                        builder.ignoreCase = true;
+                        continue;
+                    }
+                    case String s when s.startsWith("tag:") && s.length() > 4 -> {
+                        builder.tags.add(s.substring(4));
+                        continue;
+                    }
+                    case String s when s.startsWith("after:") -> {
+                        builder.from = parseDate(s.substring(6));
+                        continue;
+                    }
+                    case String s when s.startsWith("before:") -> {
+                        builder.to = parseDate(s.substring(7));
+                        continue;
+                    }
+                    default -> term = word;
+                }
+            }
+
+            if (term.isEmpty()) {
+                continue;
+            }
+            if (orNext && !builder.clauses.isEmpty()) {
+                if (regex) {
+                    builder.orRegex(term);
+                } else {
+                    builder.orTerm(term);
+                }
+            } else if (regex) {
+                builder.regex(term);
+            } else {
+                builder.term(term);
+            }
+            orNext = false;
+        }
+        return builder.build();
+    }
+
+    private static LocalDateTime parseDate(String date) {
+        try {
+            return DateTimeUtil.parseDateInput(date).atStartOfDay();
+        } catch (DateTimeException e) {
+            throw new IllegalArgumentException("Invalid date: " + date);
+        }
+    }
+
+    // Identifies what match() does, tags and dates are left out as they never affect a file's matches
+    public String cacheKey() {
+        StringBuilder key = new StringBuilder().append(clauses.isEmpty() ? 0 : clauses.getFirst().getFirst().flags());
+        for (var clause : clauses) {
+            key.append('\u0000');
+            clause.forEach(pattern -> key.append('\u0001').append(pattern.pattern()));
+        }
+        return key.toString();
+    }
+
+    public boolean hasTerms() {
+        return !clauses.isEmpty();
+    }
+
+    // Metadata only check, done before reading the entry file
+    public boolean accepts(TextEntry entry) {
+        if (!tags.isEmpty() && !entry.tags().containsAll(tags)) {
+            return false;
+        }
+        if (from != null && entry.createdAt().isBefore(from)) {
+            return false;
+        }
+        return to == null || entry.createdAt().isBefore(to);
+    }
+
+    // Returns null if any clause has no match in the text
+    public Match match(CharSequence text) {
+        TreeSet<Integer> lineStarts = new TreeSet<>();
+        int score = 0;
+        for (var clause : clauses) {
+            int clauseScore = 0;
+            for (var pattern : clause) {
+                Matcher matcher = pattern.matcher(text);
+                while (matcher.find()) {
+                    if (matcher.end() == matcher.start()) {
+                        continue; // Empty matches carry no information, and would report every line
+                    }
+                    ++clauseScore;
+                    int start = matcher.start();
+                    while (start > 0 && text.charAt(start - 1) != '\n') {
+                        --start;
+                    }
+                    lineStarts.add(start);
+                }
+            }
+            if (clauseScore == 0) {
+                return null;
+            }
+            score += clauseScore;
+        }
+
+        List<String> lines = new ArrayList<>(lineStarts.size());
+        for (int start : lineStarts) {
+            int end = start;
+            while (end < text.length() && text.charAt(end) != '\n') {
+                ++end;
+            }
+            if (end > start && text.charAt(end - 1) == '\r') {
+                --end;
+            }
+            lines.add(text.subSequence(start, end).toString());
+        }
+        return new Match(score, lines);
+    }
+
+    public static class Builder {
+        private final List<List<String>> clauses = new ArrayList<>();
+        public Set<String> tags = new HashSet<>();
+        public LocalDateTime from;
+        public LocalDateTime to;
+        public boolean ignoreCase;
+
+        // Starts a new AND'ed clause with a literal term
+        public Builder term(String literal) {
+            clauses.add(new ArrayList<>(List.of(Pattern.quote(literal))));
+            return this;
+        }
+
+        public Builder regex(String regex) {
+            clauses.add(new ArrayList<>(List.of(regex)));
+            return this;
+        }
+
+        // Adds an alternative to the last clause
+        public Builder orTerm(String literal) {
+            lastClause().add(Pattern.quote(literal));
+            return this;
+        }
+
+        public Builder orRegex(String regex) {
+            lastClause().add(regex);
+            return this;
+        }
+
+        public Builder tag(String tag) {
+            tags.add(tag);
+            return this;
+        }
+
+        public Builder between(LocalDateTime from, LocalDateTime to) {
+            this.from = from;
+            this.to = to;
+            return this;
+        }
+
+        public Builder ignoreCase(boolean ignoreCase) {
+            this.ignoreCase = ignoreCase;
+            return this;
+        }
+
+        private List<String> lastClause() {
+            if (clauses.isEmpty()) {
+                throw new IllegalStateException("No clause to add an alternative to");
+            }
+            return clauses.getLast();
+        }
+
+        // Throws PatternSyntaxException for invalid regex terms
+        public SearchQuery build() {
+            return new SearchQuery(this);
+        }
+    }
+}
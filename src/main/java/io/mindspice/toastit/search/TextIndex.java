@@ -0,0 +1,28 @@
+package io.mindspice.toastit.search;
+
+import io.mindspice.toastit.entries.SearchResult;
+import io.mindspice.toastit.entries.text.TextEntry;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+
+// Search index over the bodies of one entry type, kept in sync by comparing file mtimes against getIndexState
+public interface TextIndex {
+
+    // uuid -> file mtime (epoch millis) at the time the entry was indexed
+    Map<UUID, Long> getIndexState() throws IOException;
+
+    void update(List<IndexDoc> docs, Collection<UUID> removed) throws IOException;
+
+    // Only hits the lookup resolves are returned, anything else in the index is treated as stale
+    List<SearchResult> search(String query, int limit, EntryLookup lookup) throws IOException;
+
+    // Resolves indexed uuids to active entries, so callers don't need every entry in memory to search
+    interface EntryLookup {
+        Map<UUID, TextEntry> find(Collection<UUID> uuids) throws IOException;
+    }
+}
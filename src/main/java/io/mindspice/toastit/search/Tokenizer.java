@@ -0,0 +1,47 @@
+package io.mindspice.toastit.search;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+
+public class Tokenizer {
+    public static final int MAX_TERM_LENGTH = 64;
+
+    @FunctionalInterface
+    public interface TokenSink {
+        void accept(String term, int line, int position);
+    }
+
+    // Terms are lower-cased runs of letters/digits, lines are 0 based and positions count terms across the whole text
+    public static void tokenize(String text, TokenSink sink) {
+        int line = 0;
+        int position = 0;
+        int start = -1;
+        for (int i = 0; i <= text.length(); ++i) {
+            char c = i < text.length() ? text.charAt(i) : '\n';
+            if (Character.isLetterOrDigit(c)) {
+                if (start < 0) {
+                    start = i;
+                }
+                continue;
+            }
+            if (start >= 0) {
+                if (i - start <= MAX_TERM_LENGTH) {
+                    sink.accept(text.substring(start, i).toLowerCase(Locale.ROOT), line, position);
+                }
+                ++position;
+                start = -1;
+            }
+            if (c == '\n') {
+                ++line;
+            }
+        }
+    }
+
+    public static List<String> terms(String text) {
+        List<String> terms = new ArrayList<>();
+        tokenize(text, (term, line, position) -> terms.add(term));
+        return terms;
+    }
+}
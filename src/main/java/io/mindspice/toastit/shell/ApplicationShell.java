@@ -25,6 +25,7 @@ import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.nio.file.StandardOpenOption;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Consumer;
 
 
@@ -37,6 +38,7 @@ public class ApplicationShell {
     private File scratchPad = new File("src/main/resources/scheme/scratch-pad.scm");
     DirectoryEval dirManager;
     Terminal terminal;
+    private final Set<LineReader> sessions = ConcurrentHashMap.newKeySet();
 
     public ApplicationShell(KawaInstance kawa) throws IOException {
         this.kawa = kawa;
@@ -64,6 +66,17 @@ public class ApplicationShell {
         return output;
     }
 
+    // Shown above the prompt in every connected session without disturbing the line being edited
+    public void broadcast(String message) {
+        for (var reader : sessions) {
+            try {
+                reader.printAbove(message);
+            } catch (Exception e) {
+                sessions.remove(reader); // Session dropped without exiting
+            }
+        }
+    }
+
     private static class AuthInstance implements PasswordAuthenticator {
         @Override
         public boolean authenticate(String username, String password, ServerSession session) {
@@ -85,6 +98,7 @@ public class ApplicationShell {
 
             LineReader reader = initLineReader();
             initWidgets(reader);
+            sessions.add(reader);
 
             completer.loadSchemeCompletions(kawa);
 
@@ -99,6 +113,7 @@ public class ApplicationShell {
                     switch (inputLine) {
                         case String s when s.startsWith("exit") -> {
                             onExit(reader, shellParams);
+                            sessions.remove(reader);
                             return;
                         }
                         case String s when s.startsWith("clear") -> onClear(terminal);
@@ -1,5 +1,6 @@
 package io.mindspice.toastit.shell.evaluators;
 
+import io.mindspice.toastit.App;
 import io.mindspice.toastit.calendar.Calendar;
 import io.mindspice.toastit.util.Settings;
 
@@ -24,6 +25,8 @@ public class CalendarEval extends ShellEvaluator<CalendarEval> {
                     date.getMonth(),
                     Settings.CALENDAR_CELL_WIDTH,
                     Settings.CALENDAR_CELL_HEIGHT,
+                    App.instance(),
+                    Settings.CALENDAR_DATA_MAPPER,
                     Settings.CALENDAR_CELL_MAPPER
             );
         }
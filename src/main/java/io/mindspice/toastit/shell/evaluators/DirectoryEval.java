@@ -2,7 +2,9 @@ package io.mindspice.toastit.shell.evaluators;
 
 import org.jline.builtins.Nano;
 import org.jline.terminal.Terminal;
+import io.mindspice.toastit.enums.EntryType;
 import io.mindspice.toastit.shell.ShellCommand;
+import io.mindspice.toastit.util.EntryImporter;
 
 import java.io.File;
 import java.io.IOException;
@@ -42,7 +44,8 @@ public class DirectoryEval extends ShellEvaluator<DirectoryEval> {
                 ShellCommand.of("touch", DirectoryEval::touch),
                 ShellCommand.of("cd", DirectoryEval::changeDir),
                 ShellCommand.of("mv", DirectoryEval::move),
-                ShellCommand.of("rm", DirectoryEval::remove)
+                ShellCommand.of("rm", DirectoryEval::remove),
+                ShellCommand.of("import", DirectoryEval::importEntries)
         );
         commands.addAll(commandInit);
     }
@@ -124,6 +127,29 @@ public class DirectoryEval extends ShellEvaluator<DirectoryEval> {
         }
     }
 
+    private String importEntries(String input) {
+        String[] splitCmd = input.split(" ");
+        if (splitCmd.length < 2) {
+            return "Error: No file specified for import, usage: import <file.json|file.csv> [journal]";
+        }
+        Path file = currPath.resolve(splitCmd[1]).normalize();
+        if (!Files.exists(file)) {
+            return "Error: File does not exist: " + file;
+        }
+        try {
+            boolean csvJournal = splitCmd.length > 2 && splitCmd[2].equalsIgnoreCase("journal");
+            if (csvJournal && !file.getFileName().toString().toLowerCase().endsWith(".csv")) {
+                return "Error: The journal option is only for .csv files, .json imports already carry journals";
+            }
+            var result = csvJournal
+                         ? EntryImporter.importCsv(file, EntryType.JOURNAL)
+                         : EntryImporter.importFile(file);
+            return result.toString();
+        } catch (IOException e) {
+            return "Error: Import failed | " + e.getMessage();
+        }
+    }
+
     private String changeDir(String input) {
         String[] splitCmd = input.split(" ");
         if (splitCmd.length < 2) {
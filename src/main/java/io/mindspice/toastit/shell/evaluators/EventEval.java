@@ -4,18 +4,30 @@ import io.mindspice.toastit.App;
 import com.github.freva.asciitable.ColumnData;
 import io.mindspice.toastit.entries.event.EventEntry;
 import io.mindspice.toastit.entries.event.EventManager;
+import io.mindspice.toastit.entries.event.FreeBusy;
+import io.mindspice.toastit.entries.event.Recurrence;
 import io.mindspice.mindlib.data.tuples.Pair;
 import io.mindspice.toastit.shell.InputPrompt;
 import io.mindspice.toastit.shell.ShellCommand;
+import io.mindspice.toastit.util.DateTimeUtil;
+import io.mindspice.toastit.util.Settings;
 import io.mindspice.toastit.util.TableConfig;
 import io.mindspice.toastit.util.TableUtil;
+import io.mindspice.toastit.util.Util;
 
 import java.io.IOException;
+import java.time.DateTimeException;
+import java.time.DayOfWeek;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
+import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
 
@@ -35,7 +47,9 @@ public class EventEval extends ShellEvaluator<EventEval> {
         commands.addAll(List.of(
                 ShellCommand.of("new", EventEval::createNewEvent),
                 ShellCommand.of(Set.of("manage", "manager"), EventEval::manageEvents),
-                ShellCommand.of("remove past", EventEval::clearPast)
+                ShellCommand.of("remove past", EventEval::clearPast),
+                ShellCommand.of("free", EventEval::freeSlots),
+                ShellCommand.of("busy", EventEval::busyWeek)
         ));
     }
 
@@ -50,11 +64,88 @@ public class EventEval extends ShellEvaluator<EventEval> {
         return TableUtil.generateTableWithHeader("Past Events", eventManager.getPastEvents(), viewColumns);
     }
 
+    // From the interval index, includes events still running from earlier days
+    public String todayEventTable() {
+        List<ColumnData<EventEntry>> viewColumns = TableConfig.EVENT_OVERVIEW_TABLE;
+        return TableUtil.generateTableWithHeader("Today", eventManager.getEventsOn(LocalDate.now()), viewColumns);
+    }
+
+    public String conflictWarning(EventEntry event) {
+        if (event.startTime() == null || event.endTime() == null) {
+            return "";
+        }
+        List<EventEntry> conflicts = eventManager.getConflicts(event);
+        if (conflicts.isEmpty()) {
+            return "";
+        }
+        return TableUtil.generateTableWithHeader(
+                String.format("!!! Overlaps %d Event(s) !!!", conflicts.size()), conflicts, TableConfig.EVENT_OVERVIEW_TABLE
+        );
+    }
+
     public String futureEventTable() {
         List<ColumnData<EventEntry>> viewColumns = TableConfig.EVENT_OVERVIEW_TABLE;
         return TableUtil.generateTableWithHeader("Future Event", eventManager.getFutureEvents(), viewColumns);
     }
 
+    // free <minutes> [days], slots from now through the next days (default 7)
+    public String freeSlots(String input) {
+        String[] args = input.trim().split("\\s+");
+        if (args.length < 2 || !Util.isInt(args[1]) || (args.length > 2 && !Util.isInt(args[2]))) {
+            return "Invalid Input, format: free <minutes> [days]";
+        }
+        int minutes = Integer.parseInt(args[1]);
+        int days = args.length > 2 ? Integer.parseInt(args[2]) : 7;
+        LocalDateTime from = LocalDateTime.now().truncatedTo(ChronoUnit.MINUTES);
+        List<FreeBusy.Slot> slots;
+        try {
+            slots = eventManager.findFreeSlots(from, from.toLocalDate().plusDays(days).atStartOfDay(), minutes);
+        } catch (IOException e) {
+            System.err.println(Arrays.toString(e.getStackTrace()));
+            return "Error reading events: " + e.getMessage();
+        }
+        if (slots.isEmpty()) {
+            return String.format("No free slots of %d minutes in the next %d days", minutes, days);
+        }
+        return TableUtil.generateKeyPairTable(
+                String.format("Free Slots (%d+ min)", minutes),
+                slots,
+                slot -> hoursMinutes(slot.minutes()),
+                FreeBusy.Slot::toString
+        ) + "\n";
+    }
+
+    // busy [date], the week holding date (default this week)
+    public String busyWeek(String input) {
+        String[] args = input.trim().split("\\s+", 2);
+        LocalDate date;
+        try {
+            date = args.length > 1 ? DateTimeUtil.parseDateInput(args[1].trim()) : LocalDate.now();
+        } catch (DateTimeException e) {
+            return String.format("Invalid input expected: %s", Settings.DATE_INPUT_PATTERNS);
+        }
+        Map<LocalDate, List<FreeBusy.Slot>> week;
+        try {
+            week = eventManager.getBusyWeek(date);
+        } catch (IOException e) {
+            System.err.println(Arrays.toString(e.getStackTrace()));
+            return "Error reading events: " + e.getMessage();
+        }
+        DateTimeFormatter time = DateTimeFormatter.ofPattern("HH:mm");
+        return TableUtil.generateKeyPairTable(
+                "Busy Week Of " + week.keySet().iterator().next(),
+                List.copyOf(week.entrySet()),
+                day -> day.getKey().getDayOfWeek() + " | " + hoursMinutes(FreeBusy.busyMinutes(day.getValue())),
+                day -> TableUtil.wrapString(day.getValue().stream()
+                        .map(slot -> slot.start().format(time) + "-" + slot.end().format(time))
+                        .collect(Collectors.joining(", ")), Settings.TABLE_MAX_COLUMN_WIDTH - 4)
+        ) + "\n";
+    }
+
+    private static String hoursMinutes(long minutes) {
+        return String.format("%dh %02dm", minutes / 60, minutes % 60);
+    }
+
     public String clearPast(String input) {
         if (confirmPrompt("Clear Past Events?")) {
             try {
@@ -96,6 +187,10 @@ public class EventEval extends ShellEvaluator<EventEval> {
             if (end == null) { return "Aborted..."; }
             eventBuilder.endTime = end;
 
+            //Repeats
+            printTable.run();
+            eventBuilder.recurrence = promptRecurrence();
+
             //Tags
             printTable.run();
             eventBuilder.tags = promptTags("Event tags");
@@ -107,6 +202,10 @@ public class EventEval extends ShellEvaluator<EventEval> {
             printTable.run();
             boolean confirmed = false;
             while (!confirmed) {
+                String conflicts = conflictWarning(eventBuilder.build());
+                if (!conflicts.isEmpty()) {
+                    printLnToTerminal(conflicts);
+                }
                 confirmed = confirmPrompt("Finished? (No to edit)");
                 if (!confirmed) {
                     updateEvent(eventBuilder.build());
@@ -149,6 +248,11 @@ public class EventEval extends ShellEvaluator<EventEval> {
             eventBuilder.endTime = promptDateTime("New End");
         }
 
+        printTable.run();
+        if (confirmPrompt("Replace Repeats?")) {
+            eventBuilder.recurrence = promptRecurrence();
+        }
+
         printTable.run();
         if (confirmPrompt("Replace Tags?")) {
             eventBuilder.tags = promptTags("New Event Tags");
@@ -160,13 +264,72 @@ public class EventEval extends ShellEvaluator<EventEval> {
         }
 
         printTable.run();
+        EventEntry updated = eventBuilder.build();
+        String conflicts = conflictWarning(updated);
+        if (!conflicts.isEmpty()) {
+            printLnToTerminal(conflicts);
+        }
         promptInput("Updated Event, Press Enter To Continue...");
-        return eventBuilder.build();
+        return updated;
 
     }
 
 
 
+    // Null for a one off event
+    public Recurrence promptRecurrence() {
+        Recurrence.Frequency frequency = null;
+        while (frequency == null) {
+            String input = promptInput("Repeats (none, daily, weekly, monthly): ").trim();
+            if (input.isEmpty() || input.equalsIgnoreCase("none")) {
+                return null;
+            }
+            frequency = Util.enumMatch(Recurrence.Frequency.values(), input);
+            if (frequency == null) {
+                printLnToTerminal("Invalid Input");
+            }
+        }
+
+        String every = promptInput("Repeat every # (blank for 1): ").trim();
+        Recurrence recurrence = Recurrence.of(frequency, Util.isInt(every) ? Integer.parseInt(every) : 1);
+
+        if (frequency == Recurrence.Frequency.WEEKLY) {
+            String input = promptInput("On days, ex. \"mon wed fri\" (blank for start day): ").trim();
+            List<DayOfWeek> days = input.isEmpty()
+                                   ? List.of()
+                                   : Arrays.stream(input.split("[\\s,]+"))
+                                           .map(day -> Util.enumMatch(DayOfWeek.values(), day))
+                                           .filter(Objects::nonNull)
+                                           .toList();
+            recurrence = new Recurrence(frequency, recurrence.interval(), days, null, 0, List.of());
+        }
+
+        while (true) {
+            String[] input = promptInput("Ends (\"until <date>\", \"count <#>\", blank for never): ").trim().split(" ", 2);
+            try {
+                switch (input[0].toLowerCase()) {
+                    case String s when s.startsWith("until") && input.length == 2 ->
+                            recurrence = recurrence.withUntil(DateTimeUtil.parseDateInput(input[1].trim()));
+                    case String s when s.startsWith("count") && input.length == 2 && Util.isInt(input[1].trim()) ->
+                            recurrence = recurrence.withCount(Integer.parseInt(input[1].trim()));
+                    case String s when s.isEmpty() -> { }
+                    default -> {
+                        printLnToTerminal("Invalid Input");
+                        continue;
+                    }
+                }
+                break;
+            } catch (DateTimeException e) {
+                printLnToTerminal(String.format("Invalid input expected: %s", Settings.DATE_INPUT_PATTERNS));
+            }
+        }
+
+        while (confirmPrompt("Skip a date?")) {
+            recurrence = recurrence.withException(promptDate("Skipped"));
+        }
+        return recurrence;
+    }
+
     public String manageEvents(String input) {
         InputPrompt<EventEntry> prompt = new InputPrompt<>(eventManager.getAllEvents());
 
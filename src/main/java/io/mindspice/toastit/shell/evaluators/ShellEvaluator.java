@@ -1,6 +1,7 @@
 package io.mindspice.toastit.shell.evaluators;
 
 import io.mindspice.mindlib.data.tuples.Pair;
+import io.mindspice.toastit.App;
 import io.mindspice.toastit.entries.DatedEntry;
 import io.mindspice.toastit.enums.NotificationLevel;
 import io.mindspice.toastit.notification.Reminder;
@@ -20,6 +21,8 @@ import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Set;
+import java.util.UUID;
 import java.util.function.*;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
@@ -405,13 +408,25 @@ public abstract class ShellEvaluator<T> {
                 return prompt.create().filter(DatedEntry::completed).display(__ -> "Filter Completed");
             }
 
-            case String s1 when s1.startsWith("tag") -> {
+            case String s1 when s1.startsWith("tag") || s1.startsWith("anytag") -> {
                 if (userInput.length < 3) { // Need to validate here since index is passed to prompt
                     return "Invalid input";
                 }
+                boolean matchAll = s1.startsWith("tag");
+                List<String> tags = Arrays.asList(userInput).subList(2, userInput.length);
+                Predicate<U> tagFilter;
+                try {
+                    Set<UUID> tagged = App.instance().getDatabase().getUUIDsByTags(tags, matchAll);
+                    tagFilter = t -> tagged.contains(t.uuid());
+                } catch (IOException e) {
+                    System.err.println("Tag index lookup failed, filtering in memory: " + e.getMessage());
+                    tagFilter = matchAll
+                                ? t -> t.tags().containsAll(tags)
+                                : t -> tags.stream().anyMatch(t.tags()::contains);
+                }
                 return prompt.create()
-                        .filter(t -> t.tags().contains(userInput[2]))
-                        .display(__ -> "Filtered Tag: " + userInput[2]);
+                        .filter(tagFilter)
+                        .display(__ -> (matchAll ? "Filtered Tags: " : "Filtered Any Tag: ") + tags);
             }
 
             case String s1 when s1.startsWith("name") -> {
@@ -233,7 +233,8 @@ public class TaskEval extends ShellEvaluator<TaskEval> {
 
         String cmds = String.join("\n", "\nAvailable Actions:",
                 TableUtil.basicRow(2, "new", "view <index/name>", "update <index/name>", "complete <index/name>", "delete <index/name>"),
-                TableUtil.basicRow(2, "filter all", "filter completed", "filter start", "filter name <name>", "filter tag <tag>", "filter due"),
+                TableUtil.basicRow(2, "filter all", "filter completed", "filter start", "filter due"),
+                TableUtil.basicRow(2, "filter name <name>", "filter tag <tags..>", "filter anytag <tags..>"),
                 TableUtil.basicRow(2, "archive <index/name>", "archive completed", "done"));
 
         String output = "";
@@ -6,26 +6,37 @@ import io.mindspice.toastit.entries.SearchResult;
 import io.mindspice.toastit.entries.text.TextEntry;
 import io.mindspice.toastit.entries.text.TextManager;
 import io.mindspice.toastit.enums.EntryType;
+import io.mindspice.toastit.search.SearchExecutor;
+import io.mindspice.toastit.search.SearchQuery;
 import io.mindspice.toastit.shell.InputPrompt;
 import io.mindspice.toastit.shell.ShellCommand;
+import io.mindspice.toastit.sqlite.DBConnection;
 import io.mindspice.toastit.util.Settings;
 import io.mindspice.toastit.util.TableConfig;
 import io.mindspice.toastit.util.TableUtil;
 import io.mindspice.toastit.util.Util;
+import org.jline.terminal.Terminal;
 
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.function.Consumer;
+import java.util.function.Function;
 
 
 public class TextEval extends ShellEvaluator<TextEval> {
     public final TextManager manager;
     public final String tStr;
     public final EntryType type;
+    // Start key of each page visited so far, index 0 (the newest page) is null
+    private final List<DBConnection.PageKey> pageStarts = new ArrayList<>(Collections.singletonList(null));
+    private int pageIndex = 0;
+    private TextManager.Page page;
 
     public TextEval(EntryType entryType) {
         if (entryType == EntryType.NOTE) {
@@ -44,7 +55,9 @@ public class TextEval extends ShellEvaluator<TextEval> {
                 ShellCommand.of("new", TextEval::createNewEntry),
                 ShellCommand.of("manage", TextEval::manageEntries),
                 ShellCommand.of("open", TextEval::onOpenEntry),
-                ShellCommand.of("view", TextEval::onViewEntry)
+                ShellCommand.of("view", TextEval::onViewEntry),
+                ShellCommand.of("next", TextEval::onNextPage),
+                ShellCommand.of("prev", TextEval::onPrevPage)
         ));
         if (type == EntryType.JOURNAL) {
             commands.add(ShellCommand.of("daily", TextEval::dailyJournal));
@@ -57,21 +70,79 @@ public class TextEval extends ShellEvaluator<TextEval> {
         return TableConfig.TEXT_DASHBOARD_FORMATTER.apply(this) + "\n";
     }
 
+    // Re-read on every render so entries added or archived elsewhere show up, only the page key is kept
+    private TextManager.Page loadPage() {
+        try {
+            page = manager.getPage(pageStarts.get(pageIndex));
+            if (page.entries().isEmpty() && pageIndex > 0) { // Page emptied by archives/deletes, step back
+                pageStarts.subList(pageIndex, pageStarts.size()).clear();
+                --pageIndex;
+                return loadPage();
+            }
+        } catch (IOException e) {
+            System.err.println("Error loading " + tStr + " page: " + e.getMessage());
+            page = new TextManager.Page(List.of(), 0, null);
+        }
+        return page;
+    }
+
+    private String pageHeader(String title) {
+        int pageSize = Math.max(1, Settings.TEXT_PAGE_SIZE);
+        int pages = Math.max(1, (page.total() + pageSize - 1) / pageSize);
+        return String.format("%s | Page %d of %d (%d total)", title, pageIndex + 1, pages, page.total());
+    }
+
+    private boolean nextPage() {
+        if (page == null || !page.hasMore()) {
+            return false;
+        }
+        pageStarts.subList(pageIndex + 1, pageStarts.size()).clear();
+        pageStarts.add(page.next());
+        ++pageIndex;
+        return true;
+    }
+
+    private boolean prevPage() {
+        if (pageIndex == 0) {
+            return false;
+        }
+        --pageIndex;
+        return true;
+    }
+
+    public String onNextPage(String s) {
+        return nextPage() ? modeDisplay() : "No More " + tStr + "s";
+    }
+
+    public String onPrevPage(String s) {
+        return prevPage() ? modeDisplay() : "Already On First Page";
+    }
+
     public String activeTextTable() {
         List<ColumnData<TextEntry>> viewColumns = TableConfig.TEXT_OVERVIEW_TABLE;
-        String table = TableUtil.generateTableWithHeader("Active " + tStr, manager.getEntries(), viewColumns);
+        loadPage();
+        String table = TableUtil.generateTableWithHeader(pageHeader("Active " + tStr), page.entries(), viewColumns);
         String cmds = String.join("\n", "\nAvailable Actions:",
                 (type == EntryType.JOURNAL
-                 ? TableUtil.basicRow(2, "new", "manage", "open <name>", "view <name>", "daily")
-                 : TableUtil.basicRow(2, "new", "manage", "open <name>", "view <name>"))
+                 ? TableUtil.basicRow(2, "new", "manage", "open <name>", "view <name>", "next", "prev", "daily")
+                 : TableUtil.basicRow(2, "new", "manage", "open <name>", "view <name>", "next", "prev"))
         );
 
         return String.join("\n", table, cmds) + "\n";
 
     }
 
+    private TextEntry findEntry(String name) {
+        try {
+            return manager.findByName(name);
+        } catch (IOException e) {
+            System.err.println("Error looking up " + tStr + ": " + e.getMessage());
+            return null;
+        }
+    }
+
     public String onOpenEntry(String s) {
-        TextEntry entry = Util.entryMatch(manager.getEntries(), Util.removeFirstWord(s));
+        TextEntry entry = findEntry(Util.removeFirstWord(s));
         if (entry == null) {
             return "Entry Not Found";
         } else {
@@ -81,7 +152,7 @@ public class TextEval extends ShellEvaluator<TextEval> {
     }
 
     public String onViewEntry(String s) {
-        TextEntry entry = Util.entryMatch(manager.getEntries(), Util.removeFirstWord(s));
+        TextEntry entry = findEntry(Util.removeFirstWord(s));
         if (entry == null) {
             return "Entry Not Found";
         } else {
@@ -143,17 +214,18 @@ public class TextEval extends ShellEvaluator<TextEval> {
     }
 
     public String manageEntries(String input) {
-        InputPrompt<TextEntry> textPrompt = new InputPrompt<>(manager.getEntries());
+        InputPrompt<TextEntry> textPrompt = new InputPrompt<>(loadPage().entries());
 
         String cmds = String.join("\n", "\nAvailable Actions:",
                 TableUtil.basicRow(2, "new", "open <index/name>", "view <index/name>", "update <index/name>", "delete <index/name>"),
-                TableUtil.basicRow(2, "filter all", "filter tag <tag>", "filter name <name>", "filter created"),
-                TableUtil.basicRow(2, "search <String>", "archive <index/name>", "done"));
+                TableUtil.basicRow(2, "next", "prev"),
+                TableUtil.basicRow(2, "filter all", "filter tag <tags..>", "filter anytag <tags..>", "filter name <name>", "filter created"),
+                TableUtil.basicRow(2, "search <String>", "query <query>", "reindex", "cache [clear]", "archive <index/name>", "done"));
 
         String output = "";
         while (true) {
             clearAndPrint(TableUtil.generateTableWithHeader(
-                    "Manage " + tStr,
+                    pageHeader("Manage " + tStr),
                     textPrompt.getFiltered(),
                     TableConfig.TEXT_MANAGE_TABLE)
             );
@@ -174,7 +246,23 @@ public class TextEval extends ShellEvaluator<TextEval> {
 
                 case String s when s.startsWith("new") -> {
                     createNewEntry("");
-                    textPrompt = new InputPrompt<>(manager.getEntries());
+                    textPrompt.replaceItems(loadPage().entries());
+                }
+
+                case String s when s.startsWith("next") -> {
+                    if (nextPage()) {
+                        textPrompt.replaceItems(loadPage().entries());
+                    } else {
+                        output = "No More " + tStr + "s";
+                    }
+                }
+
+                case String s when s.startsWith("prev") -> {
+                    if (prevPage()) {
+                        textPrompt.replaceItems(loadPage().entries());
+                    } else {
+                        output = "Already On First Page";
+                    }
                 }
 
                 case String s when s.startsWith("update") -> {
@@ -244,8 +332,33 @@ public class TextEval extends ShellEvaluator<TextEval> {
                 case String s when s.startsWith("filter") -> filterPrompt(userInput, textPrompt);
 
                 case String s when s.startsWith("search") && userInput.length > 1 -> {
-                    List<SearchResult> results = manager.searchEntries(rawInput.replace("search", ""));
-                    viewSearchResults(results);
+                    output = runSearch(listener -> manager.startSearch(rawInput.replaceFirst("search", ""), listener));
+                }
+
+                case String s when s.startsWith("query") && userInput.length > 1 -> {
+                    try {
+                        SearchQuery query = SearchQuery.parse(rawInput.replaceFirst("query", ""));
+                        output = runSearch(listener -> manager.startQuery(query, listener));
+                    } catch (IllegalArgumentException e) {
+                        output = "Invalid query: " + e.getMessage();
+                    }
+                }
+
+                case String s when s.startsWith("cache") -> {
+                    if (userInput.length > 1 && userInput[1].equals("clear")) {
+                        manager.clearSearchCache();
+                    }
+                    output = "Search cache | " + manager.getSearchCacheStats();
+                }
+
+                case String s when s.startsWith("reindex") -> {
+                    try {
+                        manager.rebuildSearchIndex();
+                        output = "Search index rebuilt";
+                    } catch (IOException e) {
+                        output = "Error rebuilding search index: " + e.getMessage();
+                        System.err.println(e);
+                    }
                 }
 
                 case String s when s.startsWith("archive") -> {
@@ -279,6 +392,31 @@ public class TextEval extends ShellEvaluator<TextEval> {
         promptInput("Press Enter To Return To Menu");
     }
 
+    /*
+     * Streams hits to the terminal while the search runs, Ctrl-C cancels it and keeps what was found so far.
+     * Returns a status message when the results are partial.
+     */
+    private String runSearch(Function<Consumer<List<SearchResult>>, SearchExecutor.Search<SearchResult>> starter) {
+        clearAndPrint("Searching... (Ctrl-C to stop)\n");
+        var search = starter.apply(batch -> batch.forEach(
+                result -> printLnToTerminal(result.entry().name() + " | " + TableUtil.truncateString(result.matchedLine())))
+        );
+        Terminal.SignalHandler previous = terminal.handle(Terminal.Signal.INT, signal -> search.cancel());
+        List<SearchResult> results;
+        try {
+            results = search.await();
+        } finally {
+            terminal.handle(Terminal.Signal.INT, previous);
+        }
+        viewSearchResults(results);
+        return switch (search.status()) {
+            case CANCELLED -> "Search cancelled, showed partial results";
+            case TIMED_OUT -> "Search timed out, showed partial results";
+            case LIMIT_REACHED -> "Result limit reached";
+            default -> "";
+        };
+    }
+
     public void viewSearchResults(List<SearchResult> results) {
         InputPrompt<SearchResult> resultPrompt = new InputPrompt<>(results);
         String cmds = String.join("\n", "\nAvailable Actions:",
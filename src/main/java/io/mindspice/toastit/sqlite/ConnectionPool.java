@@ -0,0 +1,135 @@
+package io.mindspice.toastit.sqlite;
+
+import org.sqlite.SQLiteConfig;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+
+public class ConnectionPool implements AutoCloseable {
+    private final String url;
+    private final SQLiteConfig config;
+    private final List<String> connectionPragmas;
+    private final int maxSize;
+    private final int statementCacheSize;
+    private final int busyTimeoutMs;
+    private final BlockingQueue<PooledConnection> idle;
+    private final List<PooledConnection> all = new CopyOnWriteArrayList<>();
+    // Nested calls on the same thread (ex. entry constructors that load linked entries) reuse the held lease
+    private final ThreadLocal<PooledConnection> held = new ThreadLocal<>();
+    private volatile boolean closed = false;
+
+    public ConnectionPool(String url, int maxSize, int statementCacheSize, int busyTimeoutMs) {
+        this(url, new SQLiteConfig(), List.of(), maxSize, statementCacheSize, busyTimeoutMs);
+    }
+
+    // connectionPragmas are ran on every new connection, for pragmas SQLiteConfig has no setter for
+    public ConnectionPool(String url, SQLiteConfig config, List<String> connectionPragmas,
+            int maxSize, int statementCacheSize, int busyTimeoutMs) {
+        this.url = url;
+        this.config = config;
+        this.connectionPragmas = connectionPragmas;
+        this.maxSize = Math.max(1, maxSize);
+        this.statementCacheSize = Math.max(1, statementCacheSize);
+        this.busyTimeoutMs = Math.max(0, busyTimeoutMs);
+        this.config.setBusyTimeout(this.busyTimeoutMs);
+        this.idle = new ArrayBlockingQueue<>(this.maxSize);
+    }
+
+    public PooledConnection acquire() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool is closed");
+        }
+
+        PooledConnection conn = held.get();
+        if (conn != null) {
+            conn.holdCount++;
+            return conn;
+        }
+
+        conn = idle.poll();
+        if (conn == null) {
+            conn = tryCreate();
+        }
+        if (conn == null) {
+            try {
+                conn = idle.poll(busyTimeoutMs + 1000L, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Interrupted waiting for database connection");
+            }
+            if (conn == null) {
+                throw new SQLException("Timed out waiting for database connection, pool size: " + maxSize);
+            }
+        }
+        conn.holdCount = 1;
+        held.set(conn);
+        return conn;
+    }
+
+    void release(PooledConnection conn) {
+        if (--conn.holdCount > 0) {
+            return;
+        }
+        held.remove();
+        try {
+            if (!conn.raw().getAutoCommit()) {
+                conn.raw().rollback();
+                conn.raw().setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            System.err.println("Error resetting pooled connection: " + e.getMessage());
+        }
+        if (closed || !idle.offer(conn)) {
+            all.remove(conn);
+            conn.closeConnection();
+        }
+    }
+
+    private synchronized PooledConnection tryCreate() throws SQLException {
+        if (all.size() >= maxSize) {
+            return null;
+        }
+        PooledConnection conn = new PooledConnection(openConnection(), this, statementCacheSize);
+        all.add(conn);
+        return conn;
+    }
+
+    public Connection openConnection() throws SQLException {
+        Connection conn = DriverManager.getConnection(url, config.toProperties());
+        if (conn == null) {
+            throw new SQLException("Failed to connect/create database at: " + url);
+        }
+        try (Statement stmt = conn.createStatement()) {
+            for (String pragma : connectionPragmas) {
+                stmt.execute(pragma);
+            }
+        }
+        return conn;
+    }
+
+    public int size() {
+        return all.size();
+    }
+
+    public int idleCount() {
+        return idle.size();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        PooledConnection conn;
+        while ((conn = idle.poll()) != null) {
+            all.remove(conn);
+            conn.closeConnection();
+        }
+    }
+}
@@ -1,61 +1,284 @@
 package io.mindspice.toastit.sqlite;
 
+import io.mindspice.mindlib.data.tuples.Pair;
 import io.mindspice.toastit.entries.event.EventEntry;
 import io.mindspice.toastit.entries.project.ProjectEntry;
 import io.mindspice.toastit.entries.task.TaskEntry;
 import io.mindspice.toastit.entries.text.TextEntry;
+import io.mindspice.toastit.enums.EntryType;
+import io.mindspice.toastit.enums.NotificationLevel;
+import io.mindspice.toastit.search.IndexDoc;
 import io.mindspice.toastit.util.DateTimeUtil;
 import io.mindspice.toastit.util.JSON;
 import io.mindspice.toastit.util.Settings;
+import org.sqlite.SQLiteConfig;
 
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.sql.*;
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.List;
-import java.util.UUID;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 
 public class DBConnection {
+    private static final int BATCH_FLUSH_SIZE = 500;
+
+    private static final String EVENTS_BEFORE = "SELECT * FROM events WHERE start_time < ? ORDER BY start_time";
+    private static final String ACTIVE_TASKS = "SELECT * FROM tasks WHERE started = 1 AND archived = 0 ORDER BY due_by";
+    private static final String ALL_TASKS = "SELECT * FROM tasks WHERE archived = 0 ORDER BY due_by";
+    private static final String ACTIVE_PROJECTS = "SELECT * FROM projects WHERE started = 1 AND archived = 0 ORDER BY due_by";
+    private static final String ALL_PROJECTS = "SELECT * FROM projects WHERE archived = 0 ORDER BY due_by";
+    private static final String ALL_NOTES = "SELECT * FROM notes WHERE archived = 0 ORDER BY created_at";
+    private static final String ALL_JOURNALS = "SELECT * FROM journals WHERE archived = 0 ORDER BY created_at";
+    private static final String TASKS_BY_UUIDS = "SELECT * FROM tasks WHERE uuid IN (SELECT value FROM json_each(?))";
+    // [from, to) in epoch seconds, a calendar month in one query
+    private static final String EVENTS_STARTING_BETWEEN =
+            "SELECT * FROM events WHERE start_time >= ? AND start_time < ? ORDER BY start_time";
+    // Recurring rows whose first occurrence is before the threshold, may still repeat into any later range
+    private static final String SERIES_STARTING_BEFORE =
+            "SELECT * FROM events WHERE recurrence IS NOT NULL AND start_time < ? ORDER BY start_time";
+    // Newest first, keyed on (created_at, uuid) so pages stay stable with ties and don't degrade like OFFSET
+    private static final String TEXT_PAGE_FIRST =
+            "SELECT * FROM %s WHERE archived = 0 ORDER BY created_at DESC, uuid DESC LIMIT ?";
+    private static final String TEXT_PAGE_AFTER = """
+            SELECT * FROM %s WHERE archived = 0 AND (created_at, uuid) < (?, ?)
+            ORDER BY created_at DESC, uuid DESC LIMIT ?
+            """;
+    private static final String TEXT_COUNT = "SELECT COUNT(*) FROM %s WHERE archived = 0";
+    private static final String TEXT_BY_NAME = """
+            SELECT * FROM %s WHERE archived = 0 AND name LIKE ? ESCAPE '\\'
+            ORDER BY created_at DESC, uuid DESC LIMIT ?
+            """;
+    private static final String TEXT_BY_UUIDS =
+            "SELECT * FROM %s WHERE archived = 0 AND uuid IN (SELECT value FROM json_each(?))";
+    // series_end is the end of the last occurrence, null for series that never end
+    private static final String DELETE_PAST_EVENTS = "DELETE FROM events WHERE series_end < ?";
+    private static final String TAGS_DELETE = "DELETE FROM entry_tags WHERE entry_uuid = ?";
+    private static final String TAGS_INSERT =
+            "INSERT OR IGNORE INTO entry_tags (entry_uuid, entry_type, tag) SELECT ?, ?, value FROM json_each(?)";
+    private static final String TAGS_DELETE_ORPHANED_EVENTS =
+            "DELETE FROM entry_tags WHERE entry_type = 'EVENT' AND entry_uuid NOT IN (SELECT uuid FROM events)";
+    private static final String TAGS_MATCH_ANY = """
+            SELECT DISTINCT entry_uuid, entry_type FROM entry_tags
+            WHERE tag IN (SELECT value FROM json_each(?)) AND entry_type IN (SELECT value FROM json_each(?))
+            """;
+    private static final String TAGS_MATCH_ALL = """
+            SELECT entry_uuid, entry_type FROM entry_tags
+            WHERE tag IN (SELECT value FROM json_each(?)) AND entry_type IN (SELECT value FROM json_each(?))
+            GROUP BY entry_uuid, entry_type
+            HAVING COUNT(*) = ?
+            """;
+    // Re-adding a reminder keeps a row that already fired as it is
+    private static final String NOTIFICATION_UPSERT = """
+            INSERT INTO notifications (entry_uuid, entry_type, due_at, level) VALUES (?, ?, ?, ?)
+            ON CONFLICT (entry_uuid, due_at) DO UPDATE SET level = excluded.level WHERE state = 'PENDING'
+            """;
+    private static final String NOTIFICATION_FIRE = """
+            INSERT INTO notifications (entry_uuid, entry_type, due_at, level, state, fired_at)
+            VALUES (?, ?, ?, ?, 'FIRED', ?)
+            ON CONFLICT (entry_uuid, due_at) DO UPDATE SET state = 'FIRED', fired_at = excluded.fired_at
+            WHERE state = 'PENDING'
+            """;
+    private static final String NOTIFICATION_DELETE_PENDING =
+            "DELETE FROM notifications WHERE entry_uuid = ? AND due_at = ? AND state = 'PENDING'";
+    private static final String NOTIFICATIONS_ACKNOWLEDGE =
+            "UPDATE notifications SET state = 'ACKNOWLEDGED' WHERE entry_uuid = ? AND state = 'FIRED'";
+    private static final String NOTIFICATIONS_MISSED =
+            "SELECT * FROM notifications WHERE state = 'PENDING' AND due_at < ? ORDER BY due_at";
+    private static final String NOTIFICATIONS_FIRED_SINCE =
+            "SELECT * FROM notifications WHERE state = 'FIRED' AND due_at >= ? ORDER BY due_at";
+    private static final String NOTIFICATIONS_PENDING_SINCE =
+            "SELECT * FROM notifications WHERE state = 'PENDING' AND due_at >= ? ORDER BY due_at";
+    private static final String NOTIFICATIONS_PRUNE =
+            "DELETE FROM notifications WHERE state != 'PENDING' AND due_at < ?";
+
+    // Checked on startup, each should be served by an index without a temp b-tree for ordering
+    private static final List<String> HOT_QUERIES = List.of(
+            EVENTS_BEFORE, ACTIVE_TASKS, ALL_TASKS, ACTIVE_PROJECTS,
+            ALL_PROJECTS, ALL_NOTES, ALL_JOURNALS, TASKS_BY_UUIDS, DELETE_PAST_EVENTS, EVENTS_STARTING_BETWEEN,
+            SERIES_STARTING_BEFORE,
+            TAGS_DELETE, TAGS_MATCH_ANY, TAGS_MATCH_ALL, NOTIFICATIONS_MISSED, NOTIFICATIONS_FIRED_SINCE,
+            NOTIFICATIONS_PENDING_SINCE,
+            String.format(TEXT_PAGE_FIRST, "notes"), String.format(TEXT_PAGE_AFTER, "notes"),
+            String.format(TEXT_PAGE_FIRST, "journals"), String.format(TEXT_PAGE_AFTER, "journals")
+    );
+
+    private static final String TEXT_DOC_ROWID = "SELECT rowid FROM text_search_docs WHERE uuid = ?";
+    private static final String TEXT_DOC_INSERT = "INSERT INTO text_search_docs (uuid, entry_type, mtime) VALUES (?, ?, ?)";
+    private static final String TEXT_DOC_UPDATE = "UPDATE text_search_docs SET mtime = ? WHERE rowid = ?";
+    private static final String TEXT_DOC_DELETE = "DELETE FROM text_search_docs WHERE rowid = ?";
+    private static final String TEXT_FTS_INSERT = "INSERT INTO text_search (rowid, name, body) VALUES (?, ?, ?)";
+    private static final String TEXT_FTS_DELETE = "DELETE FROM text_search WHERE rowid = ?";
+    private static final String TEXT_INDEX_STATE = "SELECT uuid, mtime FROM text_search_docs WHERE entry_type = ?";
+    private static final String TEXT_SEARCH = """
+            SELECT d.uuid, snippet(text_search, -1, '[', ']', '...', 16) AS snippet, text_search.rank AS rank
+            FROM text_search JOIN text_search_docs d ON d.rowid = text_search.rowid
+            WHERE text_search MATCH ? AND d.entry_type = ?
+            ORDER BY text_search.rank
+            LIMIT ?
+            """;
+
+    public record TextSearchHit(UUID uuid, String snippet, double rank) { }
+
+    // A reminder as stored in the notifications outbox, unique on (uuid, dueAt)
+    public record NotificationRow(UUID uuid, EntryType type, LocalDateTime dueAt, NotificationLevel level) { }
+
+    // Position after the last row of a page, createdAt is epoch seconds as stored
+    public record PageKey(long createdAt, String uuid) { }
+
     private final String url;
-    private final Connection connection;
+    private final ConnectionPool pool;
+    private final WriteQueue writeQueue;
 
     public DBConnection() throws IOException {
-        boolean exists = Files.exists(Path.of(Settings.DATABASE_PATH));
-        if (!exists) {
+        if (!Files.exists(Path.of(Settings.DATABASE_PATH))) {
             Files.createDirectories(Path.of(Settings.DATABASE_PATH).getParent());
-        };
+        }
         url = "jdbc:sqlite:" + Settings.DATABASE_PATH;
-        try {
-            Connection conn = DriverManager.getConnection(url);
-            if (conn == null) {
-                throw new IllegalStateException("Failed to connect/create database at: " + url);
-            }
-            connection = conn;
+        if (Settings.DB_WAL_MODE) {
+            pool = new ConnectionPool(url, walConfig(), walPragmas(),
+                    Settings.DB_POOL_SIZE, Settings.DB_STATEMENT_CACHE_SIZE, Settings.DB_BUSY_TIMEOUT_MS);
+            var writePool = new ConnectionPool(url, walConfig(), walPragmas(),
+                    1, Settings.DB_STATEMENT_CACHE_SIZE, Settings.DB_BUSY_TIMEOUT_MS);
+            writeQueue = new WriteQueue(writePool, Settings.DB_WRITE_BATCH_SIZE);
+        } else {
+            pool = new ConnectionPool(url, Settings.DB_POOL_SIZE, Settings.DB_STATEMENT_CACHE_SIZE, Settings.DB_BUSY_TIMEOUT_MS);
+            writeQueue = null;
+        }
+        try (PooledConnection conn = pool.acquire()) {
+            // Fail fast on a bad path rather than on the first query
         } catch (SQLException e) {
             throw new IllegalStateException("Exception encountered connecting to database. Error: " + e);
         }
-        if (!exists) {
-            initDBTables();
+        migrate();
+        verifyQueryPlans().forEach(warning -> System.err.println("Query plan warning: " + warning));
+    }
+
+    private static SQLiteConfig walConfig() {
+        SQLiteConfig config = new SQLiteConfig();
+        config.setJournalMode(SQLiteConfig.JournalMode.WAL);
+        // NORMAL is durable against application crashes under WAL, only fsyncs on checkpoint
+        config.setSynchronous(SQLiteConfig.SynchronousMode.NORMAL);
+        config.setTempStore(SQLiteConfig.TempStore.MEMORY);
+        config.setCacheSize(-Math.max(1, Settings.DB_CACHE_SIZE_KB)); // Negative is KiB instead of pages
+        return config;
+    }
+
+    private static List<String> walPragmas() {
+        return List.of("PRAGMA mmap_size = " + Math.max(0L, Settings.DB_MMAP_SIZE_MB) * 1024 * 1024);
+    }
+
+    public int getSchemaVersion() throws SQLException {
+        try (PooledConnection conn = pool.acquire()) {
+            return readUserVersion(conn.raw());
+        }
+    }
+
+    private static int readUserVersion(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery("PRAGMA user_version")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    public void migrate() {
+        try (PooledConnection conn = pool.acquire(); Statement stmt = conn.createStatement()) {
+            int version = readUserVersion(conn.raw());
+            for (Migration migration : TableInit.MIGRATIONS) {
+                if (migration.version() <= version) {
+                    continue;
+                }
+                // IMMEDIATE takes the write lock up front, readers on WAL databases are not blocked while it runs
+                stmt.execute("BEGIN IMMEDIATE");
+                try {
+                    if (readUserVersion(conn.raw()) >= migration.version()) { // Applied by another process
+                        stmt.execute("COMMIT");
+                        continue;
+                    }
+                    migration.step().apply(conn.raw());
+                    stmt.execute("PRAGMA user_version = " + migration.version());
+                    stmt.execute("COMMIT");
+                } catch (SQLException e) {
+                    stmt.execute("ROLLBACK");
+                    throw new SQLException(String.format("Migration %d (%s) failed: %s",
+                            migration.version(), migration.description(), e.getMessage()), e);
+                }
+                version = migration.version();
+                System.out.printf("Applied database migration %d: %s%n", migration.version(), migration.description());
+            }
+            // Keeps planner stats fresh so the narrower partial indexes win once tables have data
+            stmt.execute("PRAGMA optimize");
+        } catch (SQLException e) {
+            System.err.println(Arrays.toString(e.getStackTrace()));
+            throw new IllegalStateException("Exception encountered migrating database: " + e.getMessage());
+        }
+    }
+
+    public List<String> verifyQueryPlans() {
+        List<String> warnings = new ArrayList<>();
+        try (PooledConnection conn = pool.acquire()) {
+            for (String query : HOT_QUERIES) {
+                try (Statement stmt = conn.createStatement();
+                     ResultSet rs = stmt.executeQuery("EXPLAIN QUERY PLAN " + query)) {
+                    while (rs.next()) {
+                        String detail = rs.getString("detail");
+                        boolean tableScan = detail.startsWith("SCAN")
+                                && !detail.contains("USING") && !detail.contains("VIRTUAL TABLE");
+                        if (tableScan || detail.contains("TEMP B-TREE FOR ORDER BY")) {
+                            warnings.add(String.format("%s -> %s", query, detail));
+                        }
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            warnings.add("Failed to explain query plans: " + e.getMessage());
         }
+        return warnings;
     }
 
-    public void initDBTables() {
-        for (String table : TableInit.INIT_STATEMENTS) {
-            try (Statement stmt = connection.createStatement()) {
-                stmt.execute(table);
-            } catch (SQLException e) {
-                System.err.println(Arrays.toString(e.getStackTrace()));
-                throw new IllegalStateException("Exception encountered creating database tables: " + e);
+    private void write(WriteQueue.SQLWrite op) throws SQLException {
+        if (writeQueue != null) {
+            writeQueue.write(op);
+        } else {
+            try (PooledConnection conn = pool.acquire()) {
+                op.apply(conn);
             }
         }
-        System.out.println("Initialized and created tables");
     }
 
-    public Connection getConnection() {
-        return connection;
+    // Inside the write queue the op is already part of the writer's transaction, otherwise open one here
+    private void writeTransaction(WriteQueue.SQLWrite op) throws SQLException {
+        write(conn -> {
+            if (!conn.raw().getAutoCommit()) {
+                op.apply(conn);
+                return;
+            }
+            conn.raw().setAutoCommit(false);
+            try {
+                op.apply(conn);
+                conn.raw().commit();
+            } catch (SQLException | RuntimeException e) {
+                conn.raw().rollback();
+                throw e;
+            } finally {
+                conn.raw().setAutoCommit(true);
+            }
+        });
+    }
+
+    public ConnectionPool getPool() {
+        return pool;
+    }
+
+    public void close() {
+        if (writeQueue != null) {
+            writeQueue.close();
+        }
+        pool.close();
     }
 
     ////////////
@@ -100,7 +323,9 @@ public class DBConnection {
                         result.getLong("end_time"),
                         result.getString("reminders"),
                         result.getString("linked_uuid"),
-                        result.getBoolean("completed")
+                        result.getBoolean("completed"),
+                        result.getString("recurrence"),
+                        result.getObject("series_end") == null ? null : result.getLong("series_end")
                 );
                 events.add(event);
             }
@@ -122,7 +347,9 @@ public class DBConnection {
                         DateTimeUtil.unixToLocal(result.getLong("end_time")),
                         JSON.jsonArrayToReminderList(result.getString("reminders")),
                         UUID.fromString(result.getString("linked_uuid")),
-                        result.getBoolean("completed")
+                        result.getBoolean("completed"),
+                        JSON.jsonToRecurrence(result.getString("recurrence")),
+                        null
                 );
                 events.add(event);
             }
@@ -183,7 +410,8 @@ public class DBConnection {
         String query = String.format("SELECT meta_path FROM %s WHERE uuid = ?", tableName);
 
         String metaPath = null;
-        try (PreparedStatement ps = connection.prepareStatement(query)) {
+        try (PooledConnection conn = pool.acquire()) {
+            PreparedStatement ps = conn.prepare(query);
             ps.setString(1, uuid.toString());
 
             try (ResultSet result = ps.executeQuery()) {
@@ -199,12 +427,145 @@ public class DBConnection {
         return JSON.loadObjectFromFile(metaPath, clazz);
     }
 
+    // Payload rows are parsed after the lease is released, project payloads load their tasks through the pool
+    private record PayloadRow(String uuid, String payload, String metaPath) { }
+
+    private List<PayloadRow> selectPayloadRows(String query, String param) throws IOException {
+        List<PayloadRow> rows = new ArrayList<>();
+        try (PooledConnection conn = pool.acquire()) {
+            PreparedStatement ps = conn.prepare(query);
+            if (param != null) {
+                ps.setString(1, param);
+            }
+            try (ResultSet result = ps.executeQuery()) {
+                while (result.next()) {
+                    rows.add(new PayloadRow(
+                            result.getString("uuid"),
+                            Settings.DB_STORE_PAYLOADS ? result.getString("payload") : null,
+                            result.getString("meta_path"))
+                    );
+                }
+            }
+            return rows;
+        } catch (SQLException e) {
+            throw new IOException("SQL error returned Error: " + e.getMessage());
+        }
+    }
+
+    private static <T> List<T> parsePayloads(List<PayloadRow> rows, Class<T> clazz) {
+        List<T> entries = new ArrayList<>(rows.size());
+        for (var row : rows) {
+            try {
+                entries.add(row.payload != null
+                            ? JSON.read(row.payload, clazz)
+                            : JSON.loadObjectFromFile(row.metaPath, clazz));
+            } catch (IOException e) {
+                System.err.println("Failed to load: " + row.uuid + " | " + e.getMessage());
+            }
+        }
+        return entries;
+    }
+
+    private <T> T payloadSelect(UUID uuid, String table, Class<T> clazz) throws IOException {
+        String query = String.format("SELECT uuid, payload, meta_path FROM %s WHERE uuid = ?", table);
+        List<PayloadRow> rows = selectPayloadRows(query, uuid.toString());
+        if (rows.isEmpty()) {
+            throw new IOException("No entry found for UUID: " + uuid);
+        }
+        PayloadRow row = rows.getFirst();
+        return row.payload != null ? JSON.read(row.payload, clazz) : JSON.loadObjectFromFile(row.metaPath, clazz);
+    }
+
     public TaskEntry getTaskByUUID(UUID uuid) throws IOException {
-        return genericMetaSelect(uuid, "tasks", TaskEntry.class);
+        return payloadSelect(uuid, "tasks", TaskEntry.class);
     }
 
     public ProjectEntry getProjectByUUID(UUID uuid) throws IOException {
-        return genericMetaSelect(uuid, "projects", ProjectEntry.class);
+        return payloadSelect(uuid, "projects", ProjectEntry.class);
+    }
+
+    // Returned in the order of the passed uuids, missing tasks are skipped
+    public List<TaskEntry> getTasksByUUIDs(List<UUID> uuids) throws IOException {
+        if (uuids.isEmpty()) {
+            return List.of();
+        }
+        List<TaskEntry> tasks = parsePayloads(
+                selectPayloadRows(TASKS_BY_UUIDS, JSON.writeString(uuids.stream().map(UUID::toString).toList())),
+                TaskEntry.class
+        );
+        Map<UUID, TaskEntry> byUUID = new HashMap<>(tasks.size());
+        tasks.forEach(task -> byUUID.put(task.uuid(), task));
+        return uuids.stream().map(byUUID::get).filter(Objects::nonNull).toList();
+    }
+
+    public List<TaskEntry> getActiveTaskEntries() throws IOException {
+        return parsePayloads(selectPayloadRows(ACTIVE_TASKS, null), TaskEntry.class);
+    }
+
+    public List<TaskEntry> getAllTaskEntries() throws IOException {
+        return parsePayloads(selectPayloadRows(ALL_TASKS, null), TaskEntry.class);
+    }
+
+    public List<ProjectEntry> getActiveProjectEntries() throws IOException {
+        return parsePayloads(selectPayloadRows(ACTIVE_PROJECTS, null), ProjectEntry.class);
+    }
+
+    public List<ProjectEntry> getAllProjectEntries() throws IOException {
+        return parsePayloads(selectPayloadRows(ALL_PROJECTS, null), ProjectEntry.class);
+    }
+
+    public List<Pair<EntryType, UUID>> getEntriesByTag(String tag, EntryType... types) throws IOException {
+        return getEntriesByTags(List.of(tag), false, types);
+    }
+
+    // matchAll requires every tag to be present, otherwise any of them. No types searches all entry types
+    public List<Pair<EntryType, UUID>> getEntriesByTags(List<String> tags, boolean matchAll, EntryType... types)
+            throws IOException {
+        List<String> distinctTags = tags.stream().distinct().toList();
+        if (distinctTags.isEmpty()) {
+            return List.of();
+        }
+        List<EntryType> typeList = types.length == 0 ? List.of(EntryType.values()) : List.of(types);
+
+        try (PooledConnection conn = pool.acquire()) {
+            PreparedStatement ps = conn.prepare(matchAll ? TAGS_MATCH_ALL : TAGS_MATCH_ANY);
+            ps.setString(1, JSON.writeString(distinctTags));
+            ps.setString(2, JSON.writeString(typeList.stream().map(EntryType::name).toList()));
+            if (matchAll) {
+                ps.setInt(3, distinctTags.size());
+            }
+            List<Pair<EntryType, UUID>> entries = new ArrayList<>();
+            try (ResultSet result = ps.executeQuery()) {
+                while (result.next()) {
+                    entries.add(Pair.of(
+                            EntryType.valueOf(result.getString("entry_type")),
+                            UUID.fromString(result.getString("entry_uuid")))
+                    );
+                }
+            }
+            return entries;
+        } catch (SQLException e) {
+            throw new IOException("Error querying tags: " + e.getMessage());
+        }
+    }
+
+    public Set<UUID> getUUIDsByTags(List<String> tags, boolean matchAll, EntryType... types) throws IOException {
+        return getEntriesByTags(tags, matchAll, types).stream().map(Pair::second).collect(Collectors.toSet());
+    }
+
+    public List<String> getAllTags() throws IOException {
+        try (PooledConnection conn = pool.acquire()) {
+            PreparedStatement ps = conn.prepare("SELECT DISTINCT tag FROM entry_tags ORDER BY tag");
+            List<String> tags = new ArrayList<>();
+            try (ResultSet result = ps.executeQuery()) {
+                while (result.next()) {
+                    tags.add(result.getString("tag"));
+                }
+            }
+            return tags;
+        } catch (SQLException e) {
+            throw new IOException("Error querying tags: " + e.getMessage());
+        }
     }
 
     public TextEntry getNoteEntryByUUID(UUID uuid) throws IOException {
@@ -219,7 +580,8 @@ public class DBConnection {
         String query = "SELECT * FROM events WHERE uuid = ?";
 
         EventEntry event = null;
-        try (PreparedStatement ps = connection.prepareStatement(query)) {
+        try (PooledConnection conn = pool.acquire()) {
+            PreparedStatement ps = conn.prepare(query);
             ps.setString(1, uuid.toString());
 
             List<EventEntry> events = execMapEvents(ps);
@@ -234,7 +596,8 @@ public class DBConnection {
         String query = "SELECT * FROM events WHERE uuid = ?";
 
         EventEntry.Stub event = null;
-        try (PreparedStatement ps = connection.prepareStatement(query)) {
+        try (PooledConnection conn = pool.acquire()) {
+            PreparedStatement ps = conn.prepare(query);
             ps.setString(1, uuid.toString());
 
             List<EventEntry.Stub> events = execMapEventStubs(ps);
@@ -248,7 +611,8 @@ public class DBConnection {
         String query = "SELECT * FROM tasks WHERE uuid = ?";
 
         TaskEntry.Stub stub = null;
-        try (PreparedStatement ps = connection.prepareStatement(query)) {
+        try (PooledConnection conn = pool.acquire()) {
+            PreparedStatement ps = conn.prepare(query);
             ps.setString(1, uuid.toString());
 
             List<TaskEntry.Stub> tasks = execMapTaskStubs(ps);
@@ -262,7 +626,8 @@ public class DBConnection {
         String query = "SELECT * FROM projects WHERE uuid = ?";
 
         ProjectEntry.Stub stub = null;
-        try (PreparedStatement ps = connection.prepareStatement(query)) {
+        try (PooledConnection conn = pool.acquire()) {
+            PreparedStatement ps = conn.prepare(query);
             ps.setString(1, uuid.toString());
 
             List<ProjectEntry.Stub> projects = execMapProjectStubs(ps);
@@ -277,7 +642,8 @@ public class DBConnection {
         String query = String.format("SELECT * FROM %s WHERE uuid = ?", table);
 
         TextEntry.Stub stub = null;
-        try (PreparedStatement ps = connection.prepareStatement(query)) {
+        try (PooledConnection conn = pool.acquire()) {
+            PreparedStatement ps = conn.prepare(query);
             ps.setString(1, uuid.toString());
 
             List<TextEntry.Stub> entries = execMapTextStubs(ps);
@@ -295,12 +661,102 @@ public class DBConnection {
         return textEntrySelect(uuid, "journals");
     }
 
+    private static String textTable(EntryType type) {
+        return switch (type) {
+            case NOTE -> "notes";
+            case JOURNAL -> "journals";
+            default -> throw new IllegalArgumentException("Not a text entry type: " + type);
+        };
+    }
+
+    // after == null returns the first (newest) page
+    public List<TextEntry.Stub> getTextPage(EntryType type, PageKey after, int limit) throws IOException {
+        String query = String.format(after == null ? TEXT_PAGE_FIRST : TEXT_PAGE_AFTER, textTable(type));
+
+        try (PooledConnection conn = pool.acquire()) {
+            PreparedStatement ps = conn.prepare(query);
+            int i = 1;
+            if (after != null) {
+                ps.setLong(i++, after.createdAt());
+                ps.setString(i++, after.uuid());
+            }
+            ps.setInt(i, limit);
+            return execMapTextStubs(ps);
+        } catch (SQLException e) {
+            throw new IOException("Error querying " + textTable(type) + ": " + e.getMessage());
+        }
+    }
+
+    public int countTextEntries(EntryType type) throws IOException {
+        try (PooledConnection conn = pool.acquire()) {
+            PreparedStatement ps = conn.prepare(String.format(TEXT_COUNT, textTable(type)));
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : 0;
+            }
+        } catch (SQLException e) {
+            throw new IOException("Error counting " + textTable(type) + ": " + e.getMessage());
+        }
+    }
+
+    // Case-insensitive (ASCII) name prefix match, newest first
+    public List<TextEntry.Stub> getTextByNamePrefix(EntryType type, String prefix, int limit) throws IOException {
+        String pattern = prefix.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%";
+
+        try (PooledConnection conn = pool.acquire()) {
+            PreparedStatement ps = conn.prepare(String.format(TEXT_BY_NAME, textTable(type)));
+            ps.setString(1, pattern);
+            ps.setInt(2, limit);
+            return execMapTextStubs(ps);
+        } catch (SQLException e) {
+            throw new IOException("Error querying " + textTable(type) + ": " + e.getMessage());
+        }
+    }
+
+    // Active entries only, in no particular order
+    public List<TextEntry.Stub> getTextByUUIDs(EntryType type, Collection<UUID> uuids) throws IOException {
+        if (uuids.isEmpty()) {
+            return List.of();
+        }
+        try (PooledConnection conn = pool.acquire()) {
+            PreparedStatement ps = conn.prepare(String.format(TEXT_BY_UUIDS, textTable(type)));
+            ps.setString(1, JSON.writeString(uuids.stream().map(UUID::toString).toList()));
+            return execMapTextStubs(ps);
+        } catch (SQLException e) {
+            throw new IOException("Error querying " + textTable(type) + ": " + e.getMessage());
+        }
+    }
+
+    public List<EventEntry> getEventsStartingBetween(long from, long to) throws IOException {
+        try (PooledConnection conn = pool.acquire()) {
+            PreparedStatement ps = conn.prepare(EVENTS_STARTING_BETWEEN);
+            ps.setLong(1, from);
+            ps.setLong(2, to);
+            return execMapEvents(ps);
+        } catch (SQLException e) {
+            throw new IOException("Error querying events:" + e.getMessage());
+        }
+    }
+
+    public List<EventEntry> getSeriesStartingBefore(long threshold) throws IOException {
+        try (PooledConnection conn = pool.acquire()) {
+            PreparedStatement ps = conn.prepare(SERIES_STARTING_BEFORE);
+            ps.setLong(1, threshold);
+            return execMapEvents(ps);
+        } catch (SQLException e) {
+            throw new IOException("Error querying events:" + e.getMessage());
+        }
+    }
+
     public List<EventEntry> getEvents(long threshold) throws IOException {
         String query = threshold < 0
                 ? "SELECT * FROM events"
-                : String.format("SELECT * FROM events WHERE start_time < %d", threshold);
+                : EVENTS_BEFORE;
 
-        try (PreparedStatement ps = connection.prepareStatement(query)) {
+        try (PooledConnection conn = pool.acquire()) {
+            PreparedStatement ps = conn.prepare(query);
+            if (threshold >= 0) {
+                ps.setLong(1, threshold);
+            }
             return execMapEvents(ps);
         } catch (SQLException e) {
             throw new IOException("Error querying events:" + e.getMessage());
@@ -308,9 +764,10 @@ public class DBConnection {
     }
 
     public List<TaskEntry.Stub> getActiveTasks() throws IOException {
-        String query = "SELECT * FROM tasks WHERE started = true and archived = false";
+        String query = ACTIVE_TASKS;
 
-        try (PreparedStatement ps = connection.prepareStatement(query)) {
+        try (PooledConnection conn = pool.acquire()) {
+            PreparedStatement ps = conn.prepare(query);
             return execMapTaskStubs(ps);
         } catch (SQLException e) {
             throw new IOException("Error querying tasks:" + e.getMessage());
@@ -318,9 +775,10 @@ public class DBConnection {
     }
 
     public List<TaskEntry.Stub> getAllTasks() throws IOException {
-        String query = "SELECT * FROM tasks where archived = false";
+        String query = ALL_TASKS;
 
-        try (PreparedStatement ps = connection.prepareStatement(query)) {
+        try (PooledConnection conn = pool.acquire()) {
+            PreparedStatement ps = conn.prepare(query);
             return execMapTaskStubs(ps);
         } catch (SQLException e) {
             throw new IOException("Error querying tasks:" + e.getMessage());
@@ -328,9 +786,10 @@ public class DBConnection {
     }
 
     public List<ProjectEntry.Stub> getActiveProjects() throws IOException {
-        String query = "SELECT * FROM projects WHERE started = true and archived = false";
+        String query = ACTIVE_PROJECTS;
 
-        try (PreparedStatement ps = connection.prepareStatement(query)) {
+        try (PooledConnection conn = pool.acquire()) {
+            PreparedStatement ps = conn.prepare(query);
             return execMapProjectStubs(ps);
         } catch (SQLException e) {
             throw new IOException("Error querying projects:" + e.getMessage());
@@ -338,9 +797,10 @@ public class DBConnection {
     }
 
     public List<ProjectEntry.Stub> getAllProjects() throws IOException {
-        String query = "SELECT * FROM projects where archived = false";
+        String query = ALL_PROJECTS;
 
-        try (PreparedStatement ps = connection.prepareStatement(query)) {
+        try (PooledConnection conn = pool.acquire()) {
+            PreparedStatement ps = conn.prepare(query);
             return execMapProjectStubs(ps);
         } catch (SQLException e) {
             throw new IOException("Error querying projects:" + e.getMessage());
@@ -348,9 +808,10 @@ public class DBConnection {
     }
 
     public List<TextEntry.Stub> getAllNotes() throws IOException {
-        String query = "SELECT * FROM notes where archived = false";
+        String query = ALL_NOTES;
 
-        try (PreparedStatement ps = connection.prepareStatement(query)) {
+        try (PooledConnection conn = pool.acquire()) {
+            PreparedStatement ps = conn.prepare(query);
             return execMapTextStubs(ps);
         } catch (SQLException e) {
             throw new IOException("Error querying notes:" + e.getMessage());
@@ -358,9 +819,10 @@ public class DBConnection {
     }
 
     public List<TextEntry.Stub> getAllJournals() throws IOException {
-        String query = "SELECT * FROM journals where archived = false";
+        String query = ALL_JOURNALS;
 
-        try (PreparedStatement ps = connection.prepareStatement(query)) {
+        try (PooledConnection conn = pool.acquire()) {
+            PreparedStatement ps = conn.prepare(query);
             return execMapTextStubs(ps);
         } catch (SQLException e) {
             throw new IOException("Error querying journals:" + e.getMessage());
@@ -371,32 +833,199 @@ public class DBConnection {
     // INSERT //
     ///////////
 
+    private static final String EVENT_UPSERT = """
+            INSERT INTO events (uuid, name, tags, start_time, end_time, reminders, linked_uuid, completed,
+                recurrence, series_end)
+               VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+            ON CONFLICT(uuid) DO UPDATE SET
+               name = excluded.name,
+               tags = excluded.tags,
+               start_time = excluded.start_time,
+               end_time = excluded.end_time,
+               reminders = excluded.reminders,
+               linked_uuid = excluded.linked_uuid,
+               completed = excluded.completed,
+               recurrence = excluded.recurrence,
+               series_end = excluded.series_end;
+            """;
+
+    private static final String TASK_UPSERT = """
+            INSERT INTO tasks(uuid, name, started, completed, tags, due_by,
+                started_at, completed_at, reminders, meta_path, payload)
+               VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+            ON CONFLICT(uuid) DO UPDATE SET
+               name = excluded.name,
+               tags = excluded.tags,
+               started = excluded.started,
+               completed = excluded.completed,
+               tags = excluded.tags,
+               due_by = excluded.due_by,
+               started_at = excluded.started_at,
+               completed_at = excluded.completed_at,
+               reminders = excluded.reminders,
+               meta_path = excluded.meta_path,
+               payload = excluded.payload;
+            """;
+
+    private static final String PROJECT_UPSERT = """
+            INSERT INTO projects (uuid, name, started, completed, tags, due_by, started_at,
+                completed_at, reminders, meta_path, project_path, open_with, payload)
+               VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+            ON CONFLICT(uuid) DO UPDATE SET
+               name = excluded.name,
+               tags = excluded.tags,
+               started = excluded.started,
+               completed = excluded.completed,
+               tags = excluded.tags,
+               due_by = excluded.due_by,
+               started_at = excluded.started_at,
+               completed_at = excluded.completed_at,
+               reminders = excluded.reminders,
+               meta_path = excluded.meta_path,
+               project_path = excluded.project_path,
+               open_with = excluded.open_with,
+               payload = excluded.payload
+            """;
+
+    private static final String TEXT_UPSERT = """
+            INSERT INTO %s (uuid, name, created_at, tags, meta_path)
+               VALUES (?, ?, ?, ?, ?)
+            ON CONFLICT(uuid) DO UPDATE SET
+               name = excluded.name,
+               created_at = excluded.created_at,
+               tags = excluded.tags,
+               meta_path = excluded.meta_path;
+            """;
+
+    // Binders
+
+    private static void bindEvent(PreparedStatement ps, EventEntry.Stub entry) throws SQLException {
+        ps.setString(1, entry.uuid());
+        ps.setString(2, entry.name());
+        ps.setString(3, entry.tags());
+        ps.setLong(4, entry.startTime());
+        ps.setLong(5, entry.endTime());
+        ps.setString(6, entry.reminders());
+        ps.setString(7, entry.linkedUUID());
+        ps.setBoolean(8, entry.completed());
+        ps.setString(9, entry.recurrence());
+        if (entry.seriesEnd() == null) {
+            ps.setNull(10, Types.INTEGER);
+        } else {
+            ps.setLong(10, entry.seriesEnd());
+        }
+    }
+
+    private static void bindTask(PreparedStatement ps, Pair<TaskEntry.Stub, String> row) throws SQLException {
+        TaskEntry.Stub entry = row.first();
+        ps.setString(1, entry.uuid());
+        ps.setString(2, entry.name());
+        ps.setBoolean(3, entry.started());
+        ps.setBoolean(4, entry.completed());
+        ps.setString(5, entry.tags());
+        ps.setLong(6, entry.dueBy());
+        ps.setLong(7, entry.startedAt());
+        ps.setLong(8, entry.completedAt());
+        ps.setString(9, entry.reminders());
+        ps.setString(10, entry.metaPath());
+        ps.setString(11, row.second());
+    }
+
+    private static void bindProject(PreparedStatement ps, Pair<ProjectEntry.Stub, String> row) throws SQLException {
+        ProjectEntry.Stub entry = row.first();
+        ps.setString(1, entry.uuid());
+        ps.setString(2, entry.name());
+        ps.setBoolean(3, entry.started());
+        ps.setBoolean(4, entry.completed());
+        ps.setString(5, entry.tags());
+        ps.setLong(6, entry.dueBy());
+        ps.setLong(7, entry.startedAt());
+        ps.setLong(8, entry.completedAt());
+        ps.setString(9, entry.reminders());
+        ps.setString(10, entry.metaPath());
+        ps.setString(11, entry.projectPath());
+        ps.setString(12, entry.openWith());
+        ps.setString(13, row.second());
+    }
+
+    private static void bindText(PreparedStatement ps, TextEntry.Stub entry) throws SQLException {
+        ps.setString(1, entry.uuid());
+        ps.setString(2, entry.name());
+        ps.setLong(3, entry.createdAt());
+        ps.setString(4, entry.tags());
+        ps.setString(5, entry.metaPath());
+    }
+
+    @FunctionalInterface
+    private interface Binder<T> {
+        void bind(PreparedStatement ps, T item) throws SQLException;
+    }
+
+    // Tag rows are replaced wholesale on every upsert, tags are passed as the stub's JSON array string
+    private static void syncTags(PooledConnection conn, String uuid, EntryType type, String tags) throws SQLException {
+        PreparedStatement delete = conn.prepare(TAGS_DELETE);
+        delete.setString(1, uuid);
+        delete.executeUpdate();
+        PreparedStatement insert = conn.prepare(TAGS_INSERT);
+        insert.setString(1, uuid);
+        insert.setString(2, type.name());
+        insert.setString(3, tags);
+        insert.executeUpdate();
+    }
+
+    // Runs the whole list in one transaction, flushing the jdbc batch every BATCH_FLUSH_SIZE rows
+    private <T> void batchUpsert(String query, List<T> stubs, Binder<T> binder, EntryType type,
+            Function<T, Pair<String, String>> uuidAndTags) throws SQLException {
+        if (stubs.isEmpty()) {
+            return;
+        }
+        writeTransaction(conn -> {
+            PreparedStatement ps = conn.prepare(query);
+            PreparedStatement deleteTags = conn.prepare(TAGS_DELETE);
+            PreparedStatement insertTags = conn.prepare(TAGS_INSERT);
+            try {
+                int pending = 0;
+                for (T stub : stubs) {
+                    binder.bind(ps, stub);
+                    ps.addBatch();
+                    Pair<String, String> tagRow = uuidAndTags.apply(stub);
+                    deleteTags.setString(1, tagRow.first());
+                    deleteTags.addBatch();
+                    insertTags.setString(1, tagRow.first());
+                    insertTags.setString(2, type.name());
+                    insertTags.setString(3, tagRow.second());
+                    insertTags.addBatch();
+                    if (++pending == BATCH_FLUSH_SIZE) {
+                        ps.executeBatch();
+                        deleteTags.executeBatch();
+                        insertTags.executeBatch();
+                        pending = 0;
+                    }
+                }
+                if (pending > 0) {
+                    ps.executeBatch();
+                    deleteTags.executeBatch();
+                    insertTags.executeBatch();
+                }
+            } finally {
+                ps.clearBatch();
+                deleteTags.clearBatch();
+                insertTags.clearBatch();
+            }
+        });
+    }
+
+    // Single
+
     public void upsertEvent(EventEntry eventEntry) throws IOException {
         EventEntry.Stub entry = eventEntry.getStub();
-        String query = """
-                INSERT INTO events (uuid, name, tags, start_time, end_time, reminders, linked_uuid, completed)
-                   VALUES (?, ?, ?, ?, ?, ?, ?, ?)
-                ON CONFLICT(uuid) DO UPDATE SET
-                   name = excluded.name,
-                   tags = excluded.tags,
-                   start_time = excluded.start_time,
-                   end_time = excluded.end_time,
-                   reminders = excluded.reminders,
-                   linked_uuid = excluded.linked_uuid,
-                   completed = excluded.completed;
-                """;
-
-        try (PreparedStatement ps = connection.prepareStatement(query)) {
-            ps.setString(1, entry.uuid());
-            ps.setString(2, entry.name());
-            ps.setString(3, entry.tags());
-            ps.setLong(4, entry.startTime());
-            ps.setLong(5, entry.endTime());
-            ps.setString(6, entry.reminders());
-            ps.setString(7, entry.linkedUUID());
-            ps.setBoolean(8, entry.completed());
-
-            ps.executeUpdate();
+        try {
+            writeTransaction(conn -> {
+                PreparedStatement ps = conn.prepare(EVENT_UPSERT);
+                bindEvent(ps, entry);
+                ps.executeUpdate();
+                syncTags(conn, entry.uuid(), EntryType.EVENT, entry.tags());
+            });
         } catch (SQLException e) {
             throw new IOException(String.format("SQL error returned for: %s Error: %s", entry.uuid(), e.getMessage()));
         }
@@ -404,36 +1033,14 @@ public class DBConnection {
 
     public void upsertTask(TaskEntry taskEntry) throws IOException {
         TaskEntry.Stub entry = taskEntry.getStub();
-        String query = """
-                INSERT INTO tasks(uuid, name, started, completed, tags, due_by,
-                    started_at, completed_at, reminders, meta_path)
-                   VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
-                ON CONFLICT(uuid) DO UPDATE SET
-                   name = excluded.name,
-                   tags = excluded.tags,
-                   started = excluded.started,
-                   completed = excluded.completed,
-                   tags = excluded.tags,
-                   due_by = excluded.due_by,
-                   started_at = excluded.started_at,
-                   completed_at = excluded.completed_at,
-                   reminders = excluded.reminders,
-                   meta_path = excluded.meta_path;
-                """;
-
-        try (PreparedStatement ps = connection.prepareStatement(query)) {
-            ps.setString(1, entry.uuid());
-            ps.setString(2, entry.name());
-            ps.setBoolean(3, entry.started());
-            ps.setBoolean(4, entry.completed());
-            ps.setString(5, entry.tags());
-            ps.setLong(6, entry.dueBy());
-            ps.setLong(7, entry.startedAt());
-            ps.setLong(8, entry.completedAt());
-            ps.setString(9, entry.reminders());
-            ps.setString(10, entry.metaPath());
-
-            ps.executeUpdate();
+        var row = Pair.of(entry, JSON.writeString(taskEntry));
+        try {
+            writeTransaction(conn -> {
+                PreparedStatement ps = conn.prepare(TASK_UPSERT);
+                bindTask(ps, row);
+                ps.executeUpdate();
+                syncTags(conn, entry.uuid(), EntryType.TASK, entry.tags());
+            });
         } catch (SQLException e) {
             System.out.println(e);
             throw new IOException(String.format("SQL error returned for: %s Error: %s", entry.uuid(), e.getMessage()));
@@ -442,40 +1049,14 @@ public class DBConnection {
 
     public void upsertProject(ProjectEntry projectEntry) throws IOException {
         ProjectEntry.Stub entry = projectEntry.getStub();
-        String query = """
-                INSERT INTO projects (uuid, name, started, completed, tags, due_by, started_at, 
-                    completed_at, reminders, meta_path, project_path, open_with)
-                   VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
-                ON CONFLICT(uuid) DO UPDATE SET
-                   name = excluded.name,
-                   tags = excluded.tags,
-                   started = excluded.started,
-                   completed = excluded.completed,
-                   tags = excluded.tags,
-                   due_by = excluded.due_by,
-                   started_at = excluded.started_at,
-                   completed_at = excluded.completed_at,
-                   reminders = excluded.reminders,
-                   meta_path = excluded.meta_path,
-                   project_path = excluded.project_path,
-                   open_with = excluded.open_with
-                """;
-
-        try (PreparedStatement ps = connection.prepareStatement(query)) {
-            ps.setString(1, entry.uuid());
-            ps.setString(2, entry.name());
-            ps.setBoolean(3, entry.started());
-            ps.setBoolean(4, entry.completed());
-            ps.setString(5, entry.tags());
-            ps.setLong(6, entry.dueBy());
-            ps.setLong(7, entry.startedAt());
-            ps.setLong(8, entry.completedAt());
-            ps.setString(9, entry.reminders());
-            ps.setString(10, entry.metaPath());
-            ps.setString(11, entry.projectPath());
-            ps.setString(12, entry.openWith());
-
-            ps.executeUpdate();
+        var row = Pair.of(entry, JSON.writeString(projectEntry));
+        try {
+            writeTransaction(conn -> {
+                PreparedStatement ps = conn.prepare(PROJECT_UPSERT);
+                bindProject(ps, row);
+                ps.executeUpdate();
+                syncTags(conn, entry.uuid(), EntryType.PROJECT, entry.tags());
+            });
         } catch (SQLException e) {
             e.printStackTrace();
             throw new IOException(String.format("SQL error returned for: %s Error: %s, Trace:",
@@ -483,46 +1064,101 @@ public class DBConnection {
         }
     }
 
-    private void upsertTextEntry(TextEntry textEntry, String table) throws IOException {
+    private void upsertTextEntry(TextEntry textEntry, String table, EntryType type) throws IOException {
         TextEntry.Stub entry = textEntry.getStub();
-        String query = String.format("""
-                INSERT INTO %s (uuid, name, created_at, tags, meta_path)
-                   VALUES (?, ?, ?, ?, ?)
-                ON CONFLICT(uuid) DO UPDATE SET
-                   name = excluded.name,
-                   created_at = excluded.created_at,
-                   tags = excluded.tags,
-                   meta_path = excluded.meta_path;
-                """, table);
-
-        try (PreparedStatement ps = connection.prepareStatement(query)) {
-            ps.setString(1, entry.uuid());
-            ps.setString(2, entry.name());
-            ps.setLong(3, entry.createdAt());
-            ps.setString(4, entry.tags());
-            ps.setString(5, entry.metaPath());
-
-            ps.executeUpdate();
+        String query = String.format(TEXT_UPSERT, table);
+
+        try {
+            writeTransaction(conn -> {
+                PreparedStatement ps = conn.prepare(query);
+                bindText(ps, entry);
+                ps.executeUpdate();
+                syncTags(conn, entry.uuid(), type, entry.tags());
+            });
         } catch (SQLException e) {
             throw new IOException(String.format("SQL error returned for: %s Error: %s", entry.uuid(), e.getMessage()));
         }
     }
 
     public void upsertNote(TextEntry entry) throws IOException {
-        upsertTextEntry(entry, "notes");
+        upsertTextEntry(entry, "notes", EntryType.NOTE);
     }
 
     public void upsertJournal(TextEntry entry) throws IOException {
-        upsertTextEntry(entry, "journals");
+        upsertTextEntry(entry, "journals", EntryType.JOURNAL);
+    }
+
+    // Batch
+
+    public void upsertEvents(List<EventEntry> events) throws IOException {
+        List<EventEntry.Stub> stubs = new ArrayList<>(events.size());
+        for (var event : events) {
+            stubs.add(event.getStub());
+        }
+        try {
+            batchUpsert(EVENT_UPSERT, stubs, DBConnection::bindEvent, EntryType.EVENT, s -> Pair.of(s.uuid(), s.tags()));
+        } catch (SQLException e) {
+            throw new IOException(String.format("SQL error returned for batch of %d events Error: %s", stubs.size(), e.getMessage()));
+        }
+    }
+
+    public void upsertTasks(List<TaskEntry> tasks) throws IOException {
+        List<Pair<TaskEntry.Stub, String>> stubs = new ArrayList<>(tasks.size());
+        for (var task : tasks) {
+            stubs.add(Pair.of(task.getStub(), JSON.writeString(task)));
+        }
+        try {
+            batchUpsert(TASK_UPSERT, stubs, DBConnection::bindTask,
+                    EntryType.TASK, r -> Pair.of(r.first().uuid(), r.first().tags()));
+        } catch (SQLException e) {
+            throw new IOException(String.format("SQL error returned for batch of %d tasks Error: %s", stubs.size(), e.getMessage()));
+        }
+    }
+
+    public void upsertProjects(List<ProjectEntry> projects) throws IOException {
+        List<Pair<ProjectEntry.Stub, String>> stubs = new ArrayList<>(projects.size());
+        for (var project : projects) {
+            stubs.add(Pair.of(project.getStub(), JSON.writeString(project)));
+        }
+        try {
+            batchUpsert(PROJECT_UPSERT, stubs, DBConnection::bindProject,
+                    EntryType.PROJECT, r -> Pair.of(r.first().uuid(), r.first().tags()));
+        } catch (SQLException e) {
+            throw new IOException(String.format("SQL error returned for batch of %d projects Error: %s", stubs.size(), e.getMessage()));
+        }
+    }
+
+    private void upsertTextEntries(List<TextEntry> entries, String table, EntryType type) throws IOException {
+        List<TextEntry.Stub> stubs = new ArrayList<>(entries.size());
+        for (var entry : entries) {
+            stubs.add(entry.getStub());
+        }
+        try {
+            batchUpsert(String.format(TEXT_UPSERT, table), stubs, DBConnection::bindText,
+                    type, s -> Pair.of(s.uuid(), s.tags()));
+        } catch (SQLException e) {
+            throw new IOException(String.format("SQL error returned for batch of %d %s Error: %s", stubs.size(), table, e.getMessage()));
+        }
+    }
+
+    public void upsertNotes(List<TextEntry> entries) throws IOException {
+        upsertTextEntries(entries, "notes", EntryType.NOTE);
+    }
+
+    public void upsertJournals(List<TextEntry> entries) throws IOException {
+        upsertTextEntries(entries, "journals", EntryType.JOURNAL);
     }
 
     private void setArchived(String uuid, String table, boolean isArchived) throws IOException {
         String query = String.format("UPDATE %s SET archived = ? WHERE uuid = ?", table);
 
-        try (PreparedStatement ps = connection.prepareStatement(query)) {
-            ps.setBoolean(1, isArchived);
-            ps.setString(2, uuid);
-            ps.executeUpdate();
+        try {
+            write(conn -> {
+                PreparedStatement ps = conn.prepare(query);
+                ps.setBoolean(1, isArchived);
+                ps.setString(2, uuid);
+                ps.executeUpdate();
+            });
         } catch (SQLException e) {
             throw new IOException(String.format("SQL error returned for: %s Error: %s", uuid, e.getMessage()));
         }
@@ -548,16 +1184,124 @@ public class DBConnection {
         setArchived(uuid.toString(), "journals", isArchived);
     }
 
+    ////////////////
+    // TEXT INDEX //
+    ////////////////
+
+    public Map<UUID, Long> getTextIndexState(EntryType type) throws IOException {
+        try (PooledConnection conn = pool.acquire()) {
+            PreparedStatement ps = conn.prepare(TEXT_INDEX_STATE);
+            ps.setString(1, type.name());
+            Map<UUID, Long> state = new HashMap<>();
+            try (ResultSet result = ps.executeQuery()) {
+                while (result.next()) {
+                    state.put(UUID.fromString(result.getString("uuid")), result.getLong("mtime"));
+                }
+            }
+            return state;
+        } catch (SQLException e) {
+            throw new IOException("Error querying text index state: " + e.getMessage());
+        }
+    }
+
+    // Replaces the indexed text of each doc and drops the removed uuids, all in one transaction
+    public void updateTextIndex(EntryType type, List<IndexDoc> docs, Collection<UUID> removed) throws IOException {
+        if (docs.isEmpty() && removed.isEmpty()) {
+            return;
+        }
+        try {
+            writeTransaction(conn -> {
+                for (UUID uuid : removed) {
+                    removeTextDoc(conn, uuid.toString());
+                }
+                for (var doc : docs) {
+                    long rowid = findTextDoc(conn, doc.uuid().toString());
+                    if (rowid < 0) {
+                        PreparedStatement insert = conn.prepare(TEXT_DOC_INSERT);
+                        insert.setString(1, doc.uuid().toString());
+                        insert.setString(2, type.name());
+                        insert.setLong(3, doc.mtime());
+                        insert.executeUpdate();
+                        rowid = findTextDoc(conn, doc.uuid().toString());
+                    } else {
+                        PreparedStatement update = conn.prepare(TEXT_DOC_UPDATE);
+                        update.setLong(1, doc.mtime());
+                        update.setLong(2, rowid);
+                        update.executeUpdate();
+                        PreparedStatement delete = conn.prepare(TEXT_FTS_DELETE);
+                        delete.setLong(1, rowid);
+                        delete.executeUpdate();
+                    }
+                    PreparedStatement fts = conn.prepare(TEXT_FTS_INSERT);
+                    fts.setLong(1, rowid);
+                    fts.setString(2, doc.name());
+                    fts.setString(3, doc.body());
+                    fts.executeUpdate();
+                }
+            });
+        } catch (SQLException e) {
+            throw new IOException("SQL error updating text index Error: " + e.getMessage());
+        }
+    }
+
+    private static long findTextDoc(PooledConnection conn, String uuid) throws SQLException {
+        PreparedStatement ps = conn.prepare(TEXT_DOC_ROWID);
+        ps.setString(1, uuid);
+        try (ResultSet result = ps.executeQuery()) {
+            return result.next() ? result.getLong(1) : -1;
+        }
+    }
+
+    private static void removeTextDoc(PooledConnection conn, String uuid) throws SQLException {
+        long rowid = findTextDoc(conn, uuid);
+        if (rowid < 0) {
+            return;
+        }
+        PreparedStatement fts = conn.prepare(TEXT_FTS_DELETE);
+        fts.setLong(1, rowid);
+        fts.executeUpdate();
+        PreparedStatement doc = conn.prepare(TEXT_DOC_DELETE);
+        doc.setLong(1, rowid);
+        doc.executeUpdate();
+    }
+
+    // ftsQuery is passed to MATCH as is, callers are responsible for quoting user input
+    public List<TextSearchHit> searchText(EntryType type, String ftsQuery, int limit) throws IOException {
+        try (PooledConnection conn = pool.acquire()) {
+            PreparedStatement ps = conn.prepare(TEXT_SEARCH);
+            ps.setString(1, ftsQuery);
+            ps.setString(2, type.name());
+            ps.setInt(3, limit);
+            List<TextSearchHit> hits = new ArrayList<>();
+            try (ResultSet result = ps.executeQuery()) {
+                while (result.next()) {
+                    hits.add(new TextSearchHit(
+                            UUID.fromString(result.getString("uuid")),
+                            result.getString("snippet"),
+                            result.getDouble("rank"))
+                    );
+                }
+            }
+            return hits;
+        } catch (SQLException e) {
+            throw new IOException("Error searching text index: " + e.getMessage());
+        }
+    }
+
     ////////////
     // DELETE //
     ////////////
 
     public void deletePastEventEntries(long threshold) throws IOException {
-        String query = "DELETE FROM events WHERE end_time < ?";
+        String query = DELETE_PAST_EVENTS;
 
-        try (PreparedStatement ps = connection.prepareStatement(query)) {
-            ps.setLong(1, threshold);
-            ps.executeUpdate();
+        try {
+            writeTransaction(conn -> {
+                PreparedStatement ps = conn.prepare(query);
+                ps.setLong(1, threshold);
+                ps.executeUpdate();
+                conn.prepare(TAGS_DELETE_ORPHANED_EVENTS).executeUpdate();
+            });
         } catch (SQLException e) {
             throw new IOException(
                     String.format("SQL error returned for deleting events of: %d Error: %s", threshold, e.getMessage())
@@ -588,9 +1332,18 @@ public class DBConnection {
     private void deleteByUUID(String table, UUID uuid) throws IOException {
         String query = String.format("DELETE FROM %s WHERE uuid = ?", table);
 
-        try (PreparedStatement ps = connection.prepareStatement(query)) {
-            ps.setString(1, uuid.toString());
-            ps.executeUpdate();
+        try {
+            writeTransaction(conn -> {
+                PreparedStatement ps = conn.prepare(query);
+                ps.setString(1, uuid.toString());
+                ps.executeUpdate();
+                PreparedStatement tags = conn.prepare(TAGS_DELETE);
+                tags.setString(1, uuid.toString());
+                tags.executeUpdate();
+                if (table.equals("notes") || table.equals("journals")) {
+                    removeTextDoc(conn, uuid.toString());
+                }
+            });
         } catch (SQLException e) {
             System.err.println(e);
             throw new IOException(
@@ -599,4 +1352,150 @@ public class DBConnection {
         }
     }
 
+    ///////////////////
+    // NOTIFICATIONS //
+    ///////////////////
+
+    @FunctionalInterface
+    public interface NotificationWrites {
+        void apply() throws IOException;
+    }
+
+    // Runs several of the notification writes below as one transaction, they join it rather than opening their own
+    public void notificationTransaction(NotificationWrites writes) throws IOException {
+        try {
+            writeTransaction(conn -> {
+                try {
+                    writes.apply();
+                } catch (IOException e) {
+                    throw new SQLException(e.getMessage(), e);
+                }
+            });
+        } catch (SQLException e) {
+            throw new IOException("SQL error writing notifications Error: " + e.getMessage());
+        }
+    }
+
+    // Pending rows added and removed for one entry, in one transaction
+    public void updateNotifications(UUID uuid, List<NotificationRow> added, Collection<LocalDateTime> removed)
+            throws IOException {
+        if (added.isEmpty() && removed.isEmpty()) {
+            return;
+        }
+        try {
+            writeTransaction(conn -> {
+                PreparedStatement delete = conn.prepare(NOTIFICATION_DELETE_PENDING);
+                for (var time : removed) {
+                    delete.setString(1, uuid.toString());
+                    delete.setLong(2, dueAt(time));
+                    delete.executeUpdate();
+                }
+                PreparedStatement upsert = conn.prepare(NOTIFICATION_UPSERT);
+                for (var row : added) {
+                    bindNotification(upsert, row);
+                    upsert.executeUpdate();
+                }
+            });
+        } catch (SQLException e) {
+            throw new IOException("SQL error updating notifications for: " + uuid + " Error: " + e.getMessage());
+        }
+    }
+
+    // Drops the entry's pending rows and acknowledges the ones that fired
+    public void acknowledgeNotifications(UUID uuid, Collection<LocalDateTime> pending) throws IOException {
+        try {
+            writeTransaction(conn -> {
+                PreparedStatement delete = conn.prepare(NOTIFICATION_DELETE_PENDING);
+                for (var time : pending) {
+                    delete.setString(1, uuid.toString());
+                    delete.setLong(2, dueAt(time));
+                    delete.executeUpdate();
+                }
+                PreparedStatement acknowledge = conn.prepare(NOTIFICATIONS_ACKNOWLEDGE);
+                acknowledge.setString(1, uuid.toString());
+                acknowledge.executeUpdate();
+            });
+        } catch (SQLException e) {
+            throw new IOException("SQL error acknowledging notifications for: " + uuid + " Error: " + e.getMessage());
+        }
+    }
+
+    public void markNotificationsFired(List<NotificationRow> rows) throws IOException {
+        if (rows.isEmpty()) {
+            return;
+        }
+        long now = Instant.now().getEpochSecond();
+        try {
+            writeTransaction(conn -> {
+                PreparedStatement fire = conn.prepare(NOTIFICATION_FIRE);
+                for (var row : rows) {
+                    bindNotification(fire, row);
+                    fire.setLong(5, now);
+                    fire.executeUpdate();
+                }
+            });
+        } catch (SQLException e) {
+            throw new IOException("SQL error marking notifications fired Error: " + e.getMessage());
+        }
+    }
+
+    // Pending rows due before time, oldest first
+    public List<NotificationRow> getMissedNotifications(LocalDateTime before) throws IOException {
+        return selectNotifications(NOTIFICATIONS_MISSED, before);
+    }
+
+    public List<NotificationRow> getFiredNotificationsSince(LocalDateTime from) throws IOException {
+        return selectNotifications(NOTIFICATIONS_FIRED_SINCE, from);
+    }
+
+    public List<NotificationRow> getPendingNotificationsSince(LocalDateTime from) throws IOException {
+        return selectNotifications(NOTIFICATIONS_PENDING_SINCE, from);
+    }
+
+    // Removes fired and acknowledged rows due before the threshold, pending rows are kept
+    public void pruneNotifications(LocalDateTime before) throws IOException {
+        try {
+            write(conn -> {
+                PreparedStatement ps = conn.prepare(NOTIFICATIONS_PRUNE);
+                ps.setLong(1, dueAt(before));
+                ps.executeUpdate();
+            });
+        } catch (SQLException e) {
+            throw new IOException("SQL error pruning notifications Error: " + e.getMessage());
+        }
+    }
+
+    // Stored to the minute like reminder times, so rows read back (unixToLocal truncates) match what was written
+    private static long dueAt(LocalDateTime time) {
+        return DateTimeUtil.localToUnix(time.truncatedTo(ChronoUnit.MINUTES));
+    }
+
+    private List<NotificationRow> selectNotifications(String query, LocalDateTime time) throws IOException {
+        try (PooledConnection conn = pool.acquire()) {
+            PreparedStatement ps = conn.prepare(query);
+            ps.setLong(1, dueAt(time));
+            List<NotificationRow> rows = new ArrayList<>();
+            try (ResultSet result = ps.executeQuery()) {
+                while (result.next()) {
+                    rows.add(new NotificationRow(
+                            UUID.fromString(result.getString("entry_uuid")),
+                            EntryType.valueOf(result.getString("entry_type")),
+                            DateTimeUtil.unixToLocal(result.getLong("due_at")),
+                            NotificationLevel.valueOf(result.getString("level")))
+                    );
+                }
+            }
+            return rows;
+        } catch (SQLException e) {
+            throw new IOException("SQL error reading notifications Error: " + e.getMessage());
+        }
+    }
+
+    private static void bindNotification(PreparedStatement ps, NotificationRow row) throws SQLException {
+        ps.setString(1, row.uuid().toString());
+        ps.setString(2, row.type().name());
+        ps.setLong(3, dueAt(row.dueAt()));
+        ps.setString(4, row.level().name());
+    }
+
 }
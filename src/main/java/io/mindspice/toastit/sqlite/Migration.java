@@ -0,0 +1,30 @@
+package io.mindspice.toastit.sqlite;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+
+// A schema step applied once, in version order, each inside its own transaction with the user_version bump
+public record Migration(
+        int version,
+        String description,
+        Step step
+) {
+
+    @FunctionalInterface
+    public interface Step {
+        void apply(Connection conn) throws SQLException;
+    }
+
+    public static Migration of(int version, String description, List<String> statements) {
+        return new Migration(version, description, conn -> {
+            try (Statement stmt = conn.createStatement()) {
+                for (String statement : statements) {
+                    stmt.execute(statement);
+                }
+            }
+        });
+    }
+}
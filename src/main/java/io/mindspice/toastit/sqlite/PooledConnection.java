@@ -0,0 +1,79 @@
+package io.mindspice.toastit.sqlite;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+
+// Only ever held by one thread at a time, so the statement cache needs no locking.
+// Statements from prepare() are owned by the cache and must not be closed by callers, close() returns to the pool
+public class PooledConnection implements AutoCloseable {
+    private final Connection connection;
+    private final ConnectionPool pool;
+    private final Map<String, PreparedStatement> statementCache;
+    int holdCount = 0;
+
+    PooledConnection(Connection connection, ConnectionPool pool, int cacheSize) {
+        this.connection = connection;
+        this.pool = pool;
+        this.statementCache = new LinkedHashMap<>(cacheSize, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+                if (size() > cacheSize) {
+                    closeQuietly(eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    public PreparedStatement prepare(String query) throws SQLException {
+        PreparedStatement ps = statementCache.get(query);
+        if (ps == null || ps.isClosed()) {
+            ps = connection.prepareStatement(query);
+            statementCache.put(query, ps);
+        } else {
+            ps.clearParameters();
+        }
+        return ps;
+    }
+
+    public Statement createStatement() throws SQLException {
+        return connection.createStatement();
+    }
+
+    public Connection raw() {
+        return connection;
+    }
+
+    public int cachedStatements() {
+        return statementCache.size();
+    }
+
+    @Override
+    public void close() {
+        pool.release(this);
+    }
+
+    void closeConnection() {
+        statementCache.values().forEach(PooledConnection::closeQuietly);
+        statementCache.clear();
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            System.err.println("Error closing pooled connection: " + e.getMessage());
+        }
+    }
+
+    private static void closeQuietly(Statement statement) {
+        try {
+            statement.close();
+        } catch (SQLException e) {
+            System.err.println("Error closing cached statement: " + e.getMessage());
+        }
+    }
+}
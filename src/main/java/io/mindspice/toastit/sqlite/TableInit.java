@@ -1,6 +1,17 @@
 package io.mindspice.toastit.sqlite;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 
 public class TableInit {
@@ -83,6 +94,60 @@ public class TableInit {
 
 
 
+    // One row per entry/tag, keyed by tag first so tag lookups are an index range scan
+    public static String ENTRY_TAGS_TABLE = """
+            CREATE TABLE IF NOT EXISTS entry_tags (
+                tag TEXT NOT NULL,
+                entry_type TEXT NOT NULL, -- EntryType name
+                entry_uuid TEXT NOT NULL,
+                PRIMARY KEY (tag, entry_type, entry_uuid)
+            ) WITHOUT ROWID;
+            """;
+
+    // Rowids are shared with text_search, so an entry's fts row is found through its uuid here
+    public static String TEXT_SEARCH_DOCS_TABLE = """
+            CREATE TABLE IF NOT EXISTS text_search_docs (
+                rowid INTEGER PRIMARY KEY,
+                uuid TEXT NOT NULL UNIQUE,
+                entry_type TEXT NOT NULL, -- EntryType name
+                mtime INTEGER NOT NULL -- File modified time when indexed, epoch millis
+            );
+            """;
+
+    // Reminder outbox, one row per (entry, due time). Rows are PENDING until fired, FIRED rows become ACKNOWLEDGED
+    // once the entry's reminders are cancelled (completed, archived or deleted)
+    public static String NOTIFICATIONS_TABLE = """
+            CREATE TABLE IF NOT EXISTS notifications (
+                entry_uuid TEXT NOT NULL,
+                entry_type TEXT NOT NULL, -- EntryType name
+                due_at INTEGER NOT NULL, -- Epoch seconds
+                level TEXT NOT NULL, -- NotificationLevel name
+                state TEXT NOT NULL DEFAULT 'PENDING' CHECK (state IN ('PENDING', 'FIRED', 'ACKNOWLEDGED')),
+                fired_at INTEGER,
+                PRIMARY KEY (entry_uuid, due_at)
+            ) WITHOUT ROWID;
+            """;
+
+    public static String TEXT_SEARCH_TABLE = """
+            CREATE VIRTUAL TABLE IF NOT EXISTS text_search USING fts5(
+                name,
+                body,
+                tokenize = 'unicode61 remove_diacritics 2'
+            );
+            """;
+
+    // Partial index predicates must match the query text (started = 1 AND archived = 0) for the planner to use them
+    public static List<String> INDEX_STATEMENTS = List.of(
+            "CREATE INDEX IF NOT EXISTS idx_events_start_time ON events (start_time)",
+            "CREATE INDEX IF NOT EXISTS idx_events_end_time ON events (end_time)",
+            "CREATE INDEX IF NOT EXISTS idx_tasks_active ON tasks (due_by) WHERE started = 1 AND archived = 0",
+            "CREATE INDEX IF NOT EXISTS idx_tasks_unarchived ON tasks (due_by) WHERE archived = 0",
+            "CREATE INDEX IF NOT EXISTS idx_projects_active ON projects (due_by) WHERE started = 1 AND archived = 0",
+            "CREATE INDEX IF NOT EXISTS idx_projects_unarchived ON projects (due_by) WHERE archived = 0",
+            "CREATE INDEX IF NOT EXISTS idx_notes_unarchived ON notes (created_at) WHERE archived = 0",
+            "CREATE INDEX IF NOT EXISTS idx_journals_unarchived ON journals (created_at) WHERE archived = 0"
+    );
+
     public static List<String> INIT_STATEMENTS = List.of(
             EVENT_TABLE,
             TASK_TABLE,
@@ -90,4 +155,96 @@ public class TableInit {
             NOTE_TABLE,
             JOURNAL_TABLE
     );
+
+    /*
+     * Applied in order at startup for any version above the database's PRAGMA user_version. Only ever append,
+     * an applied migration must never be edited. Each runs once, its user_version bump commits in the same
+     * BEGIN IMMEDIATE transaction, so steps like ALTER TABLE ADD COLUMN need no guard. Databases created before
+     * versioning are at 0 and already have the base tables, which is why migration 1 keeps IF NOT EXISTS.
+     */
+    public static List<Migration> MIGRATIONS = List.of(
+            Migration.of(1, "Create base tables", INIT_STATEMENTS),
+            Migration.of(2, "Index hot query predicates", INDEX_STATEMENTS),
+            new Migration(3, "Store task and project payloads", conn -> {
+                try (Statement stmt = conn.createStatement()) {
+                    stmt.execute("ALTER TABLE tasks ADD COLUMN payload TEXT");
+                    stmt.execute("ALTER TABLE projects ADD COLUMN payload TEXT");
+                }
+                backfillPayloads(conn, "tasks");
+                backfillPayloads(conn, "projects");
+            }),
+            Migration.of(4, "Normalize entry tags", List.of(
+                    ENTRY_TAGS_TABLE,
+                    "CREATE INDEX IF NOT EXISTS idx_entry_tags_uuid ON entry_tags (entry_uuid)",
+                    backfillTags("events", "EVENT"),
+                    backfillTags("tasks", "TASK"),
+                    backfillTags("projects", "PROJECT"),
+                    backfillTags("notes", "NOTE"),
+                    backfillTags("journals", "JOURNAL")
+            )),
+            // Bodies are filled lazily by the text managers, which compare file mtimes against text_search_docs
+            Migration.of(5, "Full text index for notes and journals", List.of(
+                    TEXT_SEARCH_DOCS_TABLE,
+                    TEXT_SEARCH_TABLE,
+                    "CREATE INDEX IF NOT EXISTS idx_text_search_docs_type ON text_search_docs (entry_type)"
+            )),
+            // uuid breaks created_at ties for keyset paging, the new indexes also serve the old created_at ordering
+            Migration.of(6, "Keyset paging for notes and journals", List.of(
+                    "CREATE INDEX IF NOT EXISTS idx_notes_page ON notes (created_at, uuid) WHERE archived = 0",
+                    "CREATE INDEX IF NOT EXISTS idx_journals_page ON journals (created_at, uuid) WHERE archived = 0",
+                    "DROP INDEX IF EXISTS idx_notes_unarchived",
+                    "DROP INDEX IF EXISTS idx_journals_unarchived"
+            )),
+            Migration.of(7, "Notification outbox", List.of(
+                    NOTIFICATIONS_TABLE,
+                    "CREATE INDEX IF NOT EXISTS idx_notifications_state_due ON notifications (state, due_at)"
+            )),
+            // Series are stored once with their rule, series_end replaces end_time for expiring past rows
+            Migration.of(8, "Recurring events", List.of(
+                    "ALTER TABLE events ADD COLUMN recurrence TEXT",
+                    "ALTER TABLE events ADD COLUMN series_end INTEGER",
+                    "UPDATE events SET series_end = end_time",
+                    "CREATE INDEX IF NOT EXISTS idx_events_series_end ON events (series_end)",
+                    "DROP INDEX IF EXISTS idx_events_end_time"
+            )),
+            // Only the few recurring rows, so ranges past the loaded window can find series that began before them
+            Migration.of(9, "Recurring series lookup", List.of(
+                    "CREATE INDEX IF NOT EXISTS idx_events_series_start ON events (start_time) WHERE recurrence IS NOT NULL"
+            ))
+    );
+
+    private static String backfillTags(String table, String entryType) {
+        return String.format("""
+                INSERT OR IGNORE INTO entry_tags (entry_uuid, entry_type, tag)
+                SELECT t.uuid, '%s', j.value FROM %s t, json_each(t.tags) j
+                WHERE json_valid(t.tags)
+                """, entryType, table);
+    }
+
+    // Copies each existing meta file verbatim into its row, entries with a missing file keep loading from disk
+    public static void backfillPayloads(Connection conn, String table) throws SQLException {
+        Map<String, String> payloads = new HashMap<>();
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT uuid, meta_path FROM " + table + " WHERE payload IS NULL")) {
+            while (rs.next()) {
+                String metaPath = rs.getString("meta_path");
+                if (metaPath == null) {
+                    continue;
+                }
+                try {
+                    payloads.put(rs.getString("uuid"), Files.readString(Path.of(metaPath)));
+                } catch (IOException | InvalidPathException e) {
+                    System.err.printf("Skipping payload for %s, failed to read: %s%n", rs.getString("uuid"), metaPath);
+                }
+            }
+        }
+        try (PreparedStatement ps = conn.prepareStatement("UPDATE " + table + " SET payload = ? WHERE uuid = ?")) {
+            for (var entry : payloads.entrySet()) {
+                ps.setString(1, entry.getValue());
+                ps.setString(2, entry.getKey());
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+    }
 }
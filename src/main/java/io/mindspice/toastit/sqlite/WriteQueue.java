@@ -0,0 +1,155 @@
+package io.mindspice.toastit.sqlite;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+
+
+// All writes are funneled through one thread that owns the only write connection. Whatever has queued up
+// while the previous transaction was committing is drained and committed together (group commit), each op
+// runs under its own savepoint so a failing write only rolls back itself.
+public class WriteQueue implements AutoCloseable {
+    private final BlockingQueue<PendingWrite> queue = new LinkedBlockingQueue<>();
+    private final ConnectionPool writePool;
+    private final int maxBatch;
+    private final Thread writerThread;
+    private volatile boolean running = true;
+
+    @FunctionalInterface
+    public interface SQLWrite {
+        void apply(PooledConnection conn) throws SQLException;
+    }
+
+    private record PendingWrite(SQLWrite op, CompletableFuture<Void> future) { }
+
+    private static final PendingWrite STOP = new PendingWrite(null, null); // Posted by close(), always queued last
+
+    public WriteQueue(ConnectionPool writePool, int maxBatch) {
+        this.writePool = writePool;
+        this.maxBatch = Math.max(1, maxBatch);
+        writerThread = Thread.ofPlatform().name("db-writer").daemon(true).start(this::writeLoop);
+    }
+
+    public synchronized CompletableFuture<Void> submit(SQLWrite op) {
+        var pending = new PendingWrite(op, new CompletableFuture<>());
+        if (!running) {
+            pending.future.completeExceptionally(new SQLException("Write queue is closed"));
+            return pending.future;
+        }
+        queue.add(pending);
+        return pending.future;
+    }
+
+    // Blocks until the transaction containing the write has committed
+    public void write(SQLWrite op) throws SQLException {
+        if (Thread.currentThread() == writerThread) { // Nested writes from inside an op
+            try (PooledConnection conn = writePool.acquire()) {
+                op.apply(conn);
+            }
+            return;
+        }
+        try {
+            submit(op).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted waiting for write to commit");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof SQLException sqlException) {
+                throw sqlException;
+            }
+            throw new SQLException("Write failed: " + e.getCause(), e.getCause());
+        }
+    }
+
+    public int pending() {
+        return queue.size();
+    }
+
+    private void writeLoop() {
+        List<PendingWrite> batch = new ArrayList<>(maxBatch);
+        try (PooledConnection conn = writePool.acquire()) {
+            boolean stopped = false;
+            while (!stopped) {
+                batch.add(queue.take());
+                queue.drainTo(batch, maxBatch - 1);
+                if (batch.getLast() == STOP) {
+                    batch.removeLast();
+                    stopped = true;
+                }
+                commitBatch(conn, batch);
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (SQLException e) {
+            System.err.println("Database writer failed to acquire connection: " + e.getMessage());
+        } finally {
+            synchronized (this) {
+                running = false;
+                batch.addAll(queue);
+                batch.stream().filter(p -> p != STOP)
+                        .forEach(p -> p.future.completeExceptionally(new SQLException("Database writer stopped")));
+            }
+        }
+    }
+
+    private void commitBatch(PooledConnection conn, List<PendingWrite> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        Connection raw = conn.raw();
+        List<PendingWrite> applied = new ArrayList<>(batch.size());
+        try {
+            raw.setAutoCommit(false);
+            for (var pending : batch) {
+                Savepoint savepoint = raw.setSavepoint();
+                try {
+                    pending.op.apply(conn);
+                    raw.releaseSavepoint(savepoint);
+                    applied.add(pending);
+                } catch (Exception e) {
+                    pending.future.completeExceptionally(e);
+                    raw.rollback(savepoint);
+                }
+            }
+            raw.commit();
+            applied.forEach(p -> p.future.complete(null));
+        } catch (SQLException e) {
+            try {
+                raw.rollback();
+            } catch (SQLException re) {
+                System.err.println("Error rolling back write batch: " + re.getMessage());
+            }
+            batch.forEach(p -> p.future.completeExceptionally(e));
+        } finally {
+            try {
+                raw.setAutoCommit(true);
+            } catch (SQLException e) {
+                System.err.println("Error resetting writer connection: " + e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (running) {
+                running = false;
+                queue.add(STOP);
+            }
+        }
+        // Everything accepted before close is committed before the connection goes away
+        try {
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        writePool.close();
+    }
+}
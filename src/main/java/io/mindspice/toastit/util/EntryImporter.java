@@ -0,0 +1,242 @@
+package io.mindspice.toastit.util;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.mindspice.toastit.App;
+import io.mindspice.toastit.entries.event.EventEntry;
+import io.mindspice.toastit.entries.project.ProjectEntry;
+import io.mindspice.toastit.entries.task.TaskEntry;
+import io.mindspice.toastit.entries.text.TextEntry;
+import io.mindspice.toastit.entries.text.TextManager;
+import io.mindspice.toastit.enums.EntryType;
+import io.mindspice.toastit.sqlite.DBConnection;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+
+/*
+ * Bulk loads entries, each entry type goes to the database as one batched transaction.
+ *
+ * JSON dumps hold arrays keyed by type, events/tasks/projects in the same shape as their meta files:
+ *   {"events": [...], "tasks": [...], "projects": [...], "notes": [...], "journals": [...]}
+ * notes/journals take {"name", "createdAt", "tags", "body"}.
+ *
+ * CSV files are notes (or journals) only: name,created_at,tags,body with ';' separated tags, a header row
+ * is skipped if present.
+ */
+public class EntryImporter {
+
+    public record ImportResult(int events, int tasks, int projects, int notes, int journals) {
+        public int total() {
+            return events + tasks + projects + notes + journals;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Imported %d entries (events: %d, tasks: %d, projects: %d, notes: %d, journals: %d)",
+                    total(), events, tasks, projects, notes, journals);
+        }
+    }
+
+    public static ImportResult importFile(Path path) throws IOException {
+        String fileName = path.getFileName().toString().toLowerCase();
+        if (fileName.endsWith(".json")) {
+            return importJson(path);
+        } else if (fileName.endsWith(".csv")) {
+            return importCsv(path, EntryType.NOTE);
+        }
+        throw new IOException("Unsupported import format, expected .json or .csv: " + path);
+    }
+
+    public static ImportResult importJson(Path path) throws IOException {
+        JsonNode root = JSON.readTree(path);
+        DBConnection db = App.instance().getDatabase();
+
+        List<EventEntry> events = new ArrayList<>();
+        for (JsonNode node : root.path("events")) {
+            events.add(JSON.treeToValue(node, EventEntry.class));
+        }
+        db.upsertEvents(events);
+
+        List<TaskEntry> tasks = new ArrayList<>();
+        for (JsonNode node : root.path("tasks")) {
+            tasks.add(JSON.treeToValue(withLocalPath(node), TaskEntry.class));
+        }
+        tasks.forEach(TaskEntry::flushToDisk);
+        db.upsertTasks(tasks);
+
+        // Projects resolve their tasks from the database when constructed, so tasks must already be stored
+        List<ProjectEntry> projects = new ArrayList<>();
+        for (JsonNode node : root.path("projects")) {
+            projects.add(JSON.treeToValue(withLocalPath(node), ProjectEntry.class));
+        }
+        projects.forEach(ProjectEntry::flushToDisk);
+        db.upsertProjects(projects);
+
+        int notes = importText(readTextNodes(root.path("notes"), EntryType.NOTE), EntryType.NOTE);
+        int journals = importText(readTextNodes(root.path("journals"), EntryType.JOURNAL), EntryType.JOURNAL);
+
+        refreshManagers();
+        return new ImportResult(events.size(), tasks.size(), projects.size(), notes, journals);
+    }
+
+    public static ImportResult importCsv(Path path, EntryType type) throws IOException {
+        List<List<String>> rows = parseCsv(Files.readString(path));
+        if (!rows.isEmpty() && rows.getFirst().getFirst().equalsIgnoreCase("name")) {
+            rows.removeFirst();
+        }
+
+        List<TextImport> entries = new ArrayList<>(rows.size());
+        for (int i = 0; i < rows.size(); ++i) {
+            List<String> row = rows.get(i);
+            if (row.size() < 4) {
+                throw new IOException(String.format("Malformed row %d in %s, expected: name,created_at,tags,body", i + 1, path));
+            }
+            TextEntry.Builder builder = TextEntry.builder(type);
+            builder.name = row.get(0);
+            builder.createdAt = parseDateTime(row.get(1));
+            builder.tags = row.get(2).isBlank()
+                    ? new ArrayList<>()
+                    : new ArrayList<>(Arrays.stream(row.get(2).split(";")).map(String::trim).toList());
+            entries.add(new TextImport(builder.build(), row.get(3)));
+        }
+
+        int count = importText(entries, type);
+        refreshManagers();
+        return type == EntryType.NOTE
+                ? new ImportResult(0, 0, 0, count, 0)
+                : new ImportResult(0, 0, 0, 0, count);
+    }
+
+    private record TextImport(TextEntry entry, String body) { }
+
+    private static List<TextImport> readTextNodes(JsonNode nodes, EntryType type) throws IOException {
+        List<TextImport> entries = new ArrayList<>();
+        for (JsonNode node : nodes) {
+            TextEntry.Builder builder = TextEntry.builder(type);
+            builder.name = node.path("name").asText("");
+            builder.createdAt = node.hasNonNull("createdAt")
+                    ? JSON.treeToValue(node.get("createdAt"), LocalDateTime.class)
+                    : LocalDateTime.now();
+            for (JsonNode tag : node.path("tags")) {
+                builder.tags.add(tag.asText());
+            }
+            entries.add(new TextImport(builder.build(), node.path("body").asText("")));
+        }
+        return entries;
+    }
+
+    private static int importText(List<TextImport> imports, EntryType type) throws IOException {
+        if (imports.isEmpty()) {
+            return 0;
+        }
+        List<TextEntry> entries = new ArrayList<>(imports.size());
+        for (var imp : imports) {
+            imp.entry.flushToDisk();
+            if (!imp.body.isEmpty()) {
+                Files.writeString(imp.entry.getFilePath(), imp.body);
+            }
+            entries.add(imp.entry);
+        }
+        if (type == EntryType.NOTE) {
+            App.instance().getDatabase().upsertNotes(entries);
+        } else {
+            App.instance().getDatabase().upsertJournals(entries);
+        }
+        return entries.size();
+    }
+
+    // Dumps may come from another machine, entries are always re-homed under the local entry path
+    private static JsonNode withLocalPath(JsonNode node) {
+        if (node instanceof ObjectNode objectNode) {
+            objectNode.remove("basePath");
+        }
+        return node;
+    }
+
+    private static LocalDateTime parseDateTime(String value) throws IOException {
+        if (value.isBlank()) {
+            return LocalDateTime.now();
+        }
+        try {
+            return LocalDateTime.parse(value.trim());
+        } catch (DateTimeParseException e) {
+            try {
+                return LocalDate.parse(value.trim()).atStartOfDay();
+            } catch (DateTimeParseException e2) {
+                throw new IOException("Invalid created_at, expected ISO date or date-time: " + value);
+            }
+        }
+    }
+
+    // RFC 4180: quoted fields may contain commas, newlines and "" escaped quotes
+    public static List<List<String>> parseCsv(String content) {
+        List<List<String>> rows = new ArrayList<>();
+        List<String> row = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+
+        for (int i = 0; i < content.length(); ++i) {
+            char c = content.charAt(i);
+            if (quoted) {
+                if (c == '"') {
+                    if (i + 1 < content.length() && content.charAt(i + 1) == '"') {
+                        field.append('"');
+                        ++i;
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                row.add(field.toString());
+                field.setLength(0);
+            } else if (c == '\n' || c == '\r') {
+                if (c == '\r' && i + 1 < content.length() && content.charAt(i + 1) == '\n') {
+                    ++i;
+                }
+                row.add(field.toString());
+                field.setLength(0);
+                if (!(row.size() == 1 && row.getFirst().isEmpty())) {
+                    rows.add(row);
+                }
+                row = new ArrayList<>();
+            } else {
+                field.append(c);
+            }
+        }
+        if (!field.isEmpty() || !row.isEmpty()) {
+            row.add(field.toString());
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    private static void refreshManagers() {
+        App app = App.instance();
+        app.getTaskManager().refreshActiveTasks.accept(app.getTaskManager());
+        app.getProjectManager().refreshActiveProjects.accept(app.getProjectManager());
+        app.getEventManager().refreshEventNotifications.accept(app.getEventManager());
+        reloadText(app.getNoteManager(), EntryType.NOTE);
+        reloadText(app.getJournalManager(), EntryType.JOURNAL);
+    }
+
+    private static void reloadText(TextManager manager, EntryType type) {
+        try {
+            manager.syncSearchIndex(); // Entries are read from the database on demand, only the index needs catching up
+        } catch (IOException e) {
+            System.err.println("Failed to sync " + type + " search index: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package io.mindspice.toastit.util;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+
+
+/*
+ * Watches a directory tree, including directories created after start, and reports changed files in batches once
+ * no new events have arrived for debounceMs (or maxDelayMs has passed since the first one). Listener callbacks
+ * run on the watcher thread, so they are never concurrent with each other.
+ */
+public class FileWatcher implements AutoCloseable {
+    private final Path root;
+    private final Predicate<Path> fileFilter;
+    private final Listener listener;
+    private final long debounceMs;
+    private final long maxDelayMs;
+    private final WatchService watchService;
+    private Thread thread;
+
+    public interface Listener {
+        // Paths may no longer exist if the file was deleted or replaced by a rename
+        void onChanged(Set<Path> files);
+
+        // Events were dropped by the OS, the listener should fall back to a full rescan
+        void onOverflow();
+    }
+
+    public FileWatcher(Path root, Predicate<Path> fileFilter, long debounceMs, Listener listener) throws IOException {
+        this.root = root;
+        this.fileFilter = fileFilter;
+        this.listener = listener;
+        this.debounceMs = Math.max(1, debounceMs);
+        this.maxDelayMs = this.debounceMs * 10;
+        this.watchService = root.getFileSystem().newWatchService();
+    }
+
+    public FileWatcher start() throws IOException {
+        Files.createDirectories(root);
+        registerTree(root);
+        thread = Thread.ofPlatform().daemon().name("file-watcher-" + root.getFileName()).start(this::run);
+        return this;
+    }
+
+    private List<Path> registerTree(Path dir) throws IOException {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            List<Path> all = paths.toList();
+            for (var path : all) {
+                if (Files.isDirectory(path)) {
+                    path.register(watchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE);
+                }
+            }
+            return all;
+        }
+    }
+
+    private void run() {
+        Set<Path> pending = new HashSet<>();
+        long firstEvent = 0;
+        try {
+            while (true) {
+                WatchKey key;
+                if (pending.isEmpty()) {
+                    key = watchService.take();
+                    firstEvent = System.currentTimeMillis();
+                } else {
+                    long wait = Math.min(debounceMs, firstEvent + maxDelayMs - System.currentTimeMillis());
+                    key = wait > 0 ? watchService.poll(wait, TimeUnit.MILLISECONDS) : null;
+                }
+
+                if (key == null) {
+                    flush(pending);
+                    continue;
+                }
+                Path dir = (Path) key.watchable();
+                for (var event : key.pollEvents()) {
+                    if (event.kind() == OVERFLOW) {
+                        pending.clear();
+                        notify(listener::onOverflow);
+                        continue;
+                    }
+                    Path path = dir.resolve((Path) event.context());
+                    if (event.kind() == ENTRY_CREATE && Files.isDirectory(path)) {
+                        // Files can land in a new directory before it is registered, so report what is already there
+                        try {
+                            registerTree(path).stream().filter(fileFilter).forEach(pending::add);
+                        } catch (IOException e) {
+                            System.err.println("Failed to watch directory: " + path + " | " + e.getMessage());
+                        }
+                    } else if (fileFilter.test(path)) {
+                        pending.add(path);
+                    }
+                }
+                key.reset();
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // Closed
+        }
+    }
+
+    private void flush(Set<Path> pending) {
+        Set<Path> changed = Set.copyOf(pending);
+        pending.clear();
+        notify(() -> listener.onChanged(changed));
+    }
+
+    private void notify(Runnable callback) {
+        try {
+            callback.run();
+        } catch (Exception e) {
+            System.err.println("Error in file watcher listener for: " + root + " | " + e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        watchService.close();
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+}
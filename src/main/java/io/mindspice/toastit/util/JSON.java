@@ -3,9 +3,11 @@ package io.mindspice.toastit.util;
 import com.fasterxml.jackson.annotation.JsonAutoDetect;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.module.SimpleModule;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import io.mindspice.toastit.entries.event.Recurrence;
 import io.mindspice.toastit.notification.Reminder;
 
 import java.io.File;
@@ -56,6 +58,14 @@ public class JSON {
         return objectMapper.readValue(json, clazz);
     }
 
+    public static JsonNode readTree(Path path) throws IOException {
+        return objectMapper.readTree(path.toFile());
+    }
+
+    public static <T> T treeToValue(JsonNode node, Class<T> clazz) throws JsonProcessingException {
+        return objectMapper.treeToValue(node, clazz);
+    }
+
     public static List<String> jsonArrayToStringList(String arrayString) {
         try {
             return objectMapper.readValue(arrayString, stringList);
@@ -65,6 +75,18 @@ public class JSON {
         }
     }
 
+    public static Recurrence jsonToRecurrence(String json) {
+        if (json == null) {
+            return null;
+        }
+        try {
+            return objectMapper.readValue(json, Recurrence.class);
+        } catch (JsonProcessingException e) {
+            System.err.println("Failed converting json of: " + json + " to recurrence");
+            return null;
+        }
+    }
+
     public static List<LocalDateTime> arrayStringToDataTimeList(String arrayString) {
         try {
             List<Long> epochTimes = objectMapper.readValue(arrayString, longList);
@@ -5,9 +5,12 @@ import com.github.freva.asciitable.OverflowBehaviour;
 import io.mindspice.toastit.calendar.Calendar;
 import io.mindspice.toastit.calendar.CalendarCell;
 import io.mindspice.toastit.entries.DatedEntry;
+import io.mindspice.toastit.enums.SearchBackend;
+import io.mindspice.toastit.notification.NotificationSink;
 import io.mindspice.toastit.shell.ShellMode;
 
 import java.nio.file.Path;
+import java.time.LocalTime;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -26,6 +29,7 @@ public class Settings {
     public static String JOURNAL_PATH;
     public static String PROJECT_PATH;
     public static String TEMP_PATH;
+    public static String INDEX_PATH;
 
     // Edit Settings
 
@@ -67,16 +71,42 @@ public class Settings {
     public static String DATE_TIME_SHORT_PATTERN;
     public static boolean THREADED_SEARCH;
     public static int SEARCH_TIMEOUT_SEC;
+    public static SearchBackend SEARCH_BACKEND = SearchBackend.SCAN;
+    public static int SEARCH_RESULT_LIMIT;
+    public static int SEARCH_CONCURRENCY;
+    public static int SEARCH_CACHE_MB = 16;
+    public static int INDEX_WATCH_DEBOUNCE_MS = 250;
+    public static int TEXT_PAGE_SIZE = 25;
+
+    // Database
+    public static int DB_POOL_SIZE;
+    public static int DB_STATEMENT_CACHE_SIZE;
+    public static int DB_BUSY_TIMEOUT_MS;
+    public static boolean DB_WAL_MODE;
+    public static int DB_CACHE_SIZE_KB;
+    public static int DB_MMAP_SIZE_MB;
+    public static int DB_WRITE_BATCH_SIZE;
+    public static boolean DB_STORE_PAYLOADS;
 
     // Events
     public static int EVENT_LOOK_FORWARD_DAYS;
     public static int EVENT_REFRESH_INV_MIN;
     public static int EVENT_NOTIFY_FADE_TIME_SEC;
+    public static int EVENT_RECURRENCE_WINDOW_DAYS = 60;
+    public static LocalTime FREEBUSY_DAY_START = LocalTime.of(8, 0);
+    public static LocalTime FREEBUSY_DAY_END = LocalTime.of(18, 0);
+    public static int FREEBUSY_TASK_MINUTES = 30;
 
     // TASKS
     public static int TASK_REFRESH_INV_MIN;
     public static int TASK_NOTIFY_FADE_TIME_SEC;
 
+    // Notifications
+    public static int NOTIFICATION_RETENTION_DAYS = 30;
+    public static List<NotificationSink> NOTIFY_SINKS = List.of(NotificationSink.process());
+    public static int NOTIFY_COALESCE_MS = 5000;
+    public static int NOTIFY_MAX_PER_MIN = 6;
+
     // Shell Config
     public static String SHELL_BIND_ADDRESS;
     public static int SHELL_BIND_PORT;
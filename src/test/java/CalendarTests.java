@@ -1,10 +1,18 @@
 import io.mindspice.toastit.calendar.Calendar;
 import io.mindspice.toastit.calendar.CalendarCell;
+import io.mindspice.toastit.entries.CalendarEvents;
+import io.mindspice.toastit.entries.DatedEntry;
+import io.mindspice.toastit.entries.event.EventEntry;
 import org.junit.Test;
 
+import java.time.LocalDate;
 import java.time.Month;
 import java.time.YearMonth;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
 
 
 public class CalendarTests {
@@ -22,4 +30,35 @@ public class CalendarTests {
 
 
     }
+
+    @Test
+    public void calendarEntriesTest() {
+        LocalDate day = LocalDate.of(2024, Month.FEBRUARY, 3);
+        List<EventEntry> events = List.of(
+                new EventEntry(UUID.randomUUID(), "Dentist", List.of(), day.atTime(10, 30), day.atTime(11, 0),
+                        List.of(), null, false),
+                new EventEntry(UUID.randomUUID(), "Concert", List.of(), day.atTime(19, 0), day.atTime(22, 0),
+                        List.of(), null, false),
+                new EventEntry(UUID.randomUUID(), "Leap Day", List.of(), day.withDayOfMonth(29).atStartOfDay(),
+                        day.withDayOfMonth(29).atTime(23, 59), List.of(), null, false)
+        );
+        List<String> lookups = new ArrayList<>();
+        CalendarEvents source = (from, to) -> {
+            lookups.add(from + "/" + to);
+            return CalendarEvents.byDay(
+                    events.stream().filter(e -> !e.startTime().toLocalDate().isBefore(from)
+                            && e.startTime().toLocalDate().isBefore(to)).toList(),
+                    EventEntry::startTime
+            );
+        };
+
+        var cells = Calendar.withEntries(
+                Calendar.generateCalenderCells(YearMonth.of(2024, Month.FEBRUARY)).second(), source, DatedEntry::name
+        );
+        assertEquals(List.of("2024-02-01/2024-03-01"), lookups);
+        assertEquals(List.of("Dentist", "Concert"), cells.get(2).items());
+        assertEquals(List.of("Leap Day"), cells.get(28).items());
+        assertEquals(List.of(), cells.get(3).items());
+        assertEquals(List.of("Dentist", "Concert"), source.getCalendarEvents(day, DatedEntry::name));
+    }
 }
@@ -1,7 +1,22 @@
+import io.mindspice.mindlib.data.tuples.Pair;
 import io.mindspice.toastit.App;
+import io.mindspice.toastit.notification.NotificationOutbox;
 import io.mindspice.toastit.notification.Reminder;
+import io.mindspice.toastit.notification.Notification;
+import io.mindspice.toastit.notification.ReminderScheduler;
+import io.mindspice.toastit.notification.ScheduledNotification;
+import io.mindspice.toastit.search.IndexDoc;
+import io.mindspice.toastit.search.InvertedIndex;
+import io.mindspice.toastit.search.SearchQuery;
+import io.mindspice.toastit.search.TextIndex;
+import io.mindspice.toastit.sqlite.ConnectionPool;
 import io.mindspice.toastit.sqlite.DBConnection;
+import io.mindspice.toastit.sqlite.PooledConnection;
+import io.mindspice.toastit.sqlite.TableInit;
+import io.mindspice.toastit.sqlite.WriteQueue;
 import io.mindspice.toastit.entries.event.EventEntry;
+import io.mindspice.toastit.entries.event.FreeBusy;
+import io.mindspice.toastit.entries.event.Recurrence;
 import io.mindspice.toastit.entries.project.ProjectEntry;
 import io.mindspice.toastit.entries.task.SubTask;
 import io.mindspice.toastit.entries.task.TaskEntry;
@@ -10,15 +25,30 @@ import io.mindspice.toastit.enums.EntryType;
 import io.mindspice.toastit.enums.NotificationLevel;
 import org.junit.BeforeClass;
 import org.junit.Test;
+import io.mindspice.toastit.util.DateTimeUtil;
+import io.mindspice.toastit.util.EntryImporter;
+import io.mindspice.toastit.util.Settings;
 import io.mindspice.toastit.util.Util;
 
 import static org.junit.Assert.*;
 
 import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.sql.SQLException;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 
 public class DatabaseTests {
@@ -94,6 +124,86 @@ public class DatabaseTests {
         db.archiveEvent(event.uuid(), true);
     }
 
+    @Test
+    public void recurringEventTest() throws IOException {
+        LocalDateTime first = LocalDateTime.of(2024, 1, 1, 9, 0); // A Monday
+        var recurrence = Recurrence.weekly(1, DayOfWeek.MONDAY, DayOfWeek.THURSDAY)
+                .withCount(6)
+                .withException(LocalDate.of(2024, 1, 8));
+        var series = new EventEntry(UUID.randomUUID(), "Standup", List.of(), first, first.plusMinutes(30),
+                List.of(new Reminder(first.minusMinutes(10), NotificationLevel.NORMAL)), null, false, recurrence, null);
+        db.upsertEvent(series);
+        assertEquals(series, db.getEventByUUID(series.uuid()));
+
+        // Jan 1, 4, 11, 15, 18, the skipped 8th still counts toward the 6
+        var occurrences = series.occurrences(first, first.plusYears(1));
+        assertEquals(5, occurrences.size());
+        var last = occurrences.getLast();
+        assertEquals(LocalDate.of(2024, 1, 18), last.startTime().toLocalDate());
+        assertEquals(last.startTime().minusMinutes(10), last.reminders().getFirst().time());
+        assertEquals(series.uuid(), last.seriesUUID());
+        assertEquals(occurrences.subList(2, 4),
+                series.occurrences(LocalDateTime.of(2024, 1, 9, 0, 0), LocalDateTime.of(2024, 1, 16, 0, 0)));
+        assertEquals(last.endTime(), series.seriesEnd());
+
+        var open = new EventEntry(UUID.randomUUID(), "Rent", List.of(), first, first.plusHours(1), List.of(), null,
+                false, Recurrence.of(Recurrence.Frequency.MONTHLY, 1), null);
+        db.upsertEvent(open);
+        assertEquals(LocalDateTime.of(2030, 6, 1, 9, 0),
+                open.occurrences(LocalDateTime.of(2030, 6, 1, 0, 0), LocalDateTime.of(2030, 7, 1, 0, 0))
+                        .getFirst().startTime());
+        db.deletePastEventEntries(DateTimeUtil.localToUnix(LocalDateTime.of(2024, 2, 1, 0, 0)));
+        assertNull(db.getEventByUUID(series.uuid()));
+        assertNotNull(db.getEventByUUID(open.uuid()));
+        db.deleteEventByUUID(open.uuid());
+    }
+
+    @Test
+    public void eventWindowTest() throws IOException {
+        var manager = app.getEventManager();
+        int lookForward = Settings.EVENT_LOOK_FORWARD_DAYS;
+        LocalDateTime start = LocalDateTime.now().plusDays(3);
+        var near = new EventEntry(UUID.randomUUID(), "Near", List.of(), start, start.plusHours(1), List.of(), null, false);
+        var far = new EventEntry(UUID.randomUUID(), "Far", List.of(), start.plusDays(7), start.plusDays(7).plusHours(1),
+                List.of(), null, false);
+        var later = new EventEntry(UUID.randomUUID(), "Later", List.of(), start.plusDays(30),
+                start.plusDays(30).plusHours(1), List.of(), null, false, Recurrence.of(Recurrence.Frequency.WEEKLY, 1),
+                null);
+        db.upsertEvent(near);
+        db.upsertEvent(far);
+        db.upsertEvent(later);
+        try {
+            Settings.EVENT_LOOK_FORWARD_DAYS = 7;
+            manager.refreshEventNotifications.accept(manager);
+            assertTrue(manager.futureEvents.contains(near.uuid()));
+            assertFalse(manager.futureEvents.contains(far.uuid()));
+
+            // Only the days that entered the window are fetched
+            Settings.EVENT_LOOK_FORWARD_DAYS = 14;
+            manager.advanceWindow();
+            assertTrue(manager.futureEvents.contains(far.uuid()));
+            assertEquals(List.of(far), manager.getEventsOn(far.startTime().toLocalDate()).stream()
+                    .filter(event -> event.uuid().equals(far.uuid()))
+                    .toList());
+
+            // A series first starting past the window still repeats into ranges read from the database
+            assertFalse(manager.seriesEvents.contains(later.uuid()));
+            LocalDate week = later.startTime().toLocalDate().plusWeeks(4);
+            assertEquals(1, manager.getCalendarEntries(week, week.plusDays(7)).values().stream()
+                    .flatMap(List::stream)
+                    .filter(entry -> later.uuid().equals(((EventEntry) entry).seriesUUID()))
+                    .count());
+            LocalDateTime occurrence = later.startTime().plusWeeks(4);
+            assertTrue(manager.getBusy(occurrence.minusHours(1), occurrence.plusHours(2))
+                    .contains(new FreeBusy.Slot(occurrence, occurrence.plusHours(1))));
+        } finally {
+            Settings.EVENT_LOOK_FORWARD_DAYS = lookForward;
+            manager.deleteEvent(near);
+            manager.deleteEvent(far);
+            manager.deleteEvent(later);
+        }
+    }
+
     @Test
     public void taskTests() throws IOException {
 
@@ -131,6 +241,39 @@ public class DatabaseTests {
         db.deleteTaskByUUID(task.uuid());
     }
 
+    @Test
+    public void payloadBackfillTest() throws IOException, SQLException {
+        var builder = TaskEntry.builder();
+        builder.name = "Payload task";
+        builder.tags = new ArrayList<>(tags);
+        TaskEntry task = builder.build();
+        task.flushToDisk();
+        db.upsertTask(task);
+        // A row from before payloads, only the meta file holds the full entry
+        try (PooledConnection conn = db.getPool().acquire(); var stmt = conn.createStatement()) {
+            stmt.execute("UPDATE tasks SET payload = NULL WHERE uuid = '" + task.uuid() + "'");
+            TableInit.backfillPayloads(conn.raw(), "tasks");
+        }
+        // Edit only the file, so each read shows which source it came from
+        var edited = task.updateBuilder();
+        edited.name = "Edited on disk";
+        edited.build().flushToDisk();
+
+        boolean storePayloads = Settings.DB_STORE_PAYLOADS;
+        try {
+            Settings.DB_STORE_PAYLOADS = true;
+            assertEquals("Payload task", db.getTaskByUUID(task.uuid()).name());
+            assertEquals("Payload task", db.getTasksByUUIDs(List.of(task.uuid())).getFirst().name());
+            Settings.DB_STORE_PAYLOADS = false;
+            assertEquals("Edited on disk", db.getTaskByUUID(task.uuid()).name());
+            assertEquals("Edited on disk", db.getTasksByUUIDs(List.of(task.uuid())).getFirst().name());
+        } finally {
+            Settings.DB_STORE_PAYLOADS = storePayloads;
+            db.deleteTaskByUUID(task.uuid());
+            Files.deleteIfExists(Util.getEntriesPath(EntryType.TASK).resolve(task.uuid() + ".task"));
+        }
+    }
+
     @Test
     public void projectTest() throws IOException {
 
@@ -265,4 +408,319 @@ public class DatabaseTests {
         assertEquals(note, readNote);
 
     }
+
+    @Test
+    public void textPageTest() throws IOException {
+        Path path = Util.getEntriesPath(EntryType.NOTE);
+        LocalDateTime createdAt = LocalDateTime.now().withNano(0);
+        List<UUID> uuids = new ArrayList<>();
+        for (int i = 0; i < 3; ++i) { // Same created_at, pages must still split between them without gaps
+            var note = new TextEntry(EntryType.NOTE, "Paged note " + i, createdAt, List.of(), UUID.randomUUID(), path);
+            db.upsertNote(note);
+            uuids.add(note.uuid());
+        }
+
+        List<UUID> seen = new ArrayList<>();
+        DBConnection.PageKey after = null;
+        List<TextEntry.Stub> page;
+        do {
+            page = db.getTextPage(EntryType.NOTE, after, 2);
+            page.forEach(stub -> seen.add(UUID.fromString(stub.uuid())));
+            after = page.isEmpty() ? null : new DBConnection.PageKey(page.getLast().createdAt(), page.getLast().uuid());
+        } while (page.size() == 2);
+
+        assertEquals(db.countTextEntries(EntryType.NOTE), seen.size());
+        assertEquals(seen.size(), seen.stream().distinct().count());
+        assertTrue(seen.containsAll(uuids));
+        assertEquals(3, db.getTextByUUIDs(EntryType.NOTE, uuids).size());
+        assertEquals(3, db.getTextByNamePrefix(EntryType.NOTE, "paged NOTE", 10).size());
+
+        for (var uuid : uuids) {
+            db.deleteNoteByUUID(uuid);
+        }
+    }
+
+    @Test
+    public void csvImportTest() throws IOException {
+        String tag = "csv-import-" + UUID.randomUUID();
+        Path csv = Files.createTempFile("toastit-import", ".csv");
+        Files.writeString(csv, "name,created_at,tags,body\n"
+                + "\"Imported, one\",2024-01-02T10:15," + tag + ",\"first body\nsecond line\"\n"
+                + "Imported two,2024-01-03," + tag + ";other,\n");
+        assertEquals(2, EntryImporter.importCsv(csv, EntryType.NOTE).notes());
+
+        var imported = db.getEntriesByTag(tag, EntryType.NOTE).stream().map(Pair::second).toList();
+        assertEquals(2, imported.size());
+        for (var stub : db.getTextByUUIDs(EntryType.NOTE, imported)) {
+            TextEntry note = stub.getAsFull(EntryType.NOTE);
+            if (note.name().equals("Imported, one")) {
+                assertEquals(LocalDateTime.of(2024, 1, 2, 10, 15), note.createdAt());
+                assertEquals("first body\nsecond line", Files.readString(note.getFilePath()));
+            } else {
+                assertEquals(LocalDateTime.of(2024, 1, 3, 0, 0), note.createdAt());
+                assertEquals(List.of(tag, "other"), note.tags());
+            }
+            db.deleteNoteByUUID(note.uuid());
+        }
+
+        Files.writeString(csv, "Short row,2024-01-03\n");
+        assertThrows(IOException.class, () -> EntryImporter.importCsv(csv, EntryType.NOTE));
+    }
+
+    @Test
+    public void tagTest() throws IOException {
+        UUID tagEventUUID = UUID.randomUUID();
+        var event = new EventEntry(
+                tagEventUUID,
+                "Tagged Event",
+                List.of("tag-test-a", "tag-test-b"),
+                LocalDateTime.now(),
+                LocalDateTime.now().plusHours(1),
+                List.of(),
+                null,
+                false
+        );
+        db.upsertEvent(event);
+
+        assertTrue(db.getUUIDsByTags(List.of("tag-test-a", "tag-test-b"), true).contains(tagEventUUID));
+        assertTrue(db.getUUIDsByTags(List.of("tag-test-a", "tag-test-c"), false, EntryType.EVENT).contains(tagEventUUID));
+        assertFalse(db.getUUIDsByTags(List.of("tag-test-a", "tag-test-c"), true).contains(tagEventUUID));
+        assertFalse(db.getUUIDsByTags(List.of("tag-test-a"), false, EntryType.TASK).contains(tagEventUUID));
+
+        db.deleteEventByUUID(tagEventUUID);
+        assertTrue(db.getEntriesByTag("tag-test-a").isEmpty());
+    }
+
+    @Test
+    public void textIndexTest() throws IOException {
+        UUID docUUID = UUID.randomUUID();
+        var doc = new IndexDoc(docUUID, "Indexed note", "an unlikely fts-test-phrase in a body", 1L);
+        db.updateTextIndex(EntryType.NOTE, List.of(doc), List.of());
+
+        var hits = db.searchText(EntryType.NOTE, "\"fts-test-phrase\"", 10);
+        assertTrue(hits.stream().anyMatch(h -> h.uuid().equals(docUUID) && h.snippet().contains("[")));
+        assertTrue(db.searchText(EntryType.JOURNAL, "\"fts-test-phrase\"", 10).isEmpty());
+        assertEquals(Long.valueOf(1L), db.getTextIndexState(EntryType.NOTE).get(docUUID));
+
+        db.updateTextIndex(EntryType.NOTE, List.of(), List.of(docUUID));
+        assertTrue(db.searchText(EntryType.NOTE, "\"fts-test-phrase\"", 10).isEmpty());
+    }
+
+    @Test
+    public void invertedIndexTest() throws IOException {
+        Path dir = Files.createTempDirectory("toastit-index");
+        var entry = new TextEntry(EntryType.NOTE, "Indexed note", LocalDateTime.now(), List.of(), UUID.randomUUID(), dir);
+        Files.writeString(entry.getFilePath(), "first line\nthe quick brown fox\nlast line");
+        var index = new InvertedIndex(dir.resolve("index"));
+        index.update(List.of(new IndexDoc(entry.uuid(), entry.name(), Files.readString(entry.getFilePath()), 1L)), List.of());
+
+        TextIndex.EntryLookup entries = uuids -> Map.of(entry.uuid(), entry);
+        assertEquals("the quick brown fox", index.search("\"quick brown\"", 10, entries).getFirst().matchedLine());
+        assertEquals(1, index.search("bro*", 10, entries).size());
+        assertTrue(index.search("\"brown quick\"", 10, entries).isEmpty());
+        assertEquals(2, index.search("line", 10, entries).size());
+
+        index.update(List.of(), List.of(entry.uuid()));
+        assertTrue(new InvertedIndex(dir.resolve("index")).search("quick", 10, entries).isEmpty());
+    }
+
+    @Test
+    public void searchQueryTest() {
+        String text = "Deploy the app\r\nrelease notes\nerror code 404";
+        assertNull(SearchQuery.parse("deploy").match(text));
+        assertEquals(List.of("Deploy the app", "release notes"), SearchQuery.parse("-i deploy release").match(text).lines());
+        assertEquals(2, SearchQuery.parse("missing OR /code \\d+/ notes").match(text).score());
+        assertNull(SearchQuery.parse("missing OR absent").match(text));
+    }
+
+    @Test
+    public void schemaVersionTest() throws Exception {
+        assertEquals(TableInit.MIGRATIONS.getLast().version(), db.getSchemaVersion());
+    }
+
+    @Test
+    public void queryPlanTest() {
+        assertEquals(List.of(), db.verifyQueryPlans());
+    }
+
+    @Test
+    public void notificationOutboxTest() throws IOException {
+        var scheduler = new ReminderScheduler(ReminderScheduler::runAll, new NotificationOutbox(db)); // Not started
+        UUID uuid = UUID.randomUUID();
+        LocalDateTime due = LocalDateTime.now().plusDays(1).withSecond(0).withNano(0);
+        var note = new Notification("Reminder", "", "", NotificationLevel.NORMAL, 0);
+        var first = new ScheduledNotification(uuid, EntryType.TASK, due, NotificationLevel.NORMAL, note);
+        var second = new ScheduledNotification(uuid, EntryType.TASK, due.plusHours(1), NotificationLevel.LOW, note);
+
+        scheduler.reconcile(uuid, List.of(first, second));
+        assertEquals(2, db.getMissedNotifications(due.plusDays(1)).stream().filter(r -> r.uuid().equals(uuid)).count());
+        scheduler.reconcile(uuid, List.of(second));
+        var pending = db.getMissedNotifications(due.plusDays(1)).stream().filter(r -> r.uuid().equals(uuid)).toList();
+        assertEquals(List.of(NotificationOutbox.toRow(second)), pending);
+
+        // Fired rows are no longer pending and can't be reset by re-adding the reminder
+        db.markNotificationsFired(pending);
+        db.updateNotifications(uuid, pending, List.of());
+        assertTrue(db.getMissedNotifications(due.plusDays(1)).stream().noneMatch(r -> r.uuid().equals(uuid)));
+        assertTrue(db.getFiredNotificationsSince(due).contains(pending.getFirst()));
+
+        scheduler.cancel(uuid);
+        assertFalse(db.getFiredNotificationsSince(due).contains(pending.getFirst()));
+    }
+
+    @Test
+    public void notificationRestartTest() throws IOException {
+        UUID uuid = UUID.randomUUID();
+        LocalDateTime due = LocalDateTime.now().plusDays(1).withSecond(0).withNano(0);
+        var note = new Notification("Reminder", "", "", NotificationLevel.NORMAL, 0);
+        var first = new ScheduledNotification(uuid, EntryType.TASK, due, NotificationLevel.NORMAL, note);
+        var second = new ScheduledNotification(uuid, EntryType.TASK, due.plusHours(1), NotificationLevel.LOW, note);
+        try (var before = new ReminderScheduler(ReminderScheduler::runAll, new NotificationOutbox(db)).start()) {
+            before.reconcile(uuid, List.of(first, second));
+        }
+
+        // Re-adding what is already stored as pending after a restart writes nothing
+        List<List<ScheduledNotification>> written = new ArrayList<>();
+        var outbox = new NotificationOutbox(db) {
+            @Override
+            public void update(UUID entry, List<ScheduledNotification> added, Collection<LocalDateTime> removed)
+                    throws IOException {
+                written.add(added);
+                super.update(entry, added, removed);
+            }
+        };
+        try (var after = new ReminderScheduler(ReminderScheduler::runAll, outbox).start()) {
+            after.reconcile(uuid, List.of(first, second));
+            assertTrue(written.isEmpty());
+            assertEquals(2, after.getScheduled(uuid).size());
+
+            var changed = new ScheduledNotification(uuid, EntryType.TASK, due, NotificationLevel.CRITICAL, note);
+            after.reconcile(uuid, List.of(changed, second));
+            assertEquals(List.of(List.of(changed)), written);
+            after.cancel(uuid);
+        }
+        assertTrue(db.getPendingNotificationsSince(due).stream().noneMatch(r -> r.uuid().equals(uuid)));
+    }
+
+    @Test
+    public void poolNestedAcquireTest() throws Exception {
+        var pool = new ConnectionPool(tempDbUrl(), 2, 4, 0);
+        try (PooledConnection outer = pool.acquire()) {
+            var statement = outer.prepare("SELECT 1");
+            try (PooledConnection inner = pool.acquire()) {
+                assertSame(outer, inner);
+                assertSame(statement, inner.prepare("SELECT 1"));
+            }
+            assertEquals(0, pool.idleCount()); // Still held by the outer lease
+        }
+        assertEquals(1, pool.size());
+        assertEquals(1, pool.idleCount());
+        pool.close();
+    }
+
+    @Test
+    public void statementCacheEvictionTest() throws Exception {
+        var pool = new ConnectionPool(tempDbUrl(), 1, 2, 0);
+        try (PooledConnection conn = pool.acquire()) {
+            var first = conn.prepare("SELECT 1");
+            var second = conn.prepare("SELECT 2");
+            conn.prepare("SELECT 1"); // Most recently used, so second is the eldest
+            conn.prepare("SELECT 3");
+            assertEquals(2, conn.cachedStatements());
+            assertTrue(second.isClosed());
+            assertFalse(first.isClosed());
+        }
+        pool.close();
+    }
+
+    @Test
+    public void poolTimeoutTest() throws Exception {
+        var pool = new ConnectionPool(tempDbUrl(), 1, 4, 0);
+        try (PooledConnection held = pool.acquire()) {
+            var other = Executors.newSingleThreadExecutor();
+            var waiting = other.submit(() -> pool.acquire());
+            var e = assertThrows(ExecutionException.class, waiting::get);
+            assertTrue(e.getCause() instanceof SQLException);
+            other.shutdown();
+        }
+        pool.close();
+    }
+
+    @Test
+    public void writeQueueBatchTest() throws Exception {
+        String url = tempDbUrl();
+        var pool = new ConnectionPool(url, 1, 4, 0);
+        try (var conn = pool.acquire(); var stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE t (id INTEGER PRIMARY KEY)");
+        }
+        var queue = new WriteQueue(pool, 16);
+        var block = new CountDownLatch(1);
+        // Holds the writer so the next three writes queue up and commit as one batch
+        var blocker = queue.submit(conn -> {
+            try {
+                block.await();
+            } catch (InterruptedException e) {
+                throw new SQLException(e);
+            }
+        });
+        var good = queue.submit(conn -> insert(conn, 1));
+        var bad = queue.submit(conn -> {
+            insert(conn, 2);
+            insert(conn, 1); // Duplicate key
+        });
+        var nested = queue.submit(conn -> queue.write(c -> insert(c, 3)));
+        block.countDown();
+
+        blocker.get(5, TimeUnit.SECONDS);
+        good.get(5, TimeUnit.SECONDS);
+        nested.get(5, TimeUnit.SECONDS);
+        assertTrue(assertThrows(ExecutionException.class, bad::get).getCause() instanceof SQLException);
+
+        queue.close();
+        var check = new ConnectionPool(url, 1, 4, 0);
+        try (var conn = check.acquire(); var rs = conn.prepare("SELECT id FROM t ORDER BY id").executeQuery()) {
+            List<Integer> ids = new ArrayList<>();
+            while (rs.next()) {
+                ids.add(rs.getInt(1));
+            }
+            assertEquals(List.of(1, 3), ids); // 2 rolled back with its savepoint
+        }
+        check.close();
+    }
+
+    @Test
+    public void writeQueueCloseTest() throws Exception {
+        String url = tempDbUrl();
+        var pool = new ConnectionPool(url, 1, 4, 0);
+        try (var conn = pool.acquire(); var stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE t (id INTEGER PRIMARY KEY)");
+        }
+        var queue = new WriteQueue(pool, 8);
+        List<CompletableFuture<Void>> writes = new ArrayList<>();
+        for (int i = 0; i < 100; ++i) {
+            int id = i;
+            writes.add(queue.submit(conn -> insert(conn, id)));
+        }
+        queue.close();
+        for (var write : writes) {
+            assertTrue(write.isDone() && !write.isCompletedExceptionally());
+        }
+        assertTrue(queue.submit(conn -> { }).isCompletedExceptionally());
+
+        var check = new ConnectionPool(url, 1, 4, 0);
+        try (var conn = check.acquire(); var rs = conn.prepare("SELECT count(*) FROM t").executeQuery()) {
+            assertEquals(100, rs.getInt(1));
+        }
+        check.close();
+    }
+
+    private static void insert(PooledConnection conn, int id) throws SQLException {
+        var ps = conn.prepare("INSERT INTO t VALUES (?)");
+        ps.setInt(1, id);
+        ps.executeUpdate();
+    }
+
+    private static String tempDbUrl() throws IOException {
+        return "jdbc:sqlite:" + Files.createTempDirectory("toastit-pool").resolve("test.db");
+    }
 }
@@ -1,6 +1,22 @@
 import io.mindspice.toastit.App;
+import io.mindspice.toastit.entries.EntryStore;
+import io.mindspice.toastit.entries.event.EventEntry;
+import io.mindspice.toastit.entries.event.FreeBusy;
+import io.mindspice.toastit.enums.EntryType;
+import io.mindspice.toastit.enums.NotificationLevel;
+import io.mindspice.toastit.notification.Notification;
+import io.mindspice.toastit.notification.NotificationDispatcher;
+import io.mindspice.toastit.notification.NotificationSink;
+import io.mindspice.toastit.notification.ReminderScheduler;
+import io.mindspice.toastit.notification.ScheduledNotification;
+import io.mindspice.toastit.search.FileSearch;
+import io.mindspice.toastit.search.SearchCache;
+import io.mindspice.toastit.search.SearchExecutor;
+import io.mindspice.toastit.search.SearchQuery;
 import io.mindspice.toastit.sqlite.DBConnection;
 import io.mindspice.toastit.util.DateTimeUtil;
+import io.mindspice.toastit.util.EntryImporter;
+import io.mindspice.toastit.util.FileWatcher;
 import io.mindspice.toastit.util.Settings;
 import org.junit.Assert;
 import org.junit.BeforeClass;
@@ -9,7 +25,22 @@ import org.junit.Test;
 import io.mindspice.toastit.util.Util;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.*;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import java.util.stream.IntStream;
 
 import static org.junit.Assert.*;
 
@@ -58,4 +89,356 @@ public class UtilTests {
 
 
     }
+
+    @Test
+    public void entryStoreTest() {
+        var store = new EntryStore<EventEntry>();
+        var byStart = store.addView(EventEntry::startTime);
+        LocalDateTime base = LocalDateTime.of(2024, 1, 1, 9, 0);
+        var a = new EventEntry(UUID.randomUUID(), "a", List.of(), base, base.plusHours(1), List.of(), null, false);
+        var b = new EventEntry(UUID.randomUUID(), "b", List.of(), base, base.plusHours(2), List.of(), null, false);
+        var c = new EventEntry(UUID.randomUUID(), "c", List.of(), base.plusDays(1), base.plusDays(1).plusHours(1), List.of(), null, false);
+        store.replaceAll(List.of(c, b, a));
+
+        assertEquals(3, byStart.size());
+        assertEquals(c, byStart.list().getLast());
+        assertEquals(2, byStart.equalTo(base).size());
+        assertEquals(List.of(c), byStart.range(base.plusHours(1), base.plusDays(2)));
+
+        // Moving an entry re-keys it in the view rather than leaving a stale copy
+        var movedA = new EventEntry(a.uuid(), "a", List.of(), base.plusDays(3), base.plusDays(3).plusHours(1), List.of(), null, false);
+        store.put(movedA);
+        assertEquals(3, byStart.size());
+        assertEquals(movedA, byStart.list().getLast());
+        assertEquals(List.of(b), byStart.before(base.plusHours(1)));
+
+        store.replaceAll(List.of(movedA));
+        assertEquals(List.of(movedA), byStart.list());
+        assertNull(store.get(b.uuid()));
+    }
+
+    @Test
+    public void intervalViewTest() {
+        var store = new EntryStore<EventEntry>();
+        var byTime = store.addIntervalView(EventEntry::startTime, EventEntry::endTime);
+        LocalDateTime base = LocalDateTime.of(2024, 1, 1, 9, 0);
+        var a = new EventEntry(UUID.randomUUID(), "a", List.of(), base, base.plusHours(2), List.of(), null, false);
+        var b = new EventEntry(UUID.randomUUID(), "b", List.of(), base.plusHours(1), base.plusHours(3), List.of(), null, false);
+        var c = new EventEntry(UUID.randomUUID(), "c", List.of(), base.plusHours(3), base.plusHours(4), List.of(), null, false);
+        var multiDay = new EventEntry(UUID.randomUUID(), "d", List.of(), base.minusDays(2), base.plusDays(2), List.of(), null, false);
+        store.replaceAll(List.of(c, b, a, multiDay));
+
+        assertEquals(List.of(multiDay, a, b), byTime.at(base.plusHours(1)));
+        assertEquals(List.of(multiDay, c), byTime.at(base.plusHours(3))); // End is exclusive
+        assertEquals(List.of(multiDay, b, c), byTime.overlapping(base.plusHours(2), base.plusHours(5)));
+        assertEquals(List.of(a, b), byTime.within(base, base.plusHours(3)));
+        assertEquals(List.of(multiDay), byTime.overlapping(base.minusDays(1), base));
+
+        var movedA = new EventEntry(a.uuid(), "a", List.of(), base.plusDays(5), base.plusDays(5).plusHours(1), List.of(), null, false);
+        store.put(movedA);
+        store.remove(multiDay.uuid());
+        assertEquals(List.of(b), byTime.at(base.plusHours(1)));
+        assertEquals(List.of(movedA), byTime.overlapping(base.plusDays(3), base.plusDays(6)));
+
+        store.clear();
+        assertTrue(byTime.isEmpty());
+    }
+
+    @Test
+    public void freeBusyTest() {
+        LocalDate day = LocalDate.of(2024, 3, 4);
+        var busy = FreeBusy.busy(List.of(
+                new FreeBusy.Slot(day.atTime(9, 0), day.atTime(10, 0)),
+                new FreeBusy.Slot(day.atTime(9, 30), day.atTime(11, 0)), // Overlapping
+                new FreeBusy.Slot(day.atTime(11, 0), day.atTime(11, 30)), // Touching
+                new FreeBusy.Slot(day.atTime(14, 0), day.atTime(14, 20)),
+                new FreeBusy.Slot(day.atTime(23, 0), day.plusDays(1).atTime(9, 0)) // Crosses midnight
+        ), day.atStartOfDay(), day.plusDays(2).atStartOfDay());
+        assertEquals(List.of(
+                new FreeBusy.Slot(day.atTime(9, 0), day.atTime(11, 30)),
+                new FreeBusy.Slot(day.atTime(14, 0), day.atTime(14, 20)),
+                new FreeBusy.Slot(day.atTime(23, 0), day.plusDays(1).atTime(9, 0))
+        ), busy);
+
+        var free = FreeBusy.free(busy, day.atTime(8, 0), day.plusDays(2).atStartOfDay(), 60,
+                LocalTime.of(8, 0), LocalTime.of(18, 0));
+        assertEquals(List.of(
+                new FreeBusy.Slot(day.atTime(8, 0), day.atTime(9, 0)),
+                new FreeBusy.Slot(day.atTime(11, 30), day.atTime(14, 0)),
+                new FreeBusy.Slot(day.atTime(14, 20), day.atTime(18, 0)),
+                new FreeBusy.Slot(day.plusDays(1).atTime(9, 0), day.plusDays(1).atTime(18, 0))
+        ), free);
+
+        // Day start and end the same is the whole day, midnight to midnight
+        var allDay = FreeBusy.free(busy, day.atStartOfDay(), day.plusDays(2).atStartOfDay(), 60,
+                LocalTime.of(8, 0), LocalTime.of(8, 0));
+        assertEquals(List.of(
+                new FreeBusy.Slot(day.atStartOfDay(), day.atTime(9, 0)),
+                new FreeBusy.Slot(day.atTime(11, 30), day.atTime(14, 0)),
+                new FreeBusy.Slot(day.atTime(14, 20), day.atTime(23, 0)),
+                new FreeBusy.Slot(day.plusDays(1).atTime(9, 0), day.plusDays(2).atStartOfDay())
+        ), allDay);
+
+        var perDay = FreeBusy.perDay(busy, day, day.plusDays(3));
+        assertEquals(3, perDay.size());
+        assertEquals(60 + 150 + 20, FreeBusy.busyMinutes(perDay.get(day)));
+        assertEquals(9 * 60, FreeBusy.busyMinutes(perDay.get(day.plusDays(1))));
+        assertEquals(List.of(), perDay.get(day.plusDays(2)));
+    }
+
+    @Test
+    public void csvParseTest() {
+        String csv = "name,created_at,tags,body\r\n"
+                + "\"Plain, with comma\",2024-01-02,a;b,\"line one\nline \"\"two\"\"\"\n"
+                + "\n"
+                + "Short row,2024-01-03\n"
+                + "Last,,,unterminated \"quote";
+        var rows = EntryImporter.parseCsv(csv);
+        assertEquals(4, rows.size()); // Blank line skipped
+        assertEquals(List.of("name", "created_at", "tags", "body"), rows.get(0));
+        assertEquals(List.of("Plain, with comma", "2024-01-02", "a;b", "line one\nline \"two\""), rows.get(1));
+        assertEquals(List.of("Short row", "2024-01-03"), rows.get(2)); // Rejected by importCsv, not the parser
+        assertEquals(List.of("Last", "", "", "unterminated quote"), rows.get(3));
+    }
+
+    @Test
+    public void fileWatcherTest() throws Exception {
+        Path root = Files.createTempDirectory("toastit-watch");
+        LinkedBlockingQueue<Set<Path>> changes = new LinkedBlockingQueue<>();
+        CountDownLatch overflowed = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Path blocking = root.resolve("blocking.note"); // Holds the watcher thread in its callback until released
+        var listener = new FileWatcher.Listener() {
+            @Override
+            public void onChanged(Set<Path> files) {
+                changes.add(files);
+                if (files.contains(blocking)) {
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }
+
+            @Override
+            public void onOverflow() {
+                overflowed.countDown();
+            }
+        };
+
+        try (var watcher = new FileWatcher(root, path -> path.toString().endsWith(".note"), 100, listener).start()) {
+            // A burst of writes is one callback
+            Path file = root.resolve("a.note");
+            for (int i = 0; i < 20; ++i) {
+                Files.writeString(file, "edit " + i);
+            }
+            assertEquals(Set.of(file), changes.poll(5, TimeUnit.SECONDS));
+            assertNull(changes.poll(500, TimeUnit.MILLISECONDS));
+
+            // Constant writes still flush once maxDelay (10x debounce) has passed since the first
+            long end = System.currentTimeMillis() + 2500;
+            while (System.currentTimeMillis() < end) {
+                Files.writeString(file, "constant");
+                Thread.sleep(20);
+            }
+            assertTrue(changes.size() >= 2);
+            Thread.sleep(500);
+            changes.clear();
+
+            // Directories created after start are watched
+            Path dir = Files.createDirectory(root.resolve("2026"));
+            Thread.sleep(500);
+            changes.clear();
+            Path nested = dir.resolve("b.note");
+            Files.writeString(nested, "nested");
+            assertEquals(Set.of(nested), changes.poll(5, TimeUnit.SECONDS));
+
+            // Events queued past the watch key's limit while the thread is busy are dropped, reported as overflow
+            Files.writeString(blocking, "");
+            assertEquals(Set.of(blocking), changes.poll(5, TimeUnit.SECONDS));
+            for (int i = 0; i < 1000; ++i) {
+                Files.writeString(root.resolve(i + ".note"), "");
+            }
+            release.countDown();
+            assertTrue(overflowed.await(5, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    public void reminderReconcileTest() {
+        var scheduler = new ReminderScheduler(ReminderScheduler::runAll); // Not started, nothing fires
+        UUID uuid = UUID.randomUUID();
+        LocalDateTime base = LocalDateTime.now().plusDays(1).withSecond(0).withNano(0);
+        var note = new Notification("Reminder", "", "", NotificationLevel.NORMAL, 0);
+        var first = new ScheduledNotification(uuid, EntryType.TASK, base, NotificationLevel.NORMAL, note);
+        var second = new ScheduledNotification(uuid, EntryType.TASK, base.plusHours(1), NotificationLevel.NORMAL, note);
+        var past = new ScheduledNotification(uuid, EntryType.TASK, base.minusDays(2), NotificationLevel.NORMAL, note);
+
+        assertEquals(2, scheduler.reconcile(uuid, List.of(first, second, past)));
+        assertEquals(0, scheduler.reconcile(uuid, List.of(first, second, past)));
+        assertFalse(scheduler.schedule(first));
+
+        var moved = new ScheduledNotification(uuid, EntryType.TASK, base.plusHours(2), NotificationLevel.NORMAL, note);
+        assertEquals(2, scheduler.reconcile(uuid, List.of(first, moved)));
+        assertEquals(List.of(first, moved), scheduler.getScheduled(uuid));
+        assertEquals(2, scheduler.cancel(uuid));
+        assertEquals(0, scheduler.size());
+    }
+
+    @Test
+    public void notificationDispatcherTest() throws InterruptedException {
+        List<Notification> shown = new CopyOnWriteArrayList<>();
+        List<Notification> spawned = new CopyOnWriteArrayList<>();
+        NotificationSink limited = new NotificationSink() {
+            @Override
+            public void deliver(Notification notification) {
+                spawned.add(notification);
+            }
+
+            @Override
+            public boolean rateLimited() {
+                return true;
+            }
+        };
+        var dispatcher = new NotificationDispatcher(List.of(shown::add, limited), 50, 1).start();
+        LocalDateTime time = LocalDateTime.now();
+        List<ScheduledNotification> due = new ArrayList<>();
+        for (int i = 0; i < 5; ++i) {
+            var level = i == 3 ? NotificationLevel.CRITICAL : NotificationLevel.LOW;
+            var note = new Notification("Task " + i, "", "", level, 0);
+            due.add(new ScheduledNotification(UUID.randomUUID(), EntryType.TASK, time, note.level(), note));
+        }
+
+        dispatcher.accept(due.subList(0, 4));
+        Thread.sleep(500);
+        assertEquals(1, shown.size());
+        assertEquals("4 Reminders", shown.getFirst().title());
+        assertEquals(NotificationLevel.CRITICAL, shown.getFirst().level());
+        assertEquals(List.of(shown.getFirst()), spawned);
+
+        // Over the per minute cap, shown directly but held back from the rate limited sink
+        dispatcher.accept(due.subList(4, 5));
+        Thread.sleep(500);
+        assertEquals(due.get(4).notification(), shown.getLast());
+        assertEquals(1, spawned.size());
+        dispatcher.close();
+    }
+
+    @Test
+    public void searchItemErrorTest() {
+        boolean threaded = Settings.THREADED_SEARCH;
+        Settings.THREADED_SEARCH = false; // A single worker, so a failing item must not end it
+        try {
+            var search = new SearchExecutor(2).submit(List.of(1, 2, 3, 4), (item, budget) -> {
+                if (item == 2) {
+                    throw new UncheckedIOException(new IOException("Unreadable file"));
+                }
+                return List.of(item);
+            }, 10, Duration.ofSeconds(5), null, null);
+            assertEquals(List.of(1, 3, 4), search.await());
+            assertEquals(SearchExecutor.Status.COMPLETE, search.status());
+        } finally {
+            Settings.THREADED_SEARCH = threaded;
+        }
+    }
+
+    @Test
+    public void fileSearchTest() throws IOException {
+        Path file = Files.createTempFile("toastit-search", ".note");
+        Files.writeString(file, "first line\r\nneedle and needle again\r\nno match\nlast needle");
+        List<String> lines = new ArrayList<>();
+        assertEquals(2, new FileSearch("needle").scan(file, 10, lines::add));
+        assertEquals(List.of("needle and needle again", "last needle"), lines); // Once per line, \r dropped
+        lines.clear();
+        assertEquals(1, new FileSearch("needle").scan(file, 1, lines::add)); // Stops at the limit
+        assertEquals(List.of("needle and needle again"), lines);
+
+        // Horspool skips checked against a naive search, a small alphabet gives many partial matches and the file is
+        // large enough to be memory-mapped
+        Random random = new Random(42);
+        StringBuilder text = new StringBuilder();
+        while (text.length() < 100_000) {
+            text.append(random.nextInt(12) == 0 ? '\n' : (char) ('a' + random.nextInt(3)));
+        }
+        Files.writeString(file, text);
+        List<String> allLines = text.toString().lines().toList();
+        for (String pattern : List.of("a", "ab", "aba", "abab", "cabca", "bbbbb", "acbacba")) {
+            List<String> found = new ArrayList<>();
+            new FileSearch(pattern).scan(file, Integer.MAX_VALUE, found::add);
+            assertEquals(pattern, allLines.stream().filter(line -> line.contains(pattern)).toList(), found);
+        }
+        Files.delete(file);
+    }
+
+    @Test
+    public void searchExecutorTest() throws InterruptedException {
+        var executor = new SearchExecutor(4);
+        List<Integer> items = IntStream.range(0, 100).boxed().toList();
+
+        // Unordered searches stop once the limit is found
+        var limited = executor.submit(items, (item, budget) -> List.of(item), 5, Duration.ofSeconds(5), null, null);
+        assertEquals(5, limited.await().size());
+        assertEquals(SearchExecutor.Status.LIMIT_REACHED, limited.status());
+
+        // Ordered searches cover every item, then are sorted and cut to the limit
+        var ordered = executor.submit(
+                items, (item, budget) -> List.of(item), 5, Duration.ofSeconds(5), Comparator.<Integer>reverseOrder(), null
+        );
+        assertEquals(List.of(99, 98, 97, 96, 95), ordered.await());
+        assertEquals(SearchExecutor.Status.COMPLETE, ordered.status());
+
+        BiFunction<Integer, Integer, List<Integer>> slow = (item, budget) -> {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return List.of(item);
+        };
+        var timed = executor.submit(items, slow, 100, Duration.ofMillis(200), null, null);
+        assertTrue(timed.await().size() < items.size()); // What was found before the deadline
+        assertEquals(SearchExecutor.Status.TIMED_OUT, timed.status());
+
+        var cancelled = executor.submit(items, slow, 100, Duration.ofSeconds(30), null, null);
+        Thread.sleep(100);
+        cancelled.cancel();
+        assertTrue(cancelled.await().size() < items.size());
+        assertEquals(SearchExecutor.Status.CANCELLED, cancelled.status());
+    }
+
+    @Test
+    public void searchCacheTest() {
+        UUID uuid = UUID.randomUUID();
+        var match = new SearchQuery.Match(1, List.of("a matching line"));
+        var cache = new SearchCache(1000);
+        var key = new SearchCache.Key("query", uuid, 1000L, 50L);
+        cache.put(key, match);
+        assertEquals(match, cache.get(key));
+        assertNull(cache.get(new SearchCache.Key("query", uuid, 2000L, 50L))); // Edited, new mtime
+        assertNull(cache.get(new SearchCache.Key("query", uuid, 1000L, 60L))); // Same mtime, new size
+        assertEquals(1, cache.stats().hits());
+        assertEquals(2, cache.stats().misses());
+
+        // 208 bytes each, touching first leaves second as least recently used
+        var second = new SearchCache.Key("query", UUID.randomUUID(), 0L, 0L);
+        var third = new SearchCache.Key("query", UUID.randomUUID(), 0L, 0L);
+        cache.put(second, new SearchQuery.Match(1, List.of("x".repeat(15))));
+        cache.put(third, new SearchQuery.Match(1, List.of("x".repeat(15))));
+        cache.get(key);
+        // One heavy entry (478 bytes) outweighs a single light one, so only second goes
+        var heavy = new SearchCache.Key("query", UUID.randomUUID(), 0L, 0L);
+        cache.put(heavy, new SearchQuery.Match(1, List.of("x".repeat(150))));
+        assertEquals(1, cache.stats().evictions());
+        assertNull(cache.get(second));
+        assertNotNull(cache.get(key));
+        assertNotNull(cache.get(third));
+        assertNotNull(cache.get(heavy));
+
+        // Larger than the whole cache, never stored
+        var huge = new SearchCache.Key("query", UUID.randomUUID(), 0L, 0L);
+        cache.put(huge, new SearchQuery.Match(1, List.of("x".repeat(1000))));
+        assertNull(cache.get(huge));
+        assertEquals(3, cache.stats().entries());
+    }
 }